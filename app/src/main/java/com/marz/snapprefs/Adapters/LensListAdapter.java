@@ -5,8 +5,10 @@ import android.app.AlertDialog.Builder;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.DialogInterface;
-import android.graphics.Bitmap;
-import android.support.v4.os.AsyncTaskCompat;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -27,10 +29,15 @@ import com.marz.snapprefs.Lens;
 import com.marz.snapprefs.Logger;
 import com.marz.snapprefs.Logger.LogType;
 import com.marz.snapprefs.R;
-import com.marz.snapprefs.Util.BitmapCache;
 import com.marz.snapprefs.Util.LensIconLoader;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * This class was created by Andre R M (SID: 701439)
@@ -38,17 +45,160 @@ import java.util.ArrayList;
  */
 
 public class LensListAdapter extends RecyclerView.Adapter<ViewHolder> {
-    public ArrayList<LensItemData> lensDataList;
+    // Rebinding with this payload only updates the selection background
+    private static final Object PAYLOAD_ACTIVE = new Object();
+    private static final int PAGE_SIZE = 200;
+
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Snapprefs-lens-list");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public List<LensItemData> lensDataList = new ArrayList<>();
+    private final HashMap<String, Long> itemIds = new HashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private Context context;
-    private BitmapCache bitmapCache;
     private LensesFragment lensesFragment;
-
-    public LensListAdapter(Context context, ArrayList<LensItemData> lensDataList, LensesFragment lensesFragment,
-                           BitmapCache bitmapCache) {
+    private PageSource pageSource;
+    private String filter;
+    // The last lens of the last loaded page, deleted or not, the next page continues after it
+    private LensItemData lastLoaded;
+    // Codes of the loaded lenses, a lens that moved in the order since may come up again
+    private final HashSet<String> loadedCodes = new HashSet<>();
+    // Bumped by every change of the loaded lenses, a diff of an older list can't be applied
+    private int listVersion;
+    private boolean loading;
+    private boolean exhausted;
+    // Bumped by every new filter, so results of an older one are dropped
+    private int generation;
+
+    public LensListAdapter(Context context, PageSource pageSource, LensesFragment lensesFragment) {
         this.context = context;
-        this.lensDataList = lensDataList;
+        this.pageSource = pageSource;
         this.lensesFragment = lensesFragment;
-        this.bitmapCache = bitmapCache;
+        setHasStableIds(true);
+        setFilter(null);
+    }
+
+    /**
+     * Show the lenses matching the filter. The first page is loaded and diffed against the
+     * current list in the background, so only the cells that differ are rebound. If the list
+     * changed while the diff was worked out, it's replaced as a whole instead.
+     */
+    public void setFilter(final String filter) {
+        final int requestGeneration = ++generation;
+        final int requestListVersion = listVersion;
+        final List<LensItemData> oldList = new ArrayList<>(lensDataList);
+        this.filter = filter;
+        loading = true;
+
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<LensItemData> newList = pageSource.loadPage(filter, null, PAGE_SIZE);
+                final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new ItemDiff(oldList, newList), false);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (requestGeneration != generation)
+                            return;
+
+                        boolean unchanged = requestListVersion == listVersion;
+                        lensDataList = newList;
+                        lastLoaded = newList.isEmpty() ? null : newList.get(newList.size() - 1);
+                        loadedCodes.clear();
+
+                        for (LensItemData itemData : newList)
+                            loadedCodes.add(itemData.lensCode);
+
+                        exhausted = newList.size() < PAGE_SIZE;
+                        loading = false;
+                        listVersion++;
+
+                        if (unchanged)
+                            diff.dispatchUpdatesTo(LensListAdapter.this);
+                        else
+                            notifyDataSetChanged();
+                    }
+                });
+            }
+        });
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * Load the next page once the given position is close to the end of the loaded ones.
+     */
+    public void loadMoreIfNeeded(int position) {
+        if (loading || exhausted || position < lensDataList.size() - PAGE_SIZE / 2)
+            return;
+
+        final int requestGeneration = generation;
+        final String requestFilter = filter;
+        final LensItemData after = lastLoaded;
+        loading = true;
+
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<LensItemData> page = pageSource.loadPage(requestFilter, after, PAGE_SIZE);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (requestGeneration != generation)
+                            return;
+
+                        int start = lensDataList.size();
+
+                        for (LensItemData itemData : page) {
+                            if (loadedCodes.add(itemData.lensCode))
+                                lensDataList.add(itemData);
+                        }
+
+                        if (!page.isEmpty())
+                            lastLoaded = page.get(page.size() - 1);
+
+                        exhausted = page.size() < PAGE_SIZE;
+                        loading = false;
+                        listVersion++;
+                        notifyItemRangeInserted(start, lensDataList.size() - start);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Reflect a change of the active state of every matching lens in the loaded ones.
+     */
+    public void setAllActive(boolean active) {
+        for (LensItemData itemData : lensDataList)
+            itemData.isActive = active;
+
+        notifyItemRangeChanged(0, lensDataList.size(), PAYLOAD_ACTIVE);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        String lensCode = lensDataList.get(position).lensCode;
+        Long id = itemIds.get(lensCode);
+
+        // Codes are strings, numbering them as they're first seen guarantees unique ids
+        if (id == null) {
+            id = (long) itemIds.size();
+            itemIds.put(lensCode, id);
+        }
+
+        return id;
     }
 
     @Override
@@ -57,6 +207,17 @@ public class LensListAdapter extends RecyclerView.Adapter<ViewHolder> {
         return new ViewHolder(view);
     }
 
+    @Override
+    public void onBindViewHolder(ViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty() || payloads.contains(null)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        LensItemData lensData = lensDataList.get(position);
+        holder.backgroundLayout.setBackgroundResource(lensData.isActive ? R.drawable.lens_bg_selected : R.drawable.lens_bg_unselected);
+    }
+
     @Override
     public void onBindViewHolder(ViewHolder holder, int position) {
         final LensItemData lensData = lensDataList.get(position);
@@ -93,14 +254,13 @@ public class LensListAdapter extends RecyclerView.Adapter<ViewHolder> {
         });
         holder.lensText.setText(lensData.lensName);
         holder.backgroundLayout.setBackgroundResource(lensData.isActive ? R.drawable.lens_bg_selected : R.drawable.lens_bg_unselected);
+        LensIconLoader.bind(holder.lensIcon, lensData.lensCode, lensData.url, holder.getIconSize());
+    }
 
-        Bitmap cachedBitmap = bitmapCache.getBitmapFromMemCache(lensData.lensCode);
-        if(cachedBitmap != null)
-            holder.lensIcon.setImageBitmap(cachedBitmap);
-        else {
-            AsyncTaskCompat.executeParallel(new LensIconLoader.AsyncLensIconDownloader(),
-                    lensData, context, holder.lensIcon, bitmapCache);
-        }
+    @Override
+    public void onViewRecycled(ViewHolder holder) {
+        super.onViewRecycled(holder);
+        LensIconLoader.unbind(holder.lensIcon);
     }
 
     @Override
@@ -226,6 +386,8 @@ public class LensListAdapter extends RecyclerView.Adapter<ViewHolder> {
                 if (position == -1 || !lensDataList.remove(lensItemData))
                     return;
 
+                loadedCodes.remove(lensItemData.lensCode);
+                listVersion++;
                 notifyItemRemoved(position);
                 lensesFragment.refreshLensCount();
                 masterDialog.dismiss();
@@ -235,6 +397,104 @@ public class LensListAdapter extends RecyclerView.Adapter<ViewHolder> {
         alertBuilder.create().show();
     }
 
+    /**
+     * Loads the lenses of the selector a page at a time, called on a background thread.
+     */
+    public interface PageSource {
+        /**
+         * @param after The last lens of the previous page, or null for the first page
+         */
+        List<LensItemData> loadPage(String filter, LensItemData after, int limit);
+    }
+
+    /**
+     * Warms the icons of the rows about to scroll into view, as many per row as the grid
+     * has columns, and loads the next page before the end is reached.
+     */
+    public static class Prefetcher extends RecyclerView.OnScrollListener {
+        private static final int PREFETCH_ROWS = 2;
+
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            if (!(recyclerView.getLayoutManager() instanceof GridLayoutManager) ||
+                    !(recyclerView.getAdapter() instanceof LensListAdapter))
+                return;
+
+            GridLayoutManager layoutManager = (GridLayoutManager) recyclerView.getLayoutManager();
+            LensListAdapter adapter = (LensListAdapter) recyclerView.getAdapter();
+            int spanCount = layoutManager.getSpanCount();
+            int ahead = PREFETCH_ROWS * spanCount;
+            int iconSize = recyclerView.getWidth() / spanCount;
+            int from;
+            int to;
+
+            if (dy >= 0) {
+                int last = layoutManager.findLastVisibleItemPosition();
+                adapter.loadMoreIfNeeded(last + ahead);
+                from = last + 1;
+                to = last + ahead;
+            } else {
+                int first = layoutManager.findFirstVisibleItemPosition();
+                from = first - ahead;
+                to = first - 1;
+            }
+
+            for (int position = Math.max(0, from); position <= to && position < adapter.lensDataList.size(); position++) {
+                LensItemData itemData = adapter.lensDataList.get(position);
+                LensIconLoader.prefetch(adapter.context, itemData.lensCode, itemData.url, iconSize);
+            }
+        }
+    }
+
+    private static class ItemDiff extends DiffUtil.Callback {
+        private final List<LensItemData> oldList;
+        private final List<LensItemData> newList;
+
+        ItemDiff(List<LensItemData> oldList, List<LensItemData> newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.get(oldItemPosition).lensCode.equals(newList.get(newItemPosition).lensCode);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            LensItemData oldItem = oldList.get(oldItemPosition);
+            LensItemData newItem = newList.get(newItemPosition);
+            return oldItem.isActive == newItem.isActive && equal(oldItem.lensName, newItem.lensName) &&
+                    equal(oldItem.url, newItem.url);
+        }
+
+        @Override
+        public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+            LensItemData oldItem = oldList.get(oldItemPosition);
+            LensItemData newItem = newList.get(newItemPosition);
+
+            // Only the selection differs, the icon and name don't need rebinding
+            if (equal(oldItem.lensName, newItem.lensName) && equal(oldItem.url, newItem.url))
+                return PAYLOAD_ACTIVE;
+
+            return null;
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
     public static class ViewHolder extends RecyclerView.ViewHolder {
         public ImageView lensIcon;
         TextView lensText;
@@ -248,5 +508,12 @@ public class LensListAdapter extends RecyclerView.Adapter<ViewHolder> {
             this.backgroundLayout = itemView.findViewById(R.id.lens_background_layout);
             itemView.setTag(this.backgroundLayout);
         }
+
+        /**
+         * @return The width of the icon, or 0 before the first layout
+         */
+        int getIconSize() {
+            return lensIcon.getWidth() > 0 ? lensIcon.getWidth() : itemView.getWidth();
+        }
     }
 }
@@ -14,11 +14,12 @@ import android.widget.ImageView;
 
 import com.marz.snapprefs.Databases.ChatsDatabaseHelper;
 import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Obfuscation.Handles;
 import com.marz.snapprefs.Obfuscator.chat;
-import com.marz.snapprefs.Preferences.Prefs;
 import com.marz.snapprefs.Util.ChatData;
 import com.marz.snapprefs.Util.NotificationUtils;
 import com.marz.snapprefs.Util.NotificationUtils.ToastType;
+import com.marz.snapprefs.Util.StartupTracer;
 
 import java.io.FileInputStream;
 import java.text.SimpleDateFormat;
@@ -52,8 +53,11 @@ public class Chat {
     private static String yourUsername;
 
     public static ChatsDatabaseHelper getChatDBHelper(Context context) {
-        if (chatDBHelper == null)
+        if (chatDBHelper == null) {
+            StartupTracer.Span span = StartupTracer.begin("ChatsDatabaseHelper open", "database");
             chatDBHelper = new ChatsDatabaseHelper(context);
+            span.end();
+        }
 
         return chatDBHelper;
     }
@@ -191,11 +195,11 @@ public class Chat {
         ChatData chatData = new ChatData();
 
         try {
-            chatData.setMessageId((String) callMethod(chatObj, "getId"));
-            chatData.setText((String) callMethod(chatObj, "r"));
-            chatData.setSender((String) getObjectField(chatObj, "am"));
-            chatData.setConversationId((String) callMethod(chatObj, "M_"));
-            chatData.setTimestamp((Long) callMethod(chatObj, "i"));
+            chatData.setMessageId((String) Handles.chat.CHAT_GET_ID.invoke(chatObj));
+            chatData.setText((String) Handles.chat.CHAT_GET_TEXT.invoke(chatObj));
+            chatData.setSender((String) Handles.chat.CHAT_SENDER.get(chatObj));
+            chatData.setConversationId((String) Handles.chat.CHAT_GET_CONVERSATION_ID.invoke(chatObj));
+            chatData.setTimestamp((Long) Handles.chat.CHAT_GET_TIMESTAMP.invoke(chatObj));
             chatData.setFriendName(getFriendNameFromId(chatData.getConversationId()));
 
             chatDBHelper.insertChat(chatData);
@@ -225,7 +229,7 @@ public class Chat {
                     protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
                         super.beforeHookedMethod(param);
 
-                        if (!Preferences.getBool(Prefs.CHAT_MEDIA_SAVE))
+                        if (!Preferences.getSnapshot().chatMediaSave)
                             return;
 
                         Logger.printTitle("Building Video Media - Stage 1", LogType.CHAT);
@@ -253,7 +257,7 @@ public class Chat {
             protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
                 super.beforeHookedMethod(param);
 
-                if (!Preferences.getBool(Prefs.CHAT_MEDIA_SAVE))
+                if (!Preferences.getSnapshot().chatMediaSave)
                     return;
 
 
@@ -298,7 +302,7 @@ public class Chat {
                     protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
                         super.beforeHookedMethod(param);
 
-                        if (!Preferences.getBool(Prefs.CHAT_MEDIA_SAVE))
+                        if (!Preferences.getSnapshot().chatMediaSave)
                             return;
 
                         MotionEvent event = (MotionEvent) param.args[0];
@@ -455,7 +459,7 @@ public class Chat {
                     protected void afterHookedMethod(final MethodHookParam param) throws Throwable {
                         super.afterHookedMethod(param);
 
-                        if (!Preferences.getBool(Prefs.CHAT_MEDIA_SAVE))
+                        if (!Preferences.getSnapshot().chatMediaSave)
                             return;
 
                         final ImageView imageView = (ImageView) getObjectField(param.thisObject, "n");
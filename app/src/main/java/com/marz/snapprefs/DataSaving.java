@@ -1,6 +1,11 @@
 package com.marz.snapprefs;
 
-import de.robv.android.xposed.XC_MethodReplacement;
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Obfuscation.Handles;
+import com.marz.snapprefs.PreloadPolicy.Decision;
+import com.marz.snapprefs.PreloadPolicy.Source;
+
+import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedHelpers;
 import de.robv.android.xposed.callbacks.XC_LoadPackage;
 
@@ -16,8 +21,13 @@ public class DataSaving {
             Class<?> DownloadRequestHolder = findClass(Obfuscator.datasaving.DOWNLOADREQUEST_HOLDER_CLASS, lpparam.classLoader);
             //TODO CHECK THE BELOW LINE!
             //Lots of refactoring happened to the below line and thus may have changed it's outcome
-            findAndHookMethod(Obfuscator.datasaving.DSNAPDOWNLOADER_CLASS, lpparam.classLoader, Obfuscator.datasaving.DSNAPDOWNLOADER_DOWNLOADSNAP, DownloadRequestHolder, XC_MethodReplacement.DO_NOTHING);
-            findAndHookMethod(Obfuscator.datasaving.DSNAPDOWNLOAD_CLASS, lpparam.classLoader, "a", String.class, XposedHelpers.findClass(Obfuscator.datasaving.DSNAPDOWNLOAD_PARAM, lpparam.classLoader), XC_MethodReplacement.DO_NOTHING);
+            findAndHookMethod(Obfuscator.datasaving.DSNAPDOWNLOADER_CLASS, lpparam.classLoader, Obfuscator.datasaving.DSNAPDOWNLOADER_DOWNLOADSNAP, DownloadRequestHolder, new PolicyHook(Source.DISCOVER_SNAP) {
+                @Override
+                String getKey(MethodHookParam param) {
+                    return (String) Handles.datasaving.DOWNLOADREQUEST_HOLDER_URL.get(param.args[0]);
+                }
+            });
+            findAndHookMethod(Obfuscator.datasaving.DSNAPDOWNLOAD_CLASS, lpparam.classLoader, "a", String.class, XposedHelpers.findClass(Obfuscator.datasaving.DSNAPDOWNLOAD_PARAM, lpparam.classLoader), new PolicyHook(Source.DISCOVER_SNAP));
         } catch (Throwable t) {
             Logger.log("Error while blocking DSnap Downloading", true);
             Logger.log(t.toString());
@@ -28,7 +38,7 @@ public class DataSaving {
         try {
             //Class<?> ChannelPage = findClass("com.snapchat.android.discover.model.ChannelPage", lpparam.classLoader);
             //findAndHookMethod("afh", lpparam.classLoader, "a", ChannelPage, boolean.class, XC_MethodReplacement.returnConstant(false));
-            findAndHookMethod(Obfuscator.datasaving.DSNAPINTRODOWNLOAD_CLASS, lpparam.classLoader, "a", String.class, XposedHelpers.findClass(Obfuscator.datasaving.DSNAPDOWNLOAD_PARAM, lpparam.classLoader), XC_MethodReplacement.DO_NOTHING);
+            findAndHookMethod(Obfuscator.datasaving.DSNAPINTRODOWNLOAD_CLASS, lpparam.classLoader, "a", String.class, XposedHelpers.findClass(Obfuscator.datasaving.DSNAPDOWNLOAD_PARAM, lpparam.classLoader), new PolicyHook(Source.DISCOVER_INTRO));
             //findAndHookMethod(Obfuscator.datasaving.CHANNELDOWNLOADER_CLASS, lpparam.classLoader, Obfuscator.datasaving.CHANNELDOWNLOADER_START, Cursor.class, XC_MethodReplacement.returnConstant(null));
         } catch (Throwable t) {
             Logger.log("Error while blocking Channel Intro Download", true);
@@ -37,11 +47,56 @@ public class DataSaving {
     }
     static void blockStoryPreLoad(final XC_LoadPackage.LoadPackageParam lpparam){
         try {
-            findAndHookMethod(Obfuscator.datasaving.LIVESTORYPRELOAD_CLASS, lpparam.classLoader, Obfuscator.datasaving.LIVESTORYPRELOAD_METHOD, XC_MethodReplacement.DO_NOTHING);
+            findAndHookMethod(Obfuscator.datasaving.LIVESTORYPRELOAD_CLASS, lpparam.classLoader, Obfuscator.datasaving.LIVESTORYPRELOAD_METHOD, new PolicyHook(Source.LIVE_STORY) {
+                @Override
+                String getKey(MethodHookParam param) {
+                    return (String) Handles.datasaving.LIVESTORYPRELOAD_USERNAME.get(param.thisObject);
+                }
+            });
             //findAndHookMethod(Obfuscator.datasaving.STORYPRELOAD_CLASS, lpparam.classLoader, Obfuscator.datasaving.STORYPRELOAD_METHOD, XC_MethodReplacement.DO_NOTHING);
         } catch (Throwable t){
             Logger.log("Error while blocking Story preload", true);
             Logger.log(t.toString());
         }
     }
+
+    /**
+     * Lets the {@link PreloadPolicy} decide whether the hooked download goes ahead.
+     * By default requests are told apart by their first String argument, e.g. the DSnap id.
+     */
+    private static class PolicyHook extends XC_MethodHook {
+        private final Source source;
+
+        PolicyHook(Source source) {
+            this.source = source;
+            PreloadPolicy.init();
+        }
+
+        /**
+         * @return What tells this request apart from the others of its source, or null
+         */
+        String getKey(MethodHookParam param) {
+            for (Object arg : param.args) {
+                if (arg instanceof String)
+                    return (String) arg;
+            }
+
+            return null;
+        }
+
+        @Override
+        protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
+            String key;
+
+            try {
+                key = getKey(param);
+            } catch (Throwable t) {
+                Logger.log("Failed to read the " + source + " preload key: " + t, LogType.DEBUG);
+                key = null;
+            }
+
+            if (PreloadPolicy.decide(source, key) != Decision.DOWNLOAD)
+                param.setResult(null);
+        }
+    }
 }
@@ -0,0 +1,433 @@
+package com.marz.snapprefs.Databases;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.marz.snapprefs.Logger;
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Util.LensData;
+import com.marz.snapprefs.Util.LensIconLoader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes lens archives, a compact streaming format for sharing collected lenses.
+ * <p>
+ * An archive starts with a magic number, a version and a flags byte. The records follow,
+ * gzipped when {@link #FLAG_COMPRESSED} is set. Every record is a type byte, the length of
+ * its payload and the payload, so readers skip types they don't know. A lens record holds
+ * the columns of one lens, an icon record the name of a file in the lens icon folder and
+ * its bytes. The archive ends with an end record, which tells a complete archive from a
+ * truncated one.
+ * <p>
+ * Exporting walks a database cursor and importing inserts in transactions of
+ * {@link #BATCH_SIZE} lenses, so neither holds more than a batch in memory.
+ */
+public class LensArchive {
+    public static final String EXTENSION = "splens";
+    public static final int FLAG_COMPRESSED = 1;
+    public static final int FLAG_ICONS = 2;
+    private static final int MAGIC = 0x53504C41; // "SPLA"
+    private static final int VERSION = 1;
+    private static final int RECORD_END = 0;
+    private static final int RECORD_LENS = 1;
+    private static final int RECORD_ICON = 2;
+    private static final int MAX_LENS_RECORD = 64 * 1024;
+    private static final int BATCH_SIZE = 500;
+    // Only names LensIconLoader produces, an archive must not write anywhere else
+    private static final Pattern ICON_NAME = Pattern.compile("[0-9a-f]{64}\\.png");
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private LensArchive() {
+    }
+
+    /**
+     * Write every lens of the database to the archive file.
+     *
+     * @param iconFolder The lens icon folder, or null to leave the icons out
+     */
+    public static Result export(LensDatabaseHelper database, File file, boolean compress, File iconFolder) throws IOException {
+        long start = System.currentTimeMillis();
+        int flags = (compress ? FLAG_COMPRESSED : 0) | (iconFolder != null ? FLAG_ICONS : 0);
+        OutputStream raw = new BufferedOutputStream(new FileOutputStream(file));
+        Result result = new Result();
+
+        try {
+            DataOutputStream header = new DataOutputStream(raw);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeByte(flags);
+            header.flush();
+
+            DataOutputStream out = new DataOutputStream(compress ? new GZIPOutputStream(raw, 8192) : raw);
+            ByteArrayOutputStream scratch = new ByteArrayOutputStream(512);
+            byte[] buffer = new byte[8192];
+            Cursor cursor = database.queryAllLenses();
+
+            try {
+                while (cursor.moveToNext()) {
+                    LensData lensData = database.getLensFromCursor(cursor);
+
+                    if (lensData == null)
+                        continue;
+
+                    writeLens(out, lensData, scratch);
+                    result.lenses++;
+
+                    // Icons follow their lens, so the export doesn't remember which it has written
+                    if (iconFolder != null && lensData.mIconLink != null &&
+                            writeIcon(out, iconFolder, LensIconLoader.getIconFileName(lensData.mIconLink), buffer))
+                        result.icons++;
+                }
+            } finally {
+                cursor.close();
+            }
+
+            out.writeByte(RECORD_END);
+            out.writeInt(0);
+            out.close();
+        } finally {
+            raw.close();
+        }
+
+        result.millis = System.currentTimeMillis() - start;
+        Logger.log(String.format("Exported lens archive: %s", result), LogType.LENS);
+        return result;
+    }
+
+    /**
+     * Insert the lenses of an archive that the database doesn't have yet.
+     *
+     * @param iconFolder Where icons in the archive are written, or null to skip them
+     */
+    public static Result importArchive(LensDatabaseHelper database, File file, File iconFolder) throws IOException {
+        long start = System.currentTimeMillis();
+        InputStream raw = new BufferedInputStream(new FileInputStream(file));
+        Result result = new Result();
+
+        try {
+            DataInputStream header = new DataInputStream(raw);
+
+            if (header.readInt() != MAGIC)
+                throw new IOException("Not a lens archive");
+
+            int version = header.readUnsignedByte();
+
+            if (version > VERSION)
+                throw new IOException("Unsupported lens archive version: " + version);
+
+            int flags = header.readUnsignedByte();
+            DataInputStream in = new DataInputStream((flags & FLAG_COMPRESSED) != 0 ? new GZIPInputStream(raw, 8192) : raw);
+            List<LensData> batch = new ArrayList<>(BATCH_SIZE);
+            byte[] buffer = new byte[8192];
+
+            while (true) {
+                int type = in.readUnsignedByte();
+                int length = in.readInt();
+
+                if (length < 0)
+                    throw new IOException("Corrupt lens archive");
+
+                if (type == RECORD_END)
+                    break;
+
+                if (type == RECORD_LENS) {
+                    if (length > MAX_LENS_RECORD)
+                        throw new IOException("Corrupt lens archive");
+
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    batch.add(readLens(payload));
+                    result.lenses++;
+
+                    if (batch.size() == BATCH_SIZE)
+                        result.inserted += flush(database, batch);
+                } else if (type == RECORD_ICON && iconFolder != null) {
+                    if (readIcon(in, length, iconFolder, buffer))
+                        result.icons++;
+                } else {
+                    skip(in, length, buffer);
+                }
+            }
+
+            result.inserted += flush(database, batch);
+        } finally {
+            raw.close();
+        }
+
+        result.millis = System.currentTimeMillis() - start;
+        Logger.log(String.format("Imported lens archive: %s", result), LogType.LENS);
+        return result;
+    }
+
+    private static int flush(LensDatabaseHelper database, List<LensData> batch) {
+        if (batch.isEmpty())
+            return 0;
+
+        int inserted = database.insertLenses(batch);
+        batch.clear();
+        return inserted;
+    }
+
+    private static void writeLens(DataOutputStream out, LensData lensData, ByteArrayOutputStream scratch) throws IOException {
+        scratch.reset();
+        DataOutputStream record = new DataOutputStream(scratch);
+        writeString(record, lensData.mCode);
+        writeString(record, lensData.mType != null ? lensData.mType.name() : null);
+        writeString(record, lensData.mHintId);
+        writeString(record, lensData.mIconLink);
+        writeString(record, lensData.mId);
+        writeString(record, lensData.mLensLink);
+        writeString(record, lensData.mSignature);
+        writeString(record, lensData.name);
+        record.writeBoolean(lensData.mActive);
+        record.writeLong(lensData.selTime);
+        record.flush();
+
+        out.writeByte(RECORD_LENS);
+        out.writeInt(scratch.size());
+        scratch.writeTo(out);
+    }
+
+    private static LensData readLens(byte[] payload) throws IOException {
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+        LensData lensData = new LensData();
+        lensData.mCode = readString(record);
+        String type = readString(record);
+        lensData.mHintId = readString(record);
+        lensData.mIconLink = readString(record);
+        lensData.mId = readString(record);
+        lensData.mLensLink = readString(record);
+        lensData.mSignature = readString(record);
+        lensData.name = readString(record);
+        lensData.mActive = record.readBoolean();
+        lensData.selTime = record.readLong();
+
+        if (lensData.mCode == null)
+            throw new IOException("Corrupt lens archive");
+
+        try {
+            lensData.mType = type != null ? LensData.LensType.valueOf(type) : LensData.LensType.SCHEDULED;
+        } catch (IllegalArgumentException e) {
+            lensData.mType = LensData.LensType.SCHEDULED;
+        }
+
+        return lensData;
+    }
+
+    /**
+     * @return Whether the icon was on disk and got written
+     */
+    private static boolean writeIcon(DataOutputStream out, File iconFolder, String name, byte[] buffer) throws IOException {
+        File icon = new File(iconFolder, name);
+
+        if (!icon.isFile())
+            return false;
+
+        byte[] nameBytes = name.getBytes("UTF-8");
+        long length = icon.length();
+        InputStream in = new FileInputStream(icon);
+
+        try {
+            out.writeByte(RECORD_ICON);
+            out.writeInt((int) (2 + nameBytes.length + length));
+            out.writeShort(nameBytes.length);
+            out.write(nameBytes);
+
+            // Copy exactly the announced length, even if the file changes meanwhile
+            long remaining = length;
+
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+
+                if (read == -1)
+                    throw new IOException("Icon changed during export: " + icon);
+
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        } finally {
+            in.close();
+        }
+
+        return true;
+    }
+
+    /**
+     * @return Whether the icon was written, it's skipped when it already exists
+     */
+    private static boolean readIcon(DataInputStream in, int length, File iconFolder, byte[] buffer) throws IOException {
+        int nameLength = in.readUnsignedShort();
+
+        if (nameLength + 2 > length)
+            throw new IOException("Corrupt lens archive");
+
+        byte[] nameBytes = new byte[nameLength];
+        in.readFully(nameBytes);
+        String name = new String(nameBytes, "UTF-8");
+        int remaining = length - 2 - nameLength;
+        File icon = new File(iconFolder, name);
+
+        if (!ICON_NAME.matcher(name).matches() || icon.exists()) {
+            skip(in, remaining, buffer);
+            return false;
+        }
+
+        if (!iconFolder.exists() && !iconFolder.mkdirs())
+            throw new IOException("Failed to create " + iconFolder);
+
+        File temp = new File(icon.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+
+        try {
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, Math.min(buffer.length, remaining));
+
+                if (read == -1)
+                    throw new IOException("Truncated lens archive");
+
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(icon)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Failed to replace " + icon);
+        }
+
+        return true;
+    }
+
+    private static void skip(DataInputStream in, int length, byte[] buffer) throws IOException {
+        while (length > 0) {
+            int read = in.read(buffer, 0, Math.min(buffer.length, length));
+
+            if (read == -1)
+                throw new IOException("Truncated lens archive");
+
+            length -= read;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Compare merging a copied lens database with exporting and importing an archive, on
+     * generated lenses in the cache folder.
+     *
+     * @return A summary of both timings
+     */
+    public static String benchmark(Context context, int lensCount) throws IOException {
+        File folder = new File(context.getCacheDir(), "lens-benchmark");
+
+        if (!folder.exists() && !folder.mkdirs())
+            throw new IOException("Failed to create " + folder);
+
+        File sourceFile = new File(folder, "source.db");
+        File mergeFile = new File(folder, "merge.db");
+        File importFile = new File(folder, "import.db");
+        File archiveFile = new File(folder, "lenses." + EXTENSION);
+
+        try {
+            LensDatabaseHelper source = new LensDatabaseHelper(context, sourceFile.getPath());
+            List<LensData> batch = new ArrayList<>(BATCH_SIZE);
+
+            for (int i = 0; i < lensCount; i++) {
+                batch.add(generateLens(i));
+
+                if (batch.size() == BATCH_SIZE)
+                    flush(source, batch);
+            }
+
+            flush(source, batch);
+            source.close();
+
+            // The merge logs every lens, which is part of what it costs
+            LensDatabaseHelper merged = new LensDatabaseHelper(context, mergeFile.getPath());
+            long mergeStart = System.currentTimeMillis();
+            int mergedCount = LensDatabaseHelper.mergeLensDatabases(merged, new LensDatabaseHelper(context, sourceFile.getPath()));
+            long mergeMillis = System.currentTimeMillis() - mergeStart;
+            merged.close();
+
+            source = new LensDatabaseHelper(context, sourceFile.getPath());
+            Result exported = export(source, archiveFile, true, null);
+            source.close();
+
+            LensDatabaseHelper imported = new LensDatabaseHelper(context, importFile.getPath());
+            Result importResult = importArchive(imported, archiveFile, null);
+            imported.close();
+
+            String summary = String.format(Locale.ENGLISH,
+                    "%s lenses: merge %sms (%s merged), archive export %sms + import %sms (%s inserted, %s KiB)",
+                    lensCount, mergeMillis, mergedCount, exported.millis, importResult.millis,
+                    importResult.inserted, archiveFile.length() / 1024);
+            Logger.log("Lens archive benchmark: " + summary, LogType.LENS.setForced());
+            return summary;
+        } finally {
+            for (File file : new File[]{sourceFile, mergeFile, importFile, archiveFile}) {
+                //noinspection ResultOfMethodCallIgnored
+                file.delete();
+                //noinspection ResultOfMethodCallIgnored
+                new File(file.getPath() + "-journal").delete();
+            }
+        }
+    }
+
+    private static LensData generateLens(int index) {
+        LensData lensData = new LensData();
+        lensData.mCode = String.format(Locale.ENGLISH, "benchmark-%08d", index);
+        lensData.mType = LensData.LensType.SCHEDULED;
+        lensData.mHintId = "HINT_" + index;
+        lensData.mIconLink = "https://example.com/lens/" + index + "/icon.png";
+        lensData.mId = Integer.toString(index);
+        lensData.mLensLink = "https://example.com/lens/" + index + "/lens.zip";
+        lensData.mSignature = Long.toHexString(index * 0x9E3779B97F4A7C15L);
+        lensData.mActive = index % 10 == 0;
+        lensData.selTime = 2000000000L;
+        return lensData;
+    }
+
+    public static class Result {
+        public int lenses;
+        public int inserted;
+        public int icons;
+        public long millis;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH, "%s lenses, %s inserted, %s icons in %sms", lenses, inserted, icons, millis);
+        }
+    }
+}
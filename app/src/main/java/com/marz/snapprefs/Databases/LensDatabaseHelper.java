@@ -3,8 +3,10 @@ package com.marz.snapprefs.Databases;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.provider.BaseColumns;
+import android.text.TextUtils;
 
 import com.marz.snapprefs.Logger;
 import com.marz.snapprefs.Logger.LogType;
@@ -12,7 +14,10 @@ import com.marz.snapprefs.Preferences;
 import com.marz.snapprefs.Util.LensData;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.marz.snapprefs.Databases.CoreDatabaseHandler.CallbackHandler.getCallback;
@@ -41,6 +46,11 @@ public class LensDatabaseHelper extends CachedDatabaseHandler {
     private static final String INT_TYPE = " INTEGER";
     private static final String COMMA_SEP = ",";
     private static final String DEF_SEL_TIME_VAL = "2000000000";
+    private static final int MAX_BOUND_ARGS = 500;
+    // Names shown for unnamed lenses are their code with spaces for underscores
+    private static final String PARTIAL_SELECTION =
+            "REPLACE(" + LensEntry.COLUMN_NAME_MCODE + ", '_', ' ') LIKE ? OR " +
+                    LensEntry.COLUMN_NAME_MCODE + " LIKE ? OR " + LensEntry.COLUMN_NAME_LENS_NAME + " LIKE ?";
     private static final String SQL_DELETE_ENTRIES =
             "DROP TABLE IF EXISTS " + LensEntry.TABLE_NAME;
     private static final String[] SQL_CREATE_ENTRIES = {
@@ -56,7 +66,8 @@ public class LensDatabaseHelper extends CachedDatabaseHandler {
                     LensEntry.COLUMN_NAME_ACTIVE + INT_TYPE + " DEFAULT 0," +
                     LensEntry.COLUMN_NAME_SEL_TIME + INT_TYPE + " DEFAULT " + DEF_SEL_TIME_VAL + COMMA_SEP +
                     LensEntry.COLUMN_NAME_LENS_NAME + TEXT_TYPE + " )"};
-    private static String DEFAULT_DB_NAME = Preferences.getContentPath() + "/Lenses.db";
+    public static final String DATABASE_FILE = "Lenses.db";
+    private static String DEFAULT_DB_NAME = Preferences.getContentPath() + "/" + DATABASE_FILE;
     private final String DATABASE_NAME;
 
     public LensDatabaseHelper(Context context) {
@@ -156,6 +167,13 @@ public class LensDatabaseHelper extends CachedDatabaseHandler {
         onUpgrade(db, oldVersion, newVersion);
     }
 
+    /**
+     * Forget cached query results, they don't see changes made by another process.
+     */
+    public void invalidateQueryCache() {
+        super.invalidateCache();
+    }
+
     public long getRowCount() {
         return super.getRowCount(LensEntry.TABLE_NAME);
     }
@@ -166,6 +184,39 @@ public class LensDatabaseHelper extends CachedDatabaseHandler {
         Logger.log("New Lens Row ID: " + newRowId, LogType.DATABASE);
     }
 
+    /**
+     * Insert lenses in one transaction, keeping the existing row when a code is already present.
+     *
+     * @return The number of lenses that were inserted
+     */
+    public int insertLenses(List<LensData> lenses) {
+        SQLiteDatabase db = getDatabase();
+        int inserted = 0;
+
+        db.beginTransaction();
+        try {
+            for (LensData lensData : lenses) {
+                if (db.insertWithOnConflict(LensEntry.TABLE_NAME, null, lensData.getContent(),
+                        SQLiteDatabase.CONFLICT_IGNORE) != -1)
+                    inserted++;
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        super.invalidateCache();
+        return inserted;
+    }
+
+    /**
+     * @return A cursor over every lens, to be read with {@link #getLensFromCursor(Cursor)} and closed by the caller
+     */
+    Cursor queryAllLenses() {
+        return getDatabase().query(LensEntry.TABLE_NAME, fullProjection, null, null, null, null, null);
+    }
+
     public boolean containsLens(String mCode) {
         Logger.log("Getting lens from database", LogType.DATABASE);
 
@@ -174,53 +225,139 @@ public class LensDatabaseHelper extends CachedDatabaseHandler {
         return super.containsObject(LensEntry.TABLE_NAME, LensEntry.COLUMN_NAME_MCODE, selectionArgs);
     }
 
+    /**
+     * Flip the active state of a lens with a single update, activating also stamps its selection time.
+     *
+     * @return The new active state
+     */
     public boolean toggleLensActiveState(String mCode) throws Exception {
         Logger.log("Toggling lens state", LogType.DATABASE);
-        boolean activeState = !getLensActiveState(mCode);
+        SQLiteDatabase db = getDatabase();
+        String[] selectionArgs = {mCode};
+        boolean activeState;
+
+        db.beginTransaction();
+        try {
+            db.execSQL("UPDATE " + LensEntry.TABLE_NAME + " SET " +
+                    LensEntry.COLUMN_NAME_SEL_TIME + " = CASE WHEN " + LensEntry.COLUMN_NAME_ACTIVE + " = 0 THEN " +
+                    System.currentTimeMillis() + " ELSE " + DEF_SEL_TIME_VAL + " END, " +
+                    LensEntry.COLUMN_NAME_ACTIVE + " = CASE WHEN " + LensEntry.COLUMN_NAME_ACTIVE + " = 0 THEN 1 ELSE 0 END" +
+                    " WHERE " + LensEntry.COLUMN_NAME_MCODE + " = ?", selectionArgs);
+            activeState = DatabaseUtils.longForQuery(db, "SELECT " + LensEntry.COLUMN_NAME_ACTIVE + " FROM " +
+                    LensEntry.TABLE_NAME + " WHERE " + LensEntry.COLUMN_NAME_MCODE + " = ?", selectionArgs) != 0;
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        super.invalidateCache();
         Logger.log("Current state: " + activeState, LogType.DATABASE);
+        return activeState;
+    }
 
-        ContentValues values = new ContentValues();
-        values.put(LensEntry.COLUMN_NAME_ACTIVE, activeState ? 1 : 0);
-        values.put(LensEntry.COLUMN_NAME_SEL_TIME, (activeState ? Long.toString(System.currentTimeMillis()) : Integer.toString(2000000000)));
+    public int getActiveLensCount() {
+        //Logger.log("Getting lens from database");
 
-        String[] selectionArgs = {mCode};
+        String[] selectionArgs = {"1"};
 
-        super.updateObject(LensEntry.TABLE_NAME, LensEntry.COLUMN_NAME_MCODE, selectionArgs, values);
+        //Logger.log("Query count: " + count);
 
-        return activeState;
+        return super.getCount(LensEntry.TABLE_NAME, LensEntry.COLUMN_NAME_ACTIVE, selectionArgs, fullProjection);
     }
 
-    private boolean getLensActiveState(String mCode) throws Exception {
-        Logger.log("Getting lens from database", LogType.DATABASE);
+    public int setActiveStateOfAllLenses(boolean newState) {
+        return updateActiveState(null, new String[0], newState);
+    }
 
-        String[] selectionArgs = {mCode};
-        String sortOrder =
-                LensEntry.COLUMN_NAME_MCODE + " DESC";
+    public int setActiveStateOfType(LensData.LensType type, boolean newState) {
+        return updateActiveState(LensEntry.COLUMN_NAME_TYPE + " = ?", new String[]{type.name()}, newState);
+    }
 
-        String[] projection = {LensEntry.COLUMN_NAME_ACTIVE};
-        Logger.log("Performing query: " + LensEntry.COLUMN_NAME_MCODE + mCode, LogType.DATABASE);
+    /**
+     * Set the active state of the lenses the lens selector shows for a search.
+     *
+     * @param partial The search, or null for every lens
+     */
+    public int setActiveStateMatching(String partial, boolean newState) {
+        if (partial == null || partial.isEmpty())
+            return setActiveStateOfAllLenses(newState);
 
-        ContentValues values = super.getContent(LensEntry.TABLE_NAME, LensEntry.COLUMN_NAME_MCODE, selectionArgs, sortOrder, projection);
-        int activeState = (int) values.get(LensEntry.COLUMN_NAME_ACTIVE);
-        return activeState != 0;
+        return updateActiveState(PARTIAL_SELECTION, partialSelectionArgs(partial), newState);
     }
 
-    public int getActiveLensCount() {
-        //Logger.log("Getting lens from database");
+    /**
+     * Set the active state of the given lenses.
+     *
+     * @return The number of lenses that were changed
+     */
+    public int setActiveState(Collection<String> mCodes, boolean newState) {
+        List<String> codes = new ArrayList<>(mCodes);
+        SQLiteDatabase db = getDatabase();
+        int updated = 0;
 
-        String[] selectionArgs = {"1"};
+        db.beginTransaction();
+        try {
+            // SQLite binds at most 999 arguments per statement, stay well below that
+            for (int start = 0; start < codes.size(); start += MAX_BOUND_ARGS) {
+                List<String> chunk = codes.subList(start, Math.min(start + MAX_BOUND_ARGS, codes.size()));
+                updated += updateActiveState(db, LensEntry.COLUMN_NAME_MCODE + " IN (" + placeholders(chunk.size()) + ")",
+                        chunk.toArray(new String[chunk.size()]), newState);
+            }
 
-        //Logger.log("Query count: " + count);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
-        return super.getCount(LensEntry.TABLE_NAME, LensEntry.COLUMN_NAME_ACTIVE, selectionArgs, fullProjection);
+        super.invalidateCache();
+        Logger.log(String.format("Set %s of %s lenses %s", updated, codes.size(), newState ? "active" : "inactive"), LogType.DATABASE);
+        return updated;
     }
 
-    public void setActiveStateOfAllLenses(boolean newState) {
+    /**
+     * Run one update of the active state in a transaction and invalidate the cache once.
+     */
+    private int updateActiveState(String selection, String[] selectionArgs, boolean newState) {
+        SQLiteDatabase db = getDatabase();
+        int updated;
 
-        getDatabase().execSQL("UPDATE " + LensDatabaseHelper.LensEntry.TABLE_NAME + " SET " +
-                LensDatabaseHelper.LensEntry.COLUMN_NAME_ACTIVE + "=" + (newState ? "1" : "0"));
+        db.beginTransaction();
+        try {
+            updated = updateActiveState(db, selection, selectionArgs, newState);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
 
         super.invalidateCache();
+        Logger.log(String.format("Set %s lenses %s", updated, newState ? "active" : "inactive"), LogType.DATABASE);
+        return updated;
+    }
+
+    /**
+     * Lenses already in the new state are left out, so they aren't rewritten.
+     */
+    private static int updateActiveState(SQLiteDatabase db, String selection, String[] selectionArgs, boolean newState) {
+        ContentValues values = new ContentValues();
+        values.put(LensEntry.COLUMN_NAME_ACTIVE, newState ? 1 : 0);
+
+        String where = LensEntry.COLUMN_NAME_ACTIVE + " != " + (newState ? 1 : 0) +
+                (selection != null ? " AND (" + selection + ")" : "");
+        return db.update(LensEntry.TABLE_NAME, values, where, selectionArgs);
+    }
+
+    private static String[] partialSelectionArgs(String partial) {
+        String pattern = "%" + partial + "%";
+        return new String[]{pattern, pattern, pattern};
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder(count * 2);
+
+        for (int i = 0; i < count; i++)
+            builder.append(i == 0 ? "?" : ",?");
+
+        return builder.toString();
     }
 
     public LensData getLens(String mCode) {
@@ -299,6 +436,74 @@ public class LensDatabaseHelper extends CachedDatabaseHandler {
         return (Map<String, Object>) super.getAllBuiltObjects(LensEntry.TABLE_NAME, null, orderBy, callback);
     }
 
+    /**
+     * Read one page of the lenses shown in the lens selector, in the order of {@link #getAllLenses()}.
+     * Only the code, name, icon link, active state, selection time and rowid are filled in.
+     * <p>
+     * A page continues after the last lens of the previous one rather than at an offset, so
+     * lenses that are toggled, and move in the order, or deleted meanwhile don't shift the
+     * pages that follow. A lens that moves past the end of the loaded pages is read again.
+     *
+     * @param partial Only lenses whose code or name contains this, or null for all
+     * @param after   The last lens of the previous page, or null for the first page
+     */
+    public List<LensData> getLensPage(String partial, LensData after, int limit) {
+        String[] projection = {
+                LensEntry.COLUMN_NAME_MCODE,
+                LensEntry.COLUMN_NAME_LENS_NAME,
+                LensEntry.COLUMN_NAME_MICONLINK,
+                LensEntry.COLUMN_NAME_ACTIVE,
+                LensEntry.COLUMN_NAME_SEL_TIME,
+                "rowid"
+        };
+        boolean bySelection = Preferences.getBool(Preferences.Prefs.LENSES_SORT_BY_SEL);
+        List<String> conditions = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+
+        if (partial != null && !partial.isEmpty()) {
+            conditions.add("(" + PARTIAL_SELECTION + ")");
+            args.addAll(Arrays.asList(partialSelectionArgs(partial)));
+        }
+
+        if (after != null) {
+            if (bySelection) {
+                conditions.add("(" + LensEntry.COLUMN_NAME_SEL_TIME + " > ? OR (" + LensEntry.COLUMN_NAME_SEL_TIME +
+                        " = ? AND rowid > ?))");
+                args.add(String.valueOf(after.selTime));
+                args.add(String.valueOf(after.selTime));
+            } else
+                conditions.add("rowid > ?");
+
+            args.add(String.valueOf(after.rowId));
+        }
+
+        String selection = conditions.isEmpty() ? null : TextUtils.join(" AND ", conditions);
+        String[] selectionArgs = args.isEmpty() ? null : args.toArray(new String[args.size()]);
+
+        // The rowid breaks ties, so every lens has a unique place to continue after
+        String orderBy = (bySelection ? LensEntry.COLUMN_NAME_SEL_TIME + " ASC, " : "") + "rowid ASC";
+        Cursor cursor = getDatabase().query(LensEntry.TABLE_NAME, projection, selection, selectionArgs,
+                null, null, orderBy, String.valueOf(limit));
+        List<LensData> page = new ArrayList<>(cursor.getCount());
+
+        try {
+            while (cursor.moveToNext()) {
+                LensData lensData = new LensData();
+                lensData.mCode = cursor.getString(0);
+                lensData.name = cursor.getString(1);
+                lensData.mIconLink = cursor.getString(2);
+                lensData.mActive = cursor.getShort(3) != 0;
+                lensData.selTime = cursor.getLong(4);
+                lensData.rowId = cursor.getLong(5);
+                page.add(lensData);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return page;
+    }
+
     public boolean deleteLens(String mCode) {
         String[] selectionArgs = {mCode};
 
@@ -0,0 +1,303 @@
+package com.marz.snapprefs;
+
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Util.StartupTracer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Initialises the Snapprefs features in dependency order.
+ * <p>
+ * Each {@link Feature} declares the features it depends on, the preference condition that
+ * enables it and the Snapchat classes it is going to resolve. Those class lookups don't
+ * need the main thread, so they are started in parallel before the first feature runs and
+ * overlap with the hook installation of the features before it.
+ * <p>
+ * Features whose condition is off are skipped and stay pending; they are initialised on a
+ * later {@link #initialise(ClassLoader)} call once their preference has been enabled.
+ * Every feature is initialised at most once, so calling this from repeated lifecycle hooks
+ * doesn't stack duplicate hooks. A feature whose initialisation throws is recorded as failed
+ * and isn't tried again, nor are the features depending on it, as it may have installed part
+ * of its hooks already.
+ * <p>
+ * The preload threads are shared by all phases. They are created on first use and stop
+ * again once they've been idle for a while.
+ */
+class FeatureInitialiser {
+    private static final int PRELOAD_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long PRELOAD_KEEP_ALIVE_SECONDS = 30;
+    private static ThreadPoolExecutor preloader;
+
+    private final String phaseName;
+    private final LinkedHashMap<String, Feature> features = new LinkedHashMap<>();
+    private final HashSet<String> initialised = new HashSet<>();
+    private final HashSet<String> failed = new HashSet<>();
+
+    FeatureInitialiser(String phaseName) {
+        this.phaseName = phaseName;
+    }
+
+    FeatureInitialiser add(Feature feature) {
+        if (features.containsKey(feature.name))
+            throw new IllegalArgumentException("Duplicate feature: " + feature.name);
+
+        features.put(feature.name, feature);
+        return this;
+    }
+
+    boolean isInitialised(String name) {
+        synchronized (initialised) {
+            return initialised.contains(name);
+        }
+    }
+
+    /**
+     * Initialise every pending feature whose condition currently holds.
+     *
+     * @param classLoader The Snapchat classloader used to resolve the preload classes
+     */
+    void initialise(final ClassLoader classLoader) {
+        long phaseStart = System.nanoTime();
+        PreferenceSnapshot prefs = Preferences.getSnapshot();
+        List<Feature> order = resolveOrder(prefs);
+
+        if (order.isEmpty())
+            return;
+
+        ExecutorService preloader = getPreloader();
+        LinkedHashMap<String, Future<List<String>>> preloads = new LinkedHashMap<>();
+
+        for (final Feature feature : order) {
+            if (feature.preloadClasses.length == 0)
+                continue;
+
+            preloads.put(feature.name, preloader.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws Exception {
+                    StartupTracer.Span span = StartupTracer.begin("preload " + feature.name, phaseName);
+
+                    try {
+                        return preloadClasses(feature.preloadClasses, classLoader);
+                    } finally {
+                        span.end();
+                    }
+                }
+            }));
+        }
+
+        List<String> report = new ArrayList<>();
+
+        for (Feature feature : order) {
+            if (!dependenciesInitialised(feature)) {
+                report.add(String.format(Locale.ENGLISH, "%s: skipped, dependency failed", feature.name));
+                continue;
+            }
+
+            long waitStart = System.nanoTime();
+            Future<List<String>> preload = preloads.get(feature.name);
+
+            if (preload != null) {
+                try {
+                    List<String> missing = preload.get();
+
+                    if (!missing.isEmpty())
+                        Logger.log(String.format("[%s] Unresolved classes: %s", feature.name, missing), LogType.STARTUP.setForced());
+                } catch (Exception e) {
+                    Logger.log("Preload failed for " + feature.name, e, LogType.STARTUP);
+                }
+            }
+
+            long initStart = System.nanoTime();
+            StartupTracer.Span span = StartupTracer.begin(feature.name, phaseName);
+
+            try {
+                feature.init();
+
+                synchronized (initialised) {
+                    initialised.add(feature.name);
+                }
+            } catch (Throwable t) {
+                synchronized (initialised) {
+                    failed.add(feature.name);
+                }
+
+                Logger.log("Error initialising feature " + feature.name + ", it won't be retried", t, LogType.STARTUP);
+            } finally {
+                span.end();
+            }
+
+            long end = System.nanoTime();
+            report.add(String.format(Locale.ENGLISH, "%s: %.2fms (waited %.2fms on preload)",
+                    feature.name, (end - initStart) / 1e6, (initStart - waitStart) / 1e6));
+        }
+
+        List<String> deferred = new ArrayList<>();
+
+        for (Feature feature : features.values()) {
+            if (!isInitialised(feature.name) && !isFailed(feature.name) && !order.contains(feature))
+                deferred.add(feature.name);
+        }
+
+        Logger.printTitle(phaseName + " feature startup", LogType.STARTUP);
+
+        for (String line : report)
+            Logger.printMessage(line, LogType.STARTUP);
+
+        if (!deferred.isEmpty())
+            Logger.printMessage("Deferred: " + deferred, LogType.STARTUP);
+
+        synchronized (initialised) {
+            if (!failed.isEmpty())
+                Logger.printMessage("Failed: " + failed, LogType.STARTUP);
+        }
+
+        Logger.printFinalMessage(String.format(Locale.ENGLISH, "Total: %.2fms",
+                (System.nanoTime() - phaseStart) / 1e6), LogType.STARTUP);
+    }
+
+    private boolean isFailed(String name) {
+        synchronized (initialised) {
+            return failed.contains(name);
+        }
+    }
+
+    private static synchronized ExecutorService getPreloader() {
+        if (preloader == null) {
+            preloader = new ThreadPoolExecutor(PRELOAD_THREADS, PRELOAD_THREADS, PRELOAD_KEEP_ALIVE_SECONDS,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new PreloadThreadFactory());
+            preloader.allowCoreThreadTimeOut(true);
+        }
+
+        return preloader;
+    }
+
+    /**
+     * Build a dependency ordered list of the pending features that are enabled and whose
+     * dependencies are either initialised already or part of this run.
+     */
+    private List<Feature> resolveOrder(PreferenceSnapshot prefs) {
+        List<Feature> order = new ArrayList<>();
+        HashSet<String> visiting = new HashSet<>();
+        HashSet<String> rejected = new HashSet<>();
+
+        for (Feature feature : features.values())
+            visit(feature, prefs, order, visiting, rejected);
+
+        return order;
+    }
+
+    private boolean visit(Feature feature, PreferenceSnapshot prefs, List<Feature> order,
+                          HashSet<String> visiting, HashSet<String> rejected) {
+        if (isInitialised(feature.name) || order.contains(feature))
+            return true;
+
+        if (rejected.contains(feature.name) || isFailed(feature.name))
+            return false;
+
+        if (!visiting.add(feature.name))
+            throw new IllegalStateException("Cyclic feature dependency at " + feature.name);
+
+        boolean accepted = feature.condition.isEnabled(prefs);
+
+        for (String dependencyName : feature.dependencies) {
+            Feature dependency = features.get(dependencyName);
+
+            if (dependency == null)
+                throw new IllegalStateException(feature.name + " depends on unknown feature " + dependencyName);
+
+            if (!visit(dependency, prefs, order, visiting, rejected))
+                accepted = false;
+        }
+
+        visiting.remove(feature.name);
+
+        if (accepted)
+            order.add(feature);
+        else
+            rejected.add(feature.name);
+
+        return accepted;
+    }
+
+    private boolean dependenciesInitialised(Feature feature) {
+        for (String dependency : feature.dependencies) {
+            if (!isInitialised(dependency))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static List<String> preloadClasses(String[] classNames, ClassLoader classLoader) {
+        List<String> missing = new ArrayList<>();
+
+        for (String className : classNames) {
+            try {
+                // Only load and link, static initialisers stay on Snapchat's own schedule
+                Class.forName(className, false, classLoader);
+            } catch (Throwable t) {
+                missing.add(className);
+            }
+        }
+
+        return missing;
+    }
+
+    interface Condition {
+        Condition ALWAYS = new Condition() {
+            @Override
+            public boolean isEnabled(PreferenceSnapshot prefs) {
+                return true;
+            }
+        };
+
+        boolean isEnabled(PreferenceSnapshot prefs);
+    }
+
+    static abstract class Feature {
+        final String name;
+        final Condition condition;
+        final String[] dependencies;
+        String[] preloadClasses = new String[0];
+
+        Feature(String name, Condition condition, String... dependencies) {
+            this.name = name;
+            this.condition = condition;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * Declare the Snapchat classes this feature resolves, so they can be loaded off the main thread.
+         */
+        Feature preload(String... classNames) {
+            this.preloadClasses = classNames;
+            return this;
+        }
+
+        abstract void init() throws Throwable;
+    }
+
+    private static class PreloadThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Snapprefs-preload-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
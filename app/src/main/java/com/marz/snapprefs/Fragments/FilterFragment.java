@@ -18,8 +18,8 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.marz.snapprefs.R;
-import com.marz.snapprefs.Util.DrawableManager;
 import com.marz.snapprefs.Util.FilterPreview;
+import com.marz.snapprefs.Util.ImageFetcher;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
@@ -106,7 +106,7 @@ public class FilterFragment extends Fragment {
             vh.image.setImageBitmap(null);
             String text = vh.filter.name + "\nAuthor: " + vh.filter.author + "\n Score: " + vh.filter.score;
             vh.title.setText(text);
-            DrawableManager.fetchDrawableOnThread(vh.filter.preview, vh.image);
+            ImageFetcher.getInstance(getActivity()).fetchInto(vh.filter.preview, vh.image);
             if (vh.filter.downloaded)
                 vh.title.setBackgroundColor(getResources().getColor(R.color.primary));
             else
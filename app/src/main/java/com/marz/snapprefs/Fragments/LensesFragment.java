@@ -1,10 +1,10 @@
 package com.marz.snapprefs.Fragments;
 
 import android.app.AlertDialog;
-import android.content.ContentValues;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.support.v7.widget.GridLayoutManager;
@@ -31,20 +31,25 @@ import android.widget.Toast;
 
 import com.marz.snapprefs.Adapters.LensListAdapter;
 import com.marz.snapprefs.Common;
+import com.marz.snapprefs.Databases.LensArchive;
 import com.marz.snapprefs.Databases.LensDatabaseHelper;
-import com.marz.snapprefs.Databases.LensDatabaseHelper.LensEntry;
 import com.marz.snapprefs.Lens;
 import com.marz.snapprefs.Logger;
 import com.marz.snapprefs.Logger.LogType;
 import com.marz.snapprefs.Preferences;
 import com.marz.snapprefs.Preferences.Prefs;
 import com.marz.snapprefs.R;
-import com.marz.snapprefs.Util.BitmapCache;
 import com.marz.snapprefs.Util.LensData;
+import com.marz.snapprefs.Util.LensIconLoader;
 import com.marz.snapprefs.Util.ViewCache;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
 
 import static android.app.Activity.RESULT_OK;
 
@@ -53,83 +58,59 @@ import static android.app.Activity.RESULT_OK;
  * It and its contents are free to use by all
  */
 public class LensesFragment extends Fragment {
-    public static BitmapCache bitmapCache = new BitmapCache(8);
     public LensListAdapter lensListAdapter;
     private final DialogInterface.OnClickListener onSelectAllClick = new DialogInterface.OnClickListener() {
         @Override
         public void onClick(DialogInterface dialog, int which) {
-            if (lensListAdapter == null)
-                return;
-
-            LensDatabaseHelper dbHelper = Lens.getLensDatabase(getContext());
-            ContentValues values = new ContentValues();
-            values.put(LensEntry.COLUMN_NAME_ACTIVE, 1);
-
-            //Disable logging for batch updates - Performance improvement for large updates
-            Logger.disableLogging();
-            for (LensItemData itemData : lensListAdapter.lensDataList) {
-                if (itemData.isActive)
-                    continue;
-
-                dbHelper.updateLens(itemData.lensCode, values);
-                itemData.isActive = true;
-            }
-            Logger.enableLogging();
-
-            lensListAdapter.notifyDataSetChanged();
+            setActiveStateOfShownLenses(true);
         }
     };
     private final DialogInterface.OnClickListener onDeslectAllClick = new DialogInterface.OnClickListener() {
         @Override
         public void onClick(DialogInterface dialog, int which) {
-            if (lensListAdapter == null)
-                return;
-
-            LensDatabaseHelper dbHelper = Lens.getLensDatabase(getContext());
-            ContentValues values = new ContentValues();
-            values.put(LensEntry.COLUMN_NAME_ACTIVE, 0);
-
-            //Disable logging for batch updates - Performance improvement for large updates
-            Logger.disableLogging();
-            for (LensItemData itemData : lensListAdapter.lensDataList) {
-                if (!itemData.isActive)
-                    continue;
-
-                dbHelper.updateLens(itemData.lensCode, values);
-                itemData.isActive = false;
+            setActiveStateOfShownLenses(false);
+        }
+    };
+    private final LensListAdapter.PageSource lensPageSource = new LensListAdapter.PageSource() {
+        @Override
+        public List<LensItemData> loadPage(String filter, LensItemData after, int limit) {
+            List<LensItemData> page = new ArrayList<>();
+            LensData afterData = null;
+
+            if (after != null) {
+                afterData = new LensData();
+                afterData.selTime = after.selTime;
+                afterData.rowId = after.rowId;
             }
-            Logger.enableLogging();
 
-            lensListAdapter.notifyDataSetChanged();
+            for (LensData lensData : Lens.getLensDatabase().getLensPage(filter, afterData, limit))
+                page.add(buildLensItemData(lensData));
+
+            return page;
         }
     };
     private ViewCache viewCache = new ViewCache();
 
-    private static ArrayList<LensItemData> buildLensItemData(LinkedHashMap<String, Object> lensMap, String partialName) {
-        ArrayList<LensItemData> lensList = new ArrayList<>();
-
-        for (Object obj : lensMap.values()) {
-            LensData lensData = (LensData) obj;
-
-            LensItemData itemData = new LensItemData();
-
-            if (lensData.name == null) {
-                String strippedName = Lens.stripLensName(lensData.mCode);
-
-                if (partialName != null && !strippedName.toLowerCase().contains(partialName.toLowerCase()))
-                    continue;
-
-                itemData.lensName = strippedName;
-            } else
-                itemData.lensName = lensData.name;
+    private static LensItemData buildLensItemData(LensData lensData) {
+        LensItemData itemData = new LensItemData();
+        itemData.lensName = lensData.name == null ? Lens.stripLensName(lensData.mCode) : lensData.name;
+        itemData.lensCode = lensData.mCode;
+        itemData.url = lensData.mIconLink;
+        itemData.isActive = lensData.mActive;
+        itemData.selTime = lensData.selTime;
+        itemData.rowId = lensData.rowId;
+        return itemData;
+    }
 
-            itemData.lensCode = lensData.mCode;
-            itemData.url = lensData.mIconLink;
-            itemData.isActive = lensData.mActive;
-            lensList.add(itemData);
-        }
+    /**
+     * Set the active state of every lens matching the filter, not just the loaded ones.
+     */
+    private void setActiveStateOfShownLenses(boolean newState) {
+        if (lensListAdapter == null)
+            return;
 
-        return lensList;
+        Lens.getLensDatabase(getContext()).setActiveStateMatching(lensListAdapter.getFilter(), newState);
+        lensListAdapter.setAllActive(newState);
     }
 
     public View onCreateView(final LayoutInflater inflater, final ViewGroup container, Bundle savedInstanceState) {
@@ -148,6 +129,7 @@ public class LensesFragment extends Fragment {
         Switch sortBySelDate = (Switch) view.findViewById(R.id.sort_lens_by_sel_date);
         Switch hideCurrProvidedSCLenses = (Switch) view.findViewById(R.id.hide_current_snapchat_lenses);
         Button btnMerger = (Button) view.findViewById(R.id.btn_db_merger);
+        Button btnExport = (Button) view.findViewById(R.id.btn_lens_export);
 
         loadLensSwitch.setChecked(Preferences.getBool(Prefs.LENSES_LOAD));
         collectLensSwitch.setChecked(Preferences.getBool(Prefs.LENSES_COLLECT));
@@ -209,7 +191,29 @@ public class LensesFragment extends Fragment {
                 Intent intent = new Intent();
                 intent.setType("file/*");
                 intent.setAction(Intent.ACTION_GET_CONTENT);
-                startActivityForResult(Intent.createChooser(intent, "Choose Slave DB to merge"), 1);
+                startActivityForResult(Intent.createChooser(intent, "Choose a lens database or archive"), 1);
+            }
+        });
+
+        btnExport.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                new AlertDialog.Builder(view.getContext())
+                        .setTitle("Export Lenses")
+                        .setMessage("Include the lens icons? They make the archive much larger.")
+                        .setPositiveButton("With icons", new DialogInterface.OnClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which) {
+                                exportLenses(true);
+                            }
+                        })
+                        .setNegativeButton("Without icons", new DialogInterface.OnClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which) {
+                                exportLenses(false);
+                            }
+                        })
+                        .show();
             }
         });
 
@@ -228,18 +232,11 @@ public class LensesFragment extends Fragment {
 
     private void lensDialog(final Context context, LayoutInflater inflater,
                             ViewGroup container) {
-        LinkedHashMap<String, Object> lensMap = (LinkedHashMap<String, Object>) Lens.getLensDatabase(context).getAllLenses();
-
-        if (lensMap == null) {
-            Logger.log("Tried to create dialog with no lenses");
-            return;
-        }
-
         AlertDialog.Builder builder = new AlertDialog.Builder(context);
         builder.setTitle("Select Lenses");
         View view = inflater.inflate(R.layout.lenslist_layout, container, false);
 
-        RecyclerView recyclerView = setupRecyclerView(lensMap, view);
+        RecyclerView recyclerView = setupRecyclerView(view);
         setupLensSpanSeekbar(view, recyclerView);
         setupFilterSelector(view);
         setupSelectionButtons(context, view);
@@ -258,10 +255,9 @@ public class LensesFragment extends Fragment {
         }
     }
 
-    private RecyclerView setupRecyclerView(LinkedHashMap<String, Object> lensMap, final View view) {
+    private RecyclerView setupRecyclerView(final View view) {
         RelativeLayout recyclerContainer = (RelativeLayout) view.findViewById(R.id.lens_list_holder);
-        ArrayList<LensItemData> itemDataList = buildLensItemData(lensMap, null);
-        lensListAdapter = new LensListAdapter(view.getContext(), itemDataList, this, bitmapCache);
+        lensListAdapter = new LensListAdapter(view.getContext(), lensPageSource, this);
 
         RecyclerView recyclerView = new RecyclerView(getContext()) {
             @Override
@@ -281,7 +277,9 @@ public class LensesFragment extends Fragment {
         layoutParams.gravity = Gravity.CENTER;
         recyclerView.setLayoutParams(layoutParams);
         recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setHasFixedSize(true);
         recyclerView.setAdapter(lensListAdapter);
+        recyclerView.addOnScrollListener(new LensListAdapter.Prefetcher());
         recyclerView.setVerticalScrollBarEnabled(true);
 
         recyclerContainer.addView(recyclerView);
@@ -295,8 +293,8 @@ public class LensesFragment extends Fragment {
         spanCount.setOnSeekBarChangeListener(new OnSeekBarChangeListener() {
             @Override
             public void onProgressChanged(SeekBar seekBar, int i, boolean b) {
-                RecyclerView.LayoutManager layoutManager = new GridLayoutManager(view.getContext(), i + 1);
-                recyclerView.setLayoutManager(layoutManager);
+                // Changing the span keeps the scroll position and the prefetcher follows it
+                ((GridLayoutManager) recyclerView.getLayoutManager()).setSpanCount(i + 1);
                 Preferences.setPref(Prefs.LENS_SELECTOR_SPAN, i + 1);
             }
 
@@ -352,16 +350,8 @@ public class LensesFragment extends Fragment {
 
             @Override
             public void afterTextChanged(Editable editable) {
-                LensDatabaseHelper dbHelper = Lens.getLensDatabase(view.getContext());
-                LinkedHashMap<String, Object> lensMap = (LinkedHashMap<String, Object>) dbHelper.getAllWithPartial(editable.toString());
-
                 Logger.log("Checking for partial: " + editable.toString());
-                if (lensMap == null)
-                    lensListAdapter.lensDataList.clear();
-                else
-                    lensListAdapter.lensDataList = buildLensItemData(lensMap, editable.toString());
-
-                lensListAdapter.notifyDataSetChanged();
+                lensListAdapter.setFilter(editable.toString());
             }
         });
     }
@@ -384,6 +374,11 @@ public class LensesFragment extends Fragment {
             String extension = filenameArray[filenameArray.length - 1];
             Logger.log("Extension: " + extension);
 
+            if (extension.equals(LensArchive.EXTENSION)) {
+                importLenses(new File(filePath));
+                return;
+            }
+
             if (!extension.equals("db")) {
                 Logger.log("Incorrect filetype: " + extension, LogType.LENS);
                 Toast.makeText(getContext(), "Incorrect filetype supplied: " + extension, Toast.LENGTH_SHORT).show();
@@ -403,10 +398,73 @@ public class LensesFragment extends Fragment {
         }
     }
 
+    private void exportLenses(final boolean withIcons) {
+        final LensDatabaseHelper database = Lens.getLensDatabase(getContext());
+        final File file = new File(Preferences.getSavePath(), "Lenses-" +
+                new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ENGLISH).format(new Date()) + "." + LensArchive.EXTENSION);
+
+        new LensArchiveTask() {
+            @Override
+            String run() throws IOException {
+                LensArchive.Result result = LensArchive.export(database, file, true, withIcons ? getIconFolder() : null);
+                return String.format(Locale.ENGLISH, "Exported %s lenses to %s", result.lenses, file.getPath());
+            }
+        }.execute();
+    }
+
+    private void importLenses(final File file) {
+        final LensDatabaseHelper database = Lens.getLensDatabase(getContext());
+
+        new LensArchiveTask() {
+            @Override
+            String run() throws IOException {
+                LensArchive.Result result = LensArchive.importArchive(database, file, getIconFolder());
+
+                if (result.inserted == 0)
+                    return "Found no lenses to import!";
+
+                return String.format(Locale.ENGLISH, "Successfully imported %s lenses!", result.inserted);
+            }
+        }.execute();
+    }
+
+    private static File getIconFolder() {
+        return new File(Preferences.getSavePath(), LensIconLoader.ICON_FOLDER);
+    }
+
+    /**
+     * Runs an archive operation off the main thread and toasts its outcome.
+     */
+    private abstract class LensArchiveTask extends AsyncTask<Void, Void, String> {
+        abstract String run() throws IOException;
+
+        @Override
+        protected String doInBackground(Void... params) {
+            try {
+                return run();
+            } catch (IOException e) {
+                Logger.log("Lens archive operation failed", e, LogType.LENS);
+                return "Failed: " + e.getMessage();
+            }
+        }
+
+        @Override
+        protected void onPostExecute(String message) {
+            if (getContext() == null)
+                return;
+
+            refreshLensCount();
+            Toast.makeText(getContext(), message, Toast.LENGTH_LONG).show();
+        }
+    }
+
     public static class LensItemData {
         public String lensCode;
         public String lensName;
         public String url;
         public boolean isActive;
+        // Where the lens was in the order when it was loaded, the next page continues after it
+        public long selTime;
+        public long rowId;
     }
 }
@@ -22,8 +22,8 @@ import android.widget.TextView;
 
 import com.marz.snapprefs.MainActivity;
 import com.marz.snapprefs.R;
-import com.marz.snapprefs.Util.DrawableManager;
 import com.marz.snapprefs.Util.FilterPreview;
+import com.marz.snapprefs.Util.ImageFetcher;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
@@ -144,7 +144,7 @@ public class VisualFragment extends Fragment {
             vh.filter = filters.get(position);
             vh.image.setImageBitmap(null);
             vh.title.setText(vh.filter.name);
-            DrawableManager.fetchDrawableOnThread(vh.filter.preview, vh.image);
+            ImageFetcher.getInstance(getActivity()).fetchInto(vh.filter.preview, vh.image);
             if (vh.filter.enabled)
                 vh.title.setBackgroundColor(getResources().getColor(R.color.primary));
             else
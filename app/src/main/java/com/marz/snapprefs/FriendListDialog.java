@@ -4,15 +4,18 @@ import android.app.AlertDialog;
 import android.app.Dialog;
 import android.app.DialogFragment;
 import android.content.DialogInterface;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.widget.LinearLayout;
 import android.widget.Toast;
 
-import com.marz.snapprefs.Util.FileUtils;
 import com.marz.snapprefs.Adapters.ViewDataAdapter;
+import com.marz.snapprefs.Logger.LogType;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -40,14 +43,33 @@ public class FriendListDialog extends DialogFragment {
                         new DialogInterface.OnClickListener() {
                             public void onClick(DialogInterface dialog, int whichButton) {
                                 friendList = ViewDataAdapter.getFriendList();
-                                String selected = "";
+                                final List<String> selected = new ArrayList<>();
+                                final List<String> unselected = new ArrayList<>();
                                 for (Friend friend : friendList) {
-                                    if (friend.isSelected()) {
-                                        selected = selected + friend.getName() + ";";
-                                    }
+                                    if (friend.isSelected())
+                                        selected.add(friend.getName());
+                                    else
+                                        unselected.add(friend.getName());
                                 }
-                                Toast.makeText(HookMethods.SnapContext, "Restart the app to see changes", Toast.LENGTH_SHORT).show();
-                                FileUtils.writeToSDFolder(selected, "blockedstories");
+                                // The journal write syncs to disk, keep it off the UI thread
+                                new AsyncTask<Void, Void, Boolean>() {
+                                    @Override
+                                    protected Boolean doInBackground(Void... params) {
+                                        try {
+                                            Stories.getBlockedList().update(selected, unselected);
+                                            return true;
+                                        } catch (IOException e) {
+                                            Logger.log("Failed to save the blocked stories list", e, LogType.STORIES);
+                                            return false;
+                                        }
+                                    }
+
+                                    @Override
+                                    protected void onPostExecute(Boolean saved) {
+                                        Toast.makeText(HookMethods.SnapContext, saved ? "Refresh the stories to see changes" :
+                                                "Failed to save the blocked list", Toast.LENGTH_SHORT).show();
+                                    }
+                                }.execute();
                             }
                         }
                 )
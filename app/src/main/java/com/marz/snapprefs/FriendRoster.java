@@ -0,0 +1,164 @@
+package com.marz.snapprefs;
+
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Obfuscation.Handles;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.robv.android.xposed.XC_MethodHook;
+import de.robv.android.xposed.XposedHelpers;
+
+/**
+ * One shared copy of Snapchat's friend list for the features that show or match friends.
+ * <p>
+ * The FriendManager is read once per friends update into an immutable {@link Snapshot},
+ * sorted by username and indexed by lower case username. Readers always get a complete
+ * snapshot and never walk the FriendManager themselves.
+ */
+public class FriendRoster {
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static volatile Snapshot snapshot;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private FriendRoster() {
+    }
+
+    static void init(ClassLoader classLoader) {
+        XposedHelpers.findAndHookMethod(Obfuscator.friendmojis.FRIEND_MANAGER_CLASS, classLoader, Obfuscator.friendmojis.ON_FRIENDS_UPDATE_METHOD, new XC_MethodHook() {
+            @Override
+            protected void afterHookedMethod(MethodHookParam param) throws Throwable {
+                update(param.thisObject);
+            }
+        });
+    }
+
+    /**
+     * @return The latest roster, read from the FriendManager if no update has been seen yet
+     */
+    public static Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+
+        if (current == null) {
+            Object friendManager = XposedHelpers.callStaticMethod(
+                    XposedHelpers.findClass(Obfuscator.stories.FRIENDMANAGER_CLASS, HookMethods.classLoader),
+                    Obfuscator.stories.FRIENDMANAGER_RETURNINSTANCE);
+            current = update(friendManager);
+        }
+
+        return current;
+    }
+
+    /**
+     * Get called with every new roster, on the thread that updated Snapchat's friends.
+     */
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    private static Snapshot update(Object friendManager) {
+        long start = System.nanoTime();
+        List friends = (List) XposedHelpers.callMethod(
+                XposedHelpers.getObjectField(friendManager, Obfuscator.friendmojis.FRIENDS_MAP_FIELD),
+                Obfuscator.friendmojis.GET_VALUES_METHOD);
+        ArrayList<Entry> entries = new ArrayList<>(friends.size());
+
+        for (Object friend : friends) {
+            String username = (String) Handles.friends.GET_USERNAME.invoke(friend);
+
+            if (username != null)
+                entries.add(new Entry(username, (String) Handles.friends.GET_DISPLAYNAME.invoke(friend)));
+        }
+
+        Snapshot updated = new Snapshot(entries);
+        snapshot = updated;
+
+        Logger.log(String.format("Friend roster updated with %s friends in %sus",
+                entries.size(), (System.nanoTime() - start) / 1000), LogType.DEBUG);
+
+        for (Listener listener : listeners) {
+            try {
+                listener.onRosterUpdated(updated);
+            } catch (Throwable t) {
+                Logger.log("Friend roster listener failed", t, LogType.DEBUG);
+            }
+        }
+
+        return updated;
+    }
+
+    public interface Listener {
+        void onRosterUpdated(Snapshot roster);
+    }
+
+    public static class Entry {
+        public final String username;
+        public final String displayName;
+
+        Entry(String username, String displayName) {
+            this.username = username;
+            this.displayName = displayName != null ? displayName : "";
+        }
+    }
+
+    public static class Snapshot {
+        private final List<Entry> entries;
+        private final HashMap<String, Entry> byUsername;
+
+        private Snapshot(ArrayList<Entry> entries) {
+            Collections.sort(entries, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry o1, Entry o2) {
+                    return o1.username.compareTo(o2.username);
+                }
+            });
+
+            this.entries = Collections.unmodifiableList(entries);
+            this.byUsername = new HashMap<>(entries.size() * 2);
+
+            for (Entry entry : entries)
+                byUsername.put(entry.username.toLowerCase(Locale.ENGLISH), entry);
+        }
+
+        /**
+         * @return Every friend sorted by username
+         */
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public Entry get(String username) {
+            return byUsername.get(username.toLowerCase(Locale.ENGLISH));
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+        /**
+         * Build a fresh, editable {@link Friend} list for the selection dialogs.
+         *
+         * @param selected The usernames to mark as selected
+         */
+        public List<Friend> toFriends(Collection<String> selected) {
+            ArrayList<Friend> friends = new ArrayList<>(entries.size());
+
+            for (Entry entry : entries) {
+                Friend friend = new Friend(entry.username);
+                friend.setDisplayName(entry.displayName);
+                friend.setSelected(selected != null && selected.contains(entry.username));
+                friends.add(friend);
+            }
+
+            return friends;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.marz.snapprefs;
+
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Util.CommonUtils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves friendmojis into a {@link FriendmojiStore}, refreshing only the users whose entry
+ * is missing or older than the TTL.
+ * <p>
+ * The server answers for a single hashed username per request, so a refresh is batched on
+ * our side: the stale users of one roster update are fetched by a small bounded pool and the
+ * store is written once when the whole batch is done. The base URL is a constructor
+ * argument so the service can be pointed at a local stub server.
+ */
+public class FriendmojiService {
+    public static final long TTL = 604800000;
+    private static final int MAX_PARALLEL_REQUESTS = 4;
+
+    private final String baseUrl;
+    private final FriendmojiStore store;
+    private final Set<String> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(new NamedThreadFactory("Snapprefs-friendmoji"));
+    private final ExecutorService fetchers = Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS, new NamedThreadFactory("Snapprefs-friendmoji-fetch"));
+
+    public FriendmojiService(String baseUrl, FriendmojiStore store) {
+        this.baseUrl = baseUrl;
+        this.store = store;
+    }
+
+    /**
+     * Queue a refresh of every user in the list whose friendmoji is unknown or stale.
+     */
+    public void refresh(Collection<String> usernames) {
+        final List<String> batch = new ArrayList<>(usernames);
+
+        coordinator.execute(new Runnable() {
+            @Override
+            public void run() {
+                refreshBatch(batch);
+            }
+        });
+    }
+
+    private void refreshBatch(List<String> usernames) {
+        long start = System.currentTimeMillis();
+        List<String> stale = new ArrayList<>();
+
+        for (String username : usernames) {
+            String key = FriendmojiStore.normalise(username);
+
+            if (!store.isFresh(key, start, TTL) && inFlight.add(key))
+                stale.add(key);
+        }
+
+        if (stale.isEmpty()) {
+            Logger.log(String.format("All %s friendmojis are fresh", usernames.size()), LogType.DEBUG);
+            return;
+        }
+
+        List<Future<Boolean>> results = new ArrayList<>(stale.size());
+
+        for (final String key : stale) {
+            results.add(fetchers.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    try {
+                        store.put(key, fetch(key), System.currentTimeMillis());
+                        return true;
+                    } finally {
+                        inFlight.remove(key);
+                    }
+                }
+            }));
+        }
+
+        int fetched = 0;
+
+        for (Future<Boolean> result : results) {
+            try {
+                if (result.get())
+                    fetched++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // Left stale, it's retried with the next roster update
+                Logger.log("Friendmoji fetch failed: " + e.getCause(), LogType.DEBUG);
+            }
+        }
+
+        try {
+            store.save();
+        } catch (IOException e) {
+            Logger.log("Failed to save friendmojis", e, LogType.DEBUG);
+        }
+
+        Logger.log(String.format("Refreshed %s of %s stale friendmojis in %sms (%s users)",
+                fetched, stale.size(), System.currentTimeMillis() - start, usernames.size()), LogType.DEBUG);
+    }
+
+    /**
+     * @return The friendmoji for the user, or null when they have none
+     */
+    String fetch(String key) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl).openConnection();
+
+        try {
+            connection.setReadTimeout(10000);
+            connection.setConnectTimeout(15000);
+            connection.setRequestMethod("POST");
+            connection.setDoInput(true);
+            connection.setDoOutput(true);
+            OutputStream os = connection.getOutputStream();
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
+            try {
+                writer.write("username=" + URLEncoder.encode(CommonUtils.sha256(key), "UTF-8"));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e.getMessage());
+            } finally {
+                writer.close();
+            }
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+            StringBuilder response = new StringBuilder();
+            String inputLine;
+            try {
+                while ((inputLine = in.readLine()) != null)
+                    response.append(inputLine);
+            } finally {
+                in.close();
+            }
+
+            JSONObject object = new JSONObject(response.toString());
+            //don't ask me why it's called error_msg
+            return object.getInt("status") == 1 ? object.getString("error_msg") : null;
+        } catch (JSONException e) {
+            throw new IOException("Invalid friendmoji response: " + e.getMessage());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.marz.snapprefs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Friendmojis by lower case username, each with the time it was fetched.
+ * <p>
+ * Layout of the store file (big endian):
+ * <pre>
+ * int    magic ('SPFM')
+ * short  format version
+ * int    entry count
+ * entry* [UTF username][UTF friendmoji, empty for none][long fetched at]
+ * </pre>
+ * Users without a friendmoji are stored too, so they aren't asked for again until stale.
+ */
+public class FriendmojiStore {
+    private static final int MAGIC = 0x5350464D;
+    private static final short FORMAT_VERSION = 1;
+
+    private final File file;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger version = new AtomicInteger();
+
+    public FriendmojiStore(File file) {
+        this.file = file;
+    }
+
+    public static String normalise(String username) {
+        return username.toLowerCase();
+    }
+
+    /**
+     * @return The friendmoji of a user, or null when they have none or aren't known yet
+     */
+    public String getFriendmoji(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && !entry.friendmoji.isEmpty() ? entry.friendmoji : null;
+    }
+
+    /**
+     * @return A number that changes whenever an entry is added or replaced
+     */
+    public int getVersion() {
+        return version.get();
+    }
+
+    public boolean isFresh(String key, long now, long ttl) {
+        Entry entry = entries.get(key);
+        return entry != null && now - entry.fetchedAt < ttl;
+    }
+
+    public void put(String key, String friendmoji, long fetchedAt) {
+        entries.put(key, new Entry(friendmoji != null ? friendmoji : "", fetchedAt));
+        version.incrementAndGet();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public synchronized void load() throws IOException {
+        DataInputStream in;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            return;
+        }
+
+        try {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a friendmoji store: " + file);
+
+            short format = in.readShort();
+            if (format != FORMAT_VERSION)
+                throw new IOException("Unsupported friendmoji store format " + format + ": " + file);
+
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                String friendmoji = in.readUTF();
+                entries.put(key, new Entry(friendmoji, in.readLong()));
+            }
+        } finally {
+            in.close();
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Write every entry to a temporary file and swap it in with a single rename.
+     */
+    public synchronized void save() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+        try {
+            // Copy first, the count has to match the entries written
+            Map<String, Entry> snapshot = new HashMap<>(entries);
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeInt(snapshot.size());
+
+            for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().friendmoji);
+                out.writeLong(entry.getValue().fetchedAt);
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    private static class Entry {
+        final String friendmoji;
+        final long fetchedAt;
+
+        Entry(String friendmoji, long fetchedAt) {
+            this.friendmoji = friendmoji;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -20,12 +20,7 @@ import android.widget.Toast;
 import com.marz.snapprefs.Logger.LogType;
 import com.marz.snapprefs.Preferences.Prefs;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Created by MARZ on 2016. 04. 14..
@@ -65,33 +60,13 @@ public class GroupDialog extends DialogFragment {
         new Thread(new Runnable() {
             @Override
             public void run() {
-                File[] files = Groups.groupsDir.listFiles();
-                if (files == null) {
-                    if (Groups.groupsDir.mkdir())
-                        Logger.log("Created Groups folder", LogType.GROUPS);
-                    else
-                        Logger.log("Failed to create Groups folder", LogType.GROUPS);
-
-                    return;
-                }
-
-                Arrays.sort(files);
-                List<String> al = new ArrayList<>();
-                // add elements to al, including duplicates
-                Set<Groups.Group> linkedHashSet = new LinkedHashSet<>();
-                linkedHashSet.addAll(Groups.groups);
-                Groups.groups.clear();
-                Groups.groups.addAll(linkedHashSet);
-                final int N = Groups.groups.size();
-                final File[] finalFiles = files;
+                final List<Groups.Group> groups = GroupStore.getGroups();
+                Logger.log(String.format("Listing %s groups", groups.size()), LogType.GROUPS);
+                final int N = groups.size();
                 // total number of textviews to add
                 for (int i = 0; i < N; i++) {
                     final int finalI = i;
-
-                    if (finalI >= finalFiles.length) {
-                        Logger.log(String.format("Tried to create group [Index:%s][MaxIndex:%s]", finalI, finalFiles.length - 1), LogType.GROUPS);
-                        break;
-                    }
+                    final Groups.Group group = groups.get(i);
 
                     Runnable addRowsRunnable = new Runnable() {
                         @Override
@@ -100,7 +75,7 @@ public class GroupDialog extends DialogFragment {
                             final TextView rowTextView = new TextView(HookMethods.context);
 
                             // set some properties of rowTextView or something
-                            rowTextView.setText(finalFiles[finalI].getName());
+                            rowTextView.setText(group.name);
                             rowTextView.setPadding(HookMethods.px(5), HookMethods.px(5), HookMethods.px(5), HookMethods.px(5));
                             rowTextView.setTextSize(20);
                             rowTextView.setTextColor(Color.BLACK);
@@ -108,7 +83,6 @@ public class GroupDialog extends DialogFragment {
                             // add the textview to the linearlayout
                             v.addView(rowTextView);
                             rowTextView.setId(finalI);
-                            final int id_ = rowTextView.getId();
                             rowTextView.setOnClickListener(new View.OnClickListener() {
                                 public void onClick(View view) {
                                     FragmentTransaction ft = HookMethods.SnapContext.getFragmentManager().beginTransaction();
@@ -120,8 +94,7 @@ public class GroupDialog extends DialogFragment {
 
                                     // Create and show the dialog.
                                     DialogFragment newFragment = GroupDialogList.newInstance((String) rowTextView.getText());
-                                    Groups.readGroups();
-                                    GroupDialogList.setGroup(Groups.groups.get(id_));
+                                    GroupDialogList.setGroup(group);
                                     newFragment.show(ft, "dialog");
                                     Groups.sendStoriesUpdateEvent();
                                 }
@@ -138,7 +111,7 @@ public class GroupDialog extends DialogFragment {
                         add.setLayoutParams(new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
                         boolean shouldShowAdd = true;
 
-                        if (Groups.groups.size() == 3 && Preferences.getLicence() == 0)
+                        if (groups.size() >= 3 && Preferences.getLicence() == 0)
                             shouldShowAdd = false;
 
                         if (Preferences.getLicence() != 0 && !Preferences.getBool(Prefs.UNLIM_GROUPS))
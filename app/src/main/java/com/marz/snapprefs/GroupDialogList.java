@@ -13,10 +13,9 @@ import android.widget.LinearLayout;
 import android.widget.Toast;
 
 import com.marz.snapprefs.Groups.Group;
-import com.marz.snapprefs.Util.FileUtils;
 import com.marz.snapprefs.Adapters.GroupDataAdapter;
 
-import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -88,7 +87,7 @@ public class GroupDialogList extends DialogFragment {
         mRecyclerView.setLayoutManager(new LinearLayoutManager(HookMethods.SnapContext));
 
         // create an Object for Adapter
-        Groups.readFriendList(HookMethods.classLoader, group);
+        Groups.readFriendList(group);
         GroupDataAdapter.setFriendList(Groups.friendList);
         mAdapter = new GroupDataAdapter(HookMethods.SnapContext);
 
@@ -108,31 +107,25 @@ public class GroupDialogList extends DialogFragment {
                     @Override
                     public void onClick(View v) {
                         if (eText.length() != 0) {
-                            FileUtils.deleteSDFile(new File(Groups.groupsDir + "/" + name));
+                            GroupStore.removeGroup(name);
                             alertDialog.dismiss();
                         } else {
                             Toast.makeText(HookMethods.SnapContext, "Name is empty", Toast.LENGTH_SHORT).show();
                         }
-                        Groups.readGroups();
                     }
                 });
                 alertDialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(new View.OnClickListener() {
                     @Override
                     public void onClick(View v) {
                         if (eText.length() != 0) {
-                            FileUtils.deleteSDFile(new File(Groups.groupsDir + "/" + name));
                             friendList = GroupDataAdapter.getFriendList();
-                            String selected = eText.getText().toString() + ";";
-                            int numSelected = 0;
+                            ArrayList<String> selected = new ArrayList<>();
                             for (Friend friend : friendList) {
-                                if (friend.isSelected()) {
-                                    numSelected++;
-                                    selected = selected + friend.getName() + ";";
-                                }
+                                if (friend.isSelected())
+                                    selected.add(friend.getName());
                             }
-                            if (numSelected != 0) {
-                                File toWrite = new File(Groups.groupsDir + "/" + eText.getText().toString());
-                                FileUtils.writeToSDFile(selected, toWrite);
+                            if (!selected.isEmpty()) {
+                                GroupStore.putGroup(new Group(eText.getText().toString(), selected), name);
                                 Groups.sendStoriesUpdateEvent();
                                 alertDialog.dismiss();
                             } else {
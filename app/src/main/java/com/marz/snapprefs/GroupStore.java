@@ -0,0 +1,264 @@
+package com.marz.snapprefs;
+
+import android.os.FileObserver;
+
+import com.marz.snapprefs.Groups.Group;
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Util.FileUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Holds the story groups in memory as an immutable, sorted snapshot.
+ * <p>
+ * All groups live in one file, a line per group in the same "name;user;user" form the old
+ * per-group files used. Edits swap in a new snapshot straight away and are written in the
+ * background through a temporary file that replaces the store in one rename. A
+ * {@link FileObserver} picks up changes made to the file from outside, so hooks only ever
+ * read the current snapshot and never touch the disk. Events caused by our own writes, and
+ * any event while a write is still pending, are ignored, so a reload never replaces edits
+ * that haven't reached the file yet.
+ */
+public class GroupStore {
+    static final String STORE_FILE = "Groups.txt";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int OBSERVED_EVENTS = FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.DELETE;
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Snapprefs-groups");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private static volatile List<Group> snapshot = Collections.emptyList();
+    private static File storeFile;
+    // Must stay referenced, an observer stops watching once it is garbage collected
+    private static FileObserver observer;
+    private static int pendingWrites;
+    // What the store looked like after our last write, to recognise the events it causes
+    private static long writtenModified = -1;
+    private static long writtenLength;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private GroupStore() {
+    }
+
+    /**
+     * Load the store, importing the old Groups folder the first time, and start watching it.
+     */
+    static synchronized void init() {
+        if (storeFile != null)
+            return;
+
+        File contentFolder = new File(Preferences.getContentPath());
+        storeFile = new File(contentFolder, STORE_FILE);
+
+        if (!storeFile.exists() && Groups.groupsDir.isDirectory()) {
+            List<Group> imported = importLegacyGroups(Groups.groupsDir);
+
+            if (!imported.isEmpty()) {
+                Logger.log(String.format("Imported %s groups from %s", imported.size(), Groups.groupsDir), LogType.GROUPS);
+                commit(imported);
+            }
+        } else
+            reload();
+
+        observer = new FileObserver(contentFolder.getPath(), OBSERVED_EVENTS) {
+            @Override
+            public void onEvent(int event, String path) {
+                if (STORE_FILE.equals(path))
+                    reloadIfChangedOutside();
+            }
+        };
+        observer.startWatching();
+    }
+
+    /**
+     * @return The current groups sorted by name, the list can't be modified
+     */
+    public static List<Group> getGroups() {
+        return snapshot;
+    }
+
+    public static Group getGroup(String name) {
+        for (Group group : snapshot) {
+            if (group.name.equals(name))
+                return group;
+        }
+
+        return null;
+    }
+
+    /**
+     * Add a group, or replace the group currently stored under {@code previousName}.
+     *
+     * @param previousName The name the group was stored under, or null for a new group
+     */
+    static synchronized void putGroup(Group group, String previousName) {
+        List<Group> groups = new ArrayList<>(snapshot);
+
+        for (int i = groups.size() - 1; i >= 0; i--) {
+            String name = groups.get(i).name;
+
+            if (name.equals(group.name) || name.equals(previousName))
+                groups.remove(i);
+        }
+
+        groups.add(group);
+        commit(groups);
+    }
+
+    static synchronized void removeGroup(String name) {
+        List<Group> groups = new ArrayList<>(snapshot);
+
+        for (int i = groups.size() - 1; i >= 0; i--) {
+            if (groups.get(i).name.equals(name))
+                groups.remove(i);
+        }
+
+        commit(groups);
+    }
+
+    private static synchronized void commit(List<Group> groups) {
+        Collections.sort(groups, new Groups.groupComparator());
+        final List<Group> committed = Collections.unmodifiableList(groups);
+        snapshot = committed;
+        pendingWrites++;
+
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // A later edit has already queued a newer snapshot
+                    if (snapshot == committed)
+                        write(committed);
+                } catch (IOException e) {
+                    Logger.log("Failed to save groups", e, LogType.GROUPS);
+                } finally {
+                    synchronized (GroupStore.class) {
+                        writtenModified = storeFile.lastModified();
+                        writtenLength = storeFile.length();
+                        pendingWrites--;
+                    }
+                }
+            }
+        });
+    }
+
+    private static synchronized void reloadIfChangedOutside() {
+        if (pendingWrites > 0 ||
+                (storeFile.lastModified() == writtenModified && storeFile.length() == writtenLength))
+            return;
+
+        reload();
+    }
+
+    private static synchronized void reload() {
+        try {
+            snapshot = read(storeFile);
+            Logger.log(String.format("Loaded %s groups", snapshot.size()), LogType.GROUPS);
+        } catch (FileNotFoundException e) {
+            snapshot = Collections.emptyList();
+        } catch (IOException e) {
+            Logger.log("Failed to load groups, keeping the current ones", e, LogType.GROUPS);
+        }
+    }
+
+    private static List<Group> read(File file) throws IOException {
+        ArrayList<Group> groups = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                Group group = parseGroup(line);
+
+                if (group != null)
+                    groups.add(group);
+            }
+        } finally {
+            reader.close();
+        }
+
+        Collections.sort(groups, new Groups.groupComparator());
+        return Collections.unmodifiableList(groups);
+    }
+
+    private static void write(List<Group> groups) throws IOException {
+        File temp = new File(storeFile.getPath() + ".tmp");
+        Writer out = new OutputStreamWriter(new FileOutputStream(temp), UTF_8);
+
+        try {
+            for (Group group : groups)
+                out.write(formatGroup(group) + "\n");
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(storeFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Failed to replace " + storeFile);
+        }
+    }
+
+    private static List<Group> importLegacyGroups(File folder) {
+        ArrayList<Group> groups = new ArrayList<>();
+        File[] groupFiles = folder.listFiles();
+
+        if (groupFiles == null)
+            return groups;
+
+        for (File groupFile : groupFiles) {
+            String data = FileUtils.readFromSD(groupFile).replace("\n", "");
+
+            if (data.equalsIgnoreCase("0"))
+                continue;
+
+            Group group = parseGroup(data);
+
+            if (group != null)
+                groups.add(group);
+        }
+
+        return groups;
+    }
+
+    private static Group parseGroup(String line) {
+        String[] groupData = line.split(";");
+
+        if (groupData.length == 0 || groupData[0].isEmpty())
+            return null;
+
+        return new Group(groupData[0], Arrays.asList(groupData).subList(1, groupData.length));
+    }
+
+    private static String formatGroup(Group group) {
+        StringBuilder builder = new StringBuilder(group.name).append(';');
+
+        for (String user : group.users)
+            builder.append(user).append(';');
+
+        return builder.toString();
+    }
+}
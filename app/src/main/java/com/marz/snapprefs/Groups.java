@@ -9,7 +9,7 @@ import android.view.View;
 import android.widget.CheckBox;
 import android.widget.CompoundButton;
 
-import com.marz.snapprefs.Util.FileUtils;
+import com.marz.snapprefs.Obfuscation.Handles;
 import com.marz.snapprefs.Util.NotificationUtils;
 
 import java.io.File;
@@ -19,6 +19,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 
 import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedHelpers;
@@ -30,21 +31,21 @@ import static de.robv.android.xposed.XposedHelpers.findClass;
 import static de.robv.android.xposed.XposedHelpers.newInstance;
 
 public class Groups {
+    private static final int FREE_GROUP_LIMIT = 3;
 
-    public static final ArrayList<Group> groups = new ArrayList<>();
     public static List<Friend> friendList = new ArrayList<>();
     static boolean doneOnce = false;
+    // Where groups were kept one file each, only read to import them into the GroupStore
     static File groupsDir = new File(Environment.getExternalStorageDirectory() + "/Snapprefs/Groups");
+    private static List<Group> limitWarnedFor;
 
     public static void initGroups(final XC_LoadPackage.LoadPackageParam lpparam) throws Throwable {
-        readGroups();
-        final Class<?> Friend = findClass(Obfuscator.select.FRIEND_CLASS, lpparam.classLoader);
+        GroupStore.init();
         final Class<?> Ly = findClass(Obfuscator.groups.STORY_CLASS, lpparam.classLoader);
 
         XposedHelpers.findAndHookMethod(Obfuscator.groups.STORYARRAY_CLASS, lpparam.classLoader, Obfuscator.groups.STORYARRAY_METHOD, new XC_MethodHook() {
             @Override
             protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                readGroups();
                 ArrayList result = (ArrayList) param.getResult();
                 ArrayList<Object> newResult = new ArrayList<>();
                 Object edit = XposedHelpers.newInstance(Ly, "edit", "Edit groups");
@@ -52,13 +53,11 @@ public class Groups {
                 if (!result.contains(edit))
                     newResult.add(edit);
 
-                synchronized (groups) {
-                    for (Group g : groups) {
-                        Object group = XposedHelpers.newInstance(Ly, "group_" + g.name, g.name);
-                        XposedHelpers.setAdditionalInstanceField(group, "group", g);
-                        if (!result.contains(group))
-                            newResult.add(group);
-                    }
+                for (Group g : getVisibleGroups()) {
+                    Object group = XposedHelpers.newInstance(Ly, "group_" + g.name, g.name);
+                    XposedHelpers.setAdditionalInstanceField(group, "group", g);
+                    if (!result.contains(group))
+                        newResult.add(group);
                 }
                 newResult.addAll(result);
                 param.setResult(newResult);
@@ -113,15 +112,10 @@ public class Groups {
                     @Override
                     public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
                         finalChecks.put(group.name, isChecked);
-                        List f = (List) XposedHelpers.getObjectField(param.thisObject, "c");
-                        for (String user : group.users) {
-                            for (Object ii : f) {
-                                if (Friend.isInstance(ii) && ((String) XposedHelpers.getObjectField(ii, "mUsername")).equalsIgnoreCase(user)) {
-                                    callMethod(XposedHelpers.getObjectField(param.thisObject, "h"), "a", new Class[]{int.class, findClass(Obfuscator.groups.INTERFACE, lpparam.classLoader), boolean.class}, callMethod(param.args[0], "getAdapterPosition"), ii, isChecked);
-                                    break;
-                                }
-                            }
-                        }
+                        Object callback = Handles.groups.STORYSECTION_CALLBACK.get(param.thisObject);
+                        int adapterPosition = (Integer) callMethod(param.args[0], "getAdapterPosition");
+                        for (Object friend : FriendIndex.findFriends(param.thisObject, group.users))
+                            Handles.groups.STORYSECTION_CALLBACK_SELECT.invoke(callback, adapterPosition, friend, isChecked);
                     }
                 });
             }
@@ -129,66 +123,30 @@ public class Groups {
     }
 
     // Updated method & content 9.39.5
-    public static void readFriendList(final ClassLoader classLoader,final Group selectedGroup) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                final Object friendManager = callStaticMethod(findClass("com.snapchat.android.model.FriendManager", classLoader), Obfuscator.groups.GETFRIENDMANAGER_METHOD);
-                List friends = (List) XposedHelpers.getObjectField(XposedHelpers.getObjectField(friendManager, "mOutgoingFriendsListMap"), "mList");
-                friendList.clear();
-                for (int i = 0; i <= friends.size() - 1; i++) {
-                    String username = (String) callMethod(friends.get(i), Obfuscator.groups.GETUSERNAME_METHOD);
-                    String displayName = (String) callMethod(friends.get(i), Obfuscator.groups.GETDISPLAYNAME_METHOD);
-                    if (selectedGroup != null && selectedGroup.users.contains(username)) {
-                        friendList.add(new Friend(username, displayName, true));
-                    } else {
-                        friendList.add(new Friend(username, displayName, false));
-                    }
-                }
-                Collections.sort(friendList, new Friend.friendComparator());
-            }
-        }).start();
+    public static void readFriendList(Group selectedGroup) {
+        friendList = FriendRoster.getSnapshot().toFriends(selectedGroup != null ? selectedGroup.users : null);
     }
 
-    public static void readGroups() {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                File groupFolder = groupsDir;
-                if (!groupFolder.exists()) {
-                    groupFolder.mkdir();
-                }
-                File[] groupFiles = groupFolder.listFiles();
-                if (groupFiles == null || groupFiles.length == 0) {
-                    groups.clear();
-                    return;
-                }
-                groups.clear();
-                int numGroups = 0;
-                for (File group : groupFiles) {
-                    String data = FileUtils.readFromSD(group);
-                    if (!data.equalsIgnoreCase("0")) {
-                        String[] groupData = data.split(";");
-                        String name = groupData[0];
-                        ArrayList<String> users = new ArrayList<>(Arrays.asList(groupData));
-                        users.remove(0);
-                        Group currentGroup = new Group(name, users);
-                        if (numGroups == 3 && Preferences.getLicence() == 0) {
-                            NotificationUtils.showMessage("You cannot have more than 3 groups as a free user", Color.RED, NotificationUtils.LENGTH_SHORT, HookMethods.classLoader);
-                            return;
-                        }
-                        if (Preferences.getLicence() != 0 && !Preferences.getBool(Preferences.Prefs.UNLIM_GROUPS) && numGroups > 3) {
-                            NotificationUtils.showMessage("You disabled the option to have more than 3 groups", Color.RED, NotificationUtils.LENGTH_SHORT, HookMethods.classLoader);
-                            return;
-                        }
-                        if (!groups.add(currentGroup))
-                            numGroups++; //add limit for Free users
-                    }
-                }
+    /**
+     * @return The stored groups, cut down to the number of groups the licence allows
+     */
+    static List<Group> getVisibleGroups() {
+        List<Group> groups = GroupStore.getGroups();
 
-                Collections.sort(groups, new Groups.groupComparator());
-            }
-        }).start();
+        if (groups.size() <= FREE_GROUP_LIMIT || (Preferences.getLicence() != 0 && Preferences.getSnapshot().unlimGroups))
+            return groups;
+
+        // Only warn once for every loaded set of groups, not on every list build
+        if (limitWarnedFor != groups) {
+            limitWarnedFor = groups;
+
+            if (Preferences.getLicence() == 0)
+                NotificationUtils.showMessage("You cannot have more than 3 groups as a free user", Color.RED, NotificationUtils.LENGTH_SHORT, HookMethods.classLoader);
+            else
+                NotificationUtils.showMessage("You disabled the option to have more than 3 groups", Color.RED, NotificationUtils.LENGTH_SHORT, HookMethods.classLoader);
+        }
+
+        return groups.subList(0, FREE_GROUP_LIMIT);
     }
 
     public static void sendStoriesUpdateEvent() {
@@ -198,17 +156,16 @@ public class Groups {
     }
 
     static class Group {
-        public String name;
-        public ArrayList<String> users = new ArrayList<>();
+        public final String name;
+        public final List<String> users;
 
         public Group(String name, String... users) {
-            this.name = name;
-            Collections.addAll(this.users, users);
+            this(name, Arrays.asList(users));
         }
 
-        public Group(String name, ArrayList<String> users) {
+        public Group(String name, List<String> users) {
             this.name = name;
-            this.users = users;
+            this.users = Collections.unmodifiableList(new ArrayList<>(users));
         }
 
         public String getName() {
@@ -217,6 +174,94 @@ public class Groups {
 
     }
 
+    /**
+     * Positions of the friends of a send-to section by lower case username, so toggling a group
+     * is a lookup per member instead of a scan of the whole list. Kept on the section.
+     * <p>
+     * Sorting or filtering the list can move friends without replacing the list or changing its
+     * size, so every lookup checks the friend at the remembered position. When that isn't the
+     * friend, or the friend isn't known, the index is rebuilt once for the toggle.
+     */
+    static class FriendIndex {
+        private final List source;
+        private final HashMap<String, Integer> positions;
+
+        private FriendIndex(List source) {
+            this.source = source;
+            this.positions = new HashMap<>(source.size() * 2);
+
+            for (int i = 0; i < source.size(); i++) {
+                String username = getUsername(source.get(i));
+
+                // Keep the first match, like the list scan did
+                if (username != null && !positions.containsKey(username))
+                    positions.put(username, i);
+            }
+        }
+
+        /**
+         * @return The friends of the section with the given usernames, the unknown ones are left out
+         */
+        static List<Object> findFriends(Object storySection, List<String> usernames) {
+            List list = (List) Handles.groups.STORYSECTION_LIST.get(storySection);
+            FriendIndex index = (FriendIndex) XposedHelpers.getAdditionalInstanceField(storySection, "friendIndex");
+            boolean rebuilt = false;
+
+            if (index == null || index.source != list) {
+                index = rebuild(storySection, list);
+                rebuilt = true;
+            }
+
+            List<Object> friends = new ArrayList<>(usernames.size());
+
+            for (String username : usernames) {
+                String key = username.toLowerCase(Locale.ENGLISH);
+                Object friend = index.get(key);
+
+                if (friend == null && !rebuilt) {
+                    index = rebuild(storySection, list);
+                    rebuilt = true;
+                    friend = index.get(key);
+                }
+
+                if (friend != null)
+                    friends.add(friend);
+            }
+
+            return friends;
+        }
+
+        private static FriendIndex rebuild(Object storySection, List list) {
+            FriendIndex index = new FriendIndex(list);
+            XposedHelpers.setAdditionalInstanceField(storySection, "friendIndex", index);
+            return index;
+        }
+
+        /**
+         * @return The lower case username of a friend element, or null for any other element
+         */
+        private static String getUsername(Object element) {
+            if (!Handles.groups.FRIEND.isInstance(element))
+                return null;
+
+            String username = (String) Handles.groups.FRIEND_USERNAME.get(element);
+            return username != null ? username.toLowerCase(Locale.ENGLISH) : null;
+        }
+
+        /**
+         * @return The friend, or null when it isn't at its remembered position
+         */
+        private Object get(String key) {
+            Integer position = positions.get(key);
+
+            if (position == null || position >= source.size())
+                return null;
+
+            Object element = source.get(position);
+            return key.equals(getUsername(element)) ? element : null;
+        }
+    }
+
     public static class groupComparator implements Comparator<Group> {
         @Override
         public int compare(Group o1, Group o2) {
@@ -24,10 +24,15 @@ import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.marz.snapprefs.FeatureInitialiser.Condition;
+import com.marz.snapprefs.FeatureInitialiser.Feature;
 import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Obfuscation.Loader;
+import com.marz.snapprefs.Obfuscation.Resolver;
 import com.marz.snapprefs.Preferences.Prefs;
 import com.marz.snapprefs.Util.DebugHelper;
 import com.marz.snapprefs.Util.NotificationUtils;
+import com.marz.snapprefs.Util.StartupTracer;
 import com.marz.snapprefs.Util.XposedUtils;
 
 import java.io.File;
@@ -73,6 +78,8 @@ public class HookMethods
     static int counter = 0;
     private static int snapchatVersion;
     private static InitPackageResourcesParam resParam;
+    private FeatureInitialiser attachFeatures;
+    private FeatureInitialiser activityFeatures;
     Class CaptionEditText;
     boolean latest = false;
 
@@ -143,17 +150,321 @@ public class HookMethods
         }
     }
 
+    private static boolean hasVisualFilterFiles() {
+        return new File(Preferences.getExternalPath() + "/Snapprefs/VisualFilters/xpro_map.png").exists();
+    }
+
+    /**
+     * Features installed from the Application.attach hook, before any Snapchat activity exists.
+     */
+    private FeatureInitialiser getAttachFeatures(final LoadPackageParam lpparam) {
+        if (attachFeatures != null)
+            return attachFeatures;
+
+        attachFeatures = new FeatureInitialiser("Application.attach")
+                .add(new Feature("Resolver", Condition.ALWAYS) {
+                    @Override
+                    void init() {
+                        Resolver.bindAll(lpparam.classLoader);
+                    }
+                })
+                .add(new Feature("FriendRoster", Condition.ALWAYS) {
+                    @Override
+                    void init() {
+                        FriendRoster.init(lpparam.classLoader);
+                    }
+                }.preload(Obfuscator.friendmojis.FRIEND_MANAGER_CLASS))
+                .add(new Feature("Friendmojis", Condition.ALWAYS, "FriendRoster") {
+                    @Override
+                    void init() {
+                        Friendmojis.init(lpparam);
+                    }
+                }.preload(Obfuscator.select.FRIEND_CLASS))
+                .add(new Feature("DebugHelper", Condition.ALWAYS) {
+                    @Override
+                    void init() {
+                        DebugHelper.init(lpparam);
+                    }
+                });
+
+        return attachFeatures;
+    }
+
+    /**
+     * Features installed once the LandingPageActivity is available.
+     * Features that are disabled stay pending and are picked up on a later onCreate/onResume.
+     */
+    private FeatureInitialiser getActivityFeatures(final LoadPackageParam lpparam) {
+        if (activityFeatures != null)
+            return activityFeatures;
+
+        activityFeatures = new FeatureInitialiser("LandingPageActivity")
+                .add(new Feature("Saving", Condition.ALWAYS) {
+                    @Override
+                    void init() {
+                        Saving.initSaving(lpparam, mResources, SnapContext);
+                    }
+                }.preload(Obfuscator.save.STORYSNAP_CLASS, Obfuscator.save.RECEIVEDSNAP_CLASS,
+                        Obfuscator.save.DECRYPTEDSNAPVIDEO_CLASS, Obfuscator.save.CACHE_CLASS,
+                        Obfuscator.save.IMAGESNAPRENDERER_CLASS2, Obfuscator.misc.ADVANCE_TYPE_CLASS,
+                        Obfuscator.save.STORY_DETAILS_PACKET, Obfuscator.save.STORY_VIEWER_MEDIA_CACHE))
+                .add(new Feature("Lens", Condition.ALWAYS) {
+                    @Override
+                    void init() {
+                        Lens.initLens(lpparam, mResources, SnapContext);
+                    }
+                }.preload(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENSPREPARESTATECHANGE,
+                        Obfuscator.lens.STATECHANGEPREPARESTATUSENUM, Obfuscator.lens.CLASS_LENSLIST_TYPE,
+                        Obfuscator.lens.LENSCALLBACK_CLASS, Obfuscator.lens.AUTHENTICATION_CLASS))
+                .add(new Feature("VisualFilters", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return hasVisualFilterFiles();
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        VisualFilters.initVisualFilters(lpparam);
+                    }
+                }.preload(Obfuscator.visualfilters.FILTERS_CLASS, Obfuscator.visualfilters.FILTERSLOADER_CLASS,
+                        Obfuscator.visualfilters.ADDFILTER_CLASS, Obfuscator.visualfilters.GREYSCALE_CLASS))
+                .add(new Feature("Stories", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.hideLive || prefs.hidePeople || prefs.discoverUi;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        Stories.initStories(lpparam);
+                    }
+                }.preload(Obfuscator.stories.STORY_LOADER_CLASS, Obfuscator.stories.RECENTSTORY_CLASS,
+                        Obfuscator.stories.ALLSTORY_CLASS, Obfuscator.stories.LIVESTORY_CLASS,
+                        Obfuscator.stories.DISCOVERSTORY_CLASS))
+                .add(new Feature("Groups", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.groups;
+                    }
+                }) {
+                    @Override
+                    void init() throws Throwable {
+                        Groups.initGroups(lpparam);
+                    }
+                }.preload(Obfuscator.groups.STORYARRAY_CLASS, Obfuscator.groups.STORYSECTION_CLASS))
+                .add(new Feature("Visibility", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.speed || prefs.textTools || prefs.weather;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        HookedLayouts.initVisiblity(lpparam);
+                    }
+                })
+                .add(new Feature("MultiFilter", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.multiFilter;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        MultiFilter.initMultiFilter(lpparam, mResources, SnapContext);
+                    }
+                })
+                .add(new Feature("BlockDiscoverSnaps", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.discoverSnap || prefs.preloadPolicy;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        DataSaving.blockDsnap(lpparam);
+                    }
+                }.preload(Obfuscator.datasaving.DSNAPDOWNLOADER_CLASS))
+                .add(new Feature("BlockStoryPreload", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.storyPreload || prefs.preloadPolicy;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        DataSaving.blockStoryPreLoad(lpparam);
+                    }
+                }.preload(Obfuscator.datasaving.LIVESTORYPRELOAD_CLASS))
+                .add(new Feature("BlockDiscoverUi", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.discoverUi || prefs.preloadPolicy;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        DataSaving.blockFromUi(lpparam);
+                    }
+                })
+                .add(new Feature("SpeedSpoofing", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.speed;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        Spoofing.initSpeed(lpparam, SnapContext);
+                    }
+                }.preload(Obfuscator.spoofing.SPEEDOMETERVIEW_CLASS))
+                .add(new Feature("LocationSpoofing", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.location;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        Spoofing.initLocation(lpparam, SnapContext);
+                    }
+                }.preload(Obfuscator.spoofing.LOCATION_CLASS))
+                .add(new Feature("WeatherSpoofing", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.weather;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        Spoofing.initWeather(lpparam, SnapContext);
+                    }
+                }.preload(Obfuscator.spoofing.WEATHER_CLASS))
+                .add(new Feature("PaintTools", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.paintTools;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        PaintTools.initPaint(lpparam, mResources);
+                    }
+                })
+                .add(new Feature("TimerCounter", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.timerCounter;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        Misc.initTimer(lpparam, mResources);
+                    }
+                })
+                .add(new Feature("ChatTextSaving", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.chatAutoSave;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        Chat.initTextSave(lpparam, SnapContext);
+                    }
+                }.preload(Obfuscator.chat.CHAT_CLASS, Obfuscator.chat.CONVERSATION_CLASS))
+                .add(new Feature("ChatLogging", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.chatLogging;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        Chat.initChatLogging(lpparam, SnapContext);
+                    }
+                }.preload(Obfuscator.chat.CHAT_CLASS, Obfuscator.chat.ABSTRACT_CONVERSATION_CLASS))
+                .add(new Feature("ChatMediaSaving", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.chatMediaSave;
+                    }
+                }, "Saving") {
+                    @Override
+                    void init() {
+                        Chat.initImageSave(lpparam, mResources);
+                    }
+                }.preload(Obfuscator.chat.CHAT_MEDIA_CLASS))
+                .add(new Feature("Integration", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.integration;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        HookedLayouts.initIntegration(lpparam, mResources);
+                    }
+                })
+                .add(new Feature("Core", Condition.ALWAYS) {
+                    @Override
+                    void init() {
+                        Misc.forceNavBar(lpparam, Preferences.getSnapshot().forceNavbar);
+                        getEditText(lpparam);
+                        // COMPLETED 9.39.5
+                        findAndHookMethod(Obfuscator.save.SCREENSHOTDETECTOR_CLASS, lpparam.classLoader, Obfuscator.save.SCREENSHOTDETECTOR_RUN, LinkedHashMap.class, XC_MethodReplacement.DO_NOTHING);
+                        findAndHookMethod(Obfuscator.save.SNAPSTATEMESSAGE_CLASS, lpparam.classLoader, Obfuscator.save.SNAPSTATEMESSAGE_SETSCREENSHOTCOUNT, Long.class, new XC_MethodHook() {
+                            @Override
+                            protected void beforeHookedMethod(MethodHookParam param) {
+                                param.args[0] = 0L;
+                                Logger.log("StateBuilder.setScreenshotCount set to 0L", true);
+                            }
+                        });
+                    }
+                }.preload(Obfuscator.navbar.FORCENAVBAR_CLASS, Obfuscator.save.SCREENSHOTDETECTOR_CLASS,
+                        Obfuscator.save.SNAPSTATEMESSAGE_CLASS))
+                .add(new Feature("Stickers", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return prefs.customSticker;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        Stickers.initStickers(lpparam, modRes, SnapContext);
+                    }
+                }.preload(Obfuscator.stickers.ASSETREADER_CLASS))
+                .add(new Feature("Premium", new Condition() {
+                    @Override
+                    public boolean isEnabled(PreferenceSnapshot prefs) {
+                        return Preferences.getLicence() > 0;
+                    }
+                }) {
+                    @Override
+                    void init() {
+                        Premium.initPremium(lpparam);
+                    }
+                }.preload(Obfuscator.premium.SNAP_UPDATE_CLASS));
+
+        return activityFeatures;
+    }
+
     @Override
     public void initZygote(StartupParam startupParam) throws Throwable {
         MODULE_PATH = startupParam.modulePath;
+        StartupTracer.Span span = StartupTracer.begin("XModuleResources.createInstance", "initZygote");
         mResources = XModuleResources.createInstance(startupParam.modulePath, null);
+        span.end();
     }
 
     @Override
     public void handleInitPackageResources(InitPackageResourcesParam resparam) throws Throwable {
+        if (!resparam.packageName.equals(Common.PACKAGE_SNAP))
+            return;
+
+        StartupTracer.Span methodSpan = StartupTracer.begin("handleInitPackageResources", "resources");
+
         try {
-            if (!resparam.packageName.equals(Common.PACKAGE_SNAP))
-                return;
 
             Object activityThread =
                     callStaticMethod(findClass("android.app.ActivityThread", null), "currentActivityThread");
@@ -164,7 +475,9 @@ public class HookMethods
             int friend_item = R.layout.friend_item;
             int group_item = R.layout.group_item;
 
+            StartupTracer.Span span = StartupTracer.begin("XModuleResources.createInstance", "resources");
             modRes = XModuleResources.createInstance(MODULE_PATH, resparam.res);
+            span.end();
 
             FriendListDialog.name = XResources.getFakeResId(modRes, name);
             resparam.res.setReplacement(FriendListDialog.name, modRes.fwd(name));
@@ -180,6 +493,7 @@ public class HookMethods
 
             Logger.log("Initialising preferences from xposed");
 
+            span = StartupTracer.begin("Preferences.loadMapFromXposed", "resources");
             try {
                 if (Preferences.getMap() == null || Preferences.getMap().isEmpty()) {
                     Logger.log("Loading map from xposed");
@@ -189,6 +503,7 @@ public class HookMethods
                 Log.e("snapchat", "EXCEPTION LOADING HOOKED PREFS");
                 e.printStackTrace();
             }
+            span.end();
 
             //mSavePath = Preferences.getExternalPath().getAbsolutePath() + "/Snapprefs";
             //mCustomFilterLocation = Preferences.getExternalPath().getAbsolutePath() + "/Snapprefs/Filters";
@@ -197,8 +512,11 @@ public class HookMethods
 
             // TODO Set up removal of button when mode is changed
             // Currently requires snapchat to restart to remove the button
+            span = StartupTracer.begin("BitmapFactory.decodeResource(save_button)", "resources");
             saveImg = BitmapFactory.decodeResource(mResources, R.drawable.save_button);
+            span.end();
 
+            span = StartupTracer.begin("HookedLayouts", "resources");
             try {
                 HookedLayouts.addSaveButtonsAndGestures(resparam, mResources, localContext);
             } catch (Resources.NotFoundException ignore) {
@@ -232,17 +550,22 @@ public class HookMethods
                 HookedLayouts.fullScreenFilter(resparam);
             } catch (Resources.NotFoundException ignore) {
             }
+            span.end();
         } catch (Exception e) {
             Logger.log("Exception thrown in handleInitPackageResources", e);
+        } finally {
+            methodSpan.end();
         }
     }
 
     @Override
     public void handleLoadPackage(final LoadPackageParam lpparam) throws Throwable {
-        try {
-            if (!lpparam.packageName.equals(Common.PACKAGE_SNAP) && !lpparam.packageName.equals(Common.PACKAGE_SP))
-                return;
+        if (!lpparam.packageName.equals(Common.PACKAGE_SNAP) && !lpparam.packageName.equals(Common.PACKAGE_SP))
+            return;
+
+        StartupTracer.Span methodSpan = StartupTracer.begin("handleLoadPackage", "loadPackage");
 
+        try {
             if(lpparam.packageName.equals(Common.PACKAGE_SP)) {
                 findAndHookMethod("com.marz.snapprefs.Util.CommonUtils", lpparam.classLoader, "isModuleEnabled", XC_MethodReplacement.returnConstant((BuildConfig.BUILD_TYPE == "debug" ? Common.MODULE_ENABLED_CHECK_INT : BuildConfig.VERSION_CODE)));
                 return;
@@ -265,6 +588,11 @@ public class HookMethods
                                 ")", false);
                 XposedUtils.log("SnapPrefs Version: " + BuildConfig.VERSION_NAME + " (" +
                         BuildConfig.VERSION_CODE + ")", false);
+                StartupTracer.Span span = StartupTracer.begin("Loader.loadMappings", "loadPackage");
+                Loader.loadMappings(new File(Preferences.getContentPath(), Loader.MAPPING_FOLDER),
+                        piSnapChat.versionCode, lpparam.classLoader);
+                span.end();
+
                 if (!Obfuscator.isSupported(piSnapChat.versionCode)) {
                     Logger.log("This Snapchat version is unsupported", true, true);
                     Toast.makeText(context, "This Snapchat version is unsupported", Toast.LENGTH_SHORT).show();
@@ -287,18 +615,23 @@ public class HookMethods
             findAndHookMethod("android.app.Application", lpparam.classLoader, "attach", Context.class, new XC_MethodHook() {
                 @Override
                 protected void afterHookedMethod(MethodHookParam param) throws Throwable {
-                    Friendmojis.init(lpparam);
-                    DebugHelper.init(lpparam);
-
+                    StartupTracer.Span attachSpan = StartupTracer.begin("Application.attach", "attach");
+                    StartupTracer.Span span = StartupTracer.begin("Logger.loadSelectedLogTypes (Gson)", "attach");
                     Logger.loadSelectedLogTypes();
+                    span.end();
+
+                    span = StartupTracer.begin("Preferences.loadMapFromXposed", "attach");
                     Logger.log("Loading map from xposed");
                     Preferences.loadMapFromXposed();
+                    span.end();
+
+                    getAttachFeatures(lpparam).initialise(lpparam.classLoader);
 
                     Logger.log("Application hook: " + param.thisObject.getClass().getCanonicalName());
 
                     findAndHookMethod(Obfuscator.timer.RECORDING_MESSAGE_HOOK_CLASS, lpparam.classLoader, Obfuscator.timer.RECORDING_MESSAGE_HOOK_METHOD, Message.class, new XC_MethodHook() {
                         boolean internallyCalled = false;
-                        int maxRecordTime = Integer.parseInt(Preferences.getString(Prefs.MAX_RECORDING_TIME).trim()) * 1000;
+                        int maxRecordTime = Preferences.getSnapshot().maxRecordingTime * 1000;
                         @Override
                         protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
                             // If maxRecordTime is same as SC timecap, let SC perform as normal
@@ -348,86 +681,11 @@ public class HookMethods
                             // Fallback method to force the MediaRecorder implementation in Snapchat
                             // XposedHelpers.findAndHookMethod("com.snapchat.android.camera.videocamera.recordingpreferences.VideoRecorderFactory", lpparam.classLoader, "b", XC_MethodReplacement.returnConstant(false));
                             //SNAPPREFS
-                            Saving.initSaving(lpparam, mResources, SnapContext);
-                            //NewSaving.initSaving(lpparam);
-                            Lens.initLens(lpparam, mResources, SnapContext);
-                            File vfilters = new File(
-                                    Preferences.getExternalPath() +
-                                            "/Snapprefs/VisualFilters/xpro_map.png");
-                            if (vfilters.exists()) {
-                                VisualFilters.initVisualFilters(lpparam);
-                            } else {
+                            if (!hasVisualFilterFiles())
                                 Toast.makeText(context, "VisualFilter files are missing, download them!", Toast.LENGTH_SHORT).show();
-                            }
-                            if (Preferences.getBool(Prefs.HIDE_LIVE) || Preferences.getBool(Prefs.HIDE_PEOPLE) ||
-                                    Preferences.getBool(Prefs.DISCOVER_UI)) {
-                                Stories.initStories(lpparam);
-                            }
-                            if (Preferences.getBool(Prefs.GROUPS)) {
-                                Groups.initGroups(lpparam);
-                            }
-                            if (Preferences.shouldAddGhost()) {
-                                HookedLayouts.initVisiblity(lpparam);
-                            }
-                            if (Preferences.getBool(Prefs.MULTI_FILTER)) {
-                                MultiFilter.initMultiFilter(lpparam, mResources, SnapContext);
-                            }
-                            if (Preferences.getBool(Prefs.DISCOVER_SNAP)) {
-                                DataSaving.blockDsnap(lpparam);
-                            }
-                            if (Preferences.getBool(Prefs.STORY_PRELOAD)) {
-                                DataSaving.blockStoryPreLoad(lpparam);
-                            }
-                            if (Preferences.getBool(Prefs.DISCOVER_UI)) {
-                                DataSaving.blockFromUi(lpparam);
-                            }
-                            if (Preferences.getBool(Prefs.SPEED)) {
-                                Spoofing.initSpeed(lpparam, SnapContext);
-                            }
-                            if (Preferences.getBool(Prefs.LOCATION)) {
-                                Spoofing.initLocation(lpparam, SnapContext);
-                            }
-                            if (Preferences.getBool(Prefs.WEATHER)) {
-                                Spoofing.initWeather(lpparam, SnapContext);
-                            }
-                            if (Preferences.getBool(Prefs.PAINT_TOOLS)) {
-                                PaintTools.initPaint(lpparam, mResources);
-                            }
-                            if (Preferences.getBool(Prefs.TIMER_COUNTER)) {
-                                Misc.initTimer(lpparam, mResources);
-                            }
-
-                            ClassLoader cl = lpparam.classLoader;
-
-                            if (Preferences.getBool(Prefs.CHAT_AUTO_SAVE)) {
-                                Chat.initTextSave(lpparam, SnapContext);
-                            }
-                            if (Preferences.getBool(Prefs.CHAT_LOGGING))
-                                Chat.initChatLogging(lpparam, SnapContext);
-
-                            if (Preferences.getBool(Prefs.CHAT_MEDIA_SAVE)) {
-                                Chat.initImageSave(lpparam, mResources);
-                            }
-                            if (Preferences.getBool(Prefs.INTEGRATION)) {
-                                HookedLayouts.initIntegration(lpparam, mResources);
-                            }
-                            Misc.forceNavBar(lpparam, Preferences.getInt(Prefs.FORCE_NAVBAR));
-                            getEditText(lpparam);
-                            // COMPLETED 9.39.5
-                            findAndHookMethod(Obfuscator.save.SCREENSHOTDETECTOR_CLASS, lpparam.classLoader, Obfuscator.save.SCREENSHOTDETECTOR_RUN, LinkedHashMap.class, XC_MethodReplacement.DO_NOTHING);
-                            findAndHookMethod(Obfuscator.save.SNAPSTATEMESSAGE_CLASS, lpparam.classLoader, Obfuscator.save.SNAPSTATEMESSAGE_SETSCREENSHOTCOUNT, Long.class, new XC_MethodHook() {
-                                @Override
-                                protected void beforeHookedMethod(MethodHookParam param) {
-                                    param.args[0] = 0L;
-                                    Logger.log("StateBuilder.setScreenshotCount set to 0L", true);
-                                }
-                            });
-                            if (Preferences.getBool(Prefs.CUSTOM_STICKER)) {
-                                Stickers.initStickers(lpparam, modRes, SnapContext);
-                            }
 
-                            if (Preferences.getLicence() > 0)
-                                Premium.initPremium(lpparam);
+                            getActivityFeatures(lpparam).initialise(lpparam.classLoader);
+                            writeStartupTrace(lpparam.packageName);
 
                             /*hookAllConstructors(ahO, new XC_MethodHook() {
                                         @Override
@@ -688,11 +946,36 @@ public class HookMethods
                     if (Preferences.getBool(Prefs.AUTO_ADVANCE))
                         XposedHelpers.findAndHookMethod(Obfuscator.stories.AUTOADVANCE_CLASS, lpparam.classLoader, Obfuscator.stories.AUTOADVANCE_METHOD, XC_MethodReplacement.returnConstant(false));
 
+                    attachSpan.end();
                 }
             });
         } catch (Exception e) {
             Logger.log("Exception thrown in handleLoadPackage", e);
+        } finally {
+            methodSpan.end();
+        }
+    }
+
+    /**
+     * Write the spans recorded since the zygote as a startup trace, only while debugging is
+     * enabled so regular users don't collect trace files.
+     */
+    private static void writeStartupTrace(String packageName) {
+        if (!Preferences.getSnapshot().debugging) {
+            StartupTracer.discard();
+            return;
+        }
+
+        LinkedHashMap<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("snapprefsVersion", BuildConfig.VERSION_NAME + " (" + BuildConfig.VERSION_CODE + ")");
+
+        try {
+            PackageInfo piSnapChat = context.getPackageManager().getPackageInfo(packageName, 0);
+            metadata.put("snapchatVersion", piSnapChat.versionName + " (" + piSnapChat.versionCode + ")");
+        } catch (PackageManager.NameNotFoundException ignore) {
         }
+
+        StartupTracer.finish(new File(Preferences.getContentPath(), StartupTracer.TRACE_FOLDER), metadata);
     }
 
     private void addFilter(LoadPackageParam lpparam) {
@@ -8,7 +8,6 @@ import android.widget.CheckBox;
 import android.widget.CompoundButton;
 import android.widget.RelativeLayout;
 
-import com.marz.snapprefs.Preferences.Prefs;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -76,12 +75,12 @@ public class HookSendList {
                                             FriendSet.add(thingToAdd);
                                         else
                                             FriendSet.remove(thingToAdd);
-                                    } else if (types[i].getCanonicalName().equals(Obfuscator.select.POSTTOSTORY_CLASS) && Preferences.getBool(Prefs.SELECT_VENUE)) {
+                                    } else if (types[i].getCanonicalName().equals(Obfuscator.select.POSTTOSTORY_CLASS) && Preferences.getSnapshot().selectVenue) {
                                         if (set)
                                             StoryList.add(thingToAdd);
                                         else
                                             StoryList.remove(thingToAdd);
-                                    } else if (types[i].getCanonicalName().equals(Obfuscator.select.POSTTOVENUE_CLASS) && Preferences.getBool(Prefs.SELECT_VENUE)) {
+                                    } else if (types[i].getCanonicalName().equals(Obfuscator.select.POSTTOVENUE_CLASS) && Preferences.getSnapshot().selectVenue) {
                                         String mStoryId = (String) getObjectField(thingToAdd, "mStoryId");
                                         if(getObjectField(thingToAdd, "mStoryId").equals("edit") || mStoryId.contains("group_")) continue;
                                         if (set)
@@ -55,7 +55,6 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.marz.snapprefs.Logger.LogType;
-import com.marz.snapprefs.Preferences.Prefs;
 import com.marz.snapprefs.Util.AssignedStoryButton;
 import com.marz.snapprefs.Util.FlingSaveGesture;
 import com.marz.snapprefs.Util.GestureEvent;
@@ -268,20 +267,21 @@ public class HookedLayouts {
         if (HookMethods.saveImg == null)
             throw new NullPointerException("Button Image not found");
 
-        int horizontalPosition = Preferences.getBool(Prefs.BUTTON_POSITION) ? Gravity.START : Gravity.END;
+        PreferenceSnapshot prefs = Preferences.getSnapshot();
+        int horizontalPosition = prefs.buttonPosition ? Gravity.START : Gravity.END;
 
         FrameLayout.LayoutParams scaledLayoutParams = null;
 
 
         // We get the opacity level and then we calculate the scale accordingly
-        int saveButtonOpacity = Preferences.getInt(Prefs.BUTTON_OPACITY);
+        int saveButtonOpacity = prefs.buttonOpacity;
 
         DisplayMetrics metrics = localContext.getResources().getDisplayMetrics();
 
         // We define the scale of our button so that it will be scaled as opacity decrease
         // 100% opacity --> regular size
         // 0% opacity --> 2x regular size
-        float unscaledSize = Preferences.getBool(Prefs.BUTTON_RESIZE) ?
+        float unscaledSize = prefs.buttonResize ?
                 ((float )(100 - saveButtonOpacity)/100) * regularButtonSize + regularButtonSize
                 : regularButtonSize;
         int scaledSize =   px(unscaledSize, metrics.density);
@@ -304,7 +304,8 @@ public class HookedLayouts {
                         liparam.res.getIdentifier("snap_container", "id", Common.PACKAGE_SNAP)
                 ).getParent();
 
-                int saveMode = Preferences.getInt(Prefs.SAVEMODE_SNAP);
+                PreferenceSnapshot prefs = Preferences.getSnapshot();
+                int saveMode = prefs.savemodeSnap;
 
                 if(saveMode == Preferences.SAVE_BUTTON) {
                     saveSnapButton = new ImageButton(localContext);
@@ -313,7 +314,7 @@ public class HookedLayouts {
                     saveSnapButton.setPadding(0,0,0,0);
                     saveSnapButton.setAdjustViewBounds(true);
                     saveSnapButton.setBackgroundColor(0);
-                    saveSnapButton.setAlpha((float) Preferences.getInt(Prefs.BUTTON_OPACITY) / 100);
+                    saveSnapButton.setAlpha((float) prefs.buttonOpacity / 100);
                     saveSnapButton.setImageBitmap(HookMethods.saveImg);
                     saveSnapButton.setVisibility(View.VISIBLE);
 
@@ -334,9 +335,11 @@ public class HookedLayouts {
                         @Override
                         public boolean onTouch(View v, MotionEvent event) {
                             if (gestureEvent == null) {
-                                if (Preferences.getInt(Prefs.SAVEMODE_SNAP) == Preferences.SAVE_S2S)
+                                int savemodeSnap = Preferences.getSnapshot().savemodeSnap;
+
+                                if (savemodeSnap == Preferences.SAVE_S2S)
                                     gestureEvent = new SweepSaveGesture();
-                                else if (Preferences.getInt(Prefs.SAVEMODE_SNAP) == Preferences.SAVE_F2S)
+                                else if (savemodeSnap == Preferences.SAVE_F2S)
                                     gestureEvent = new FlingSaveGesture();
                                 else {
                                     Logger.log("No gesture method provided");
@@ -370,9 +373,9 @@ public class HookedLayouts {
             setAdditionalInstanceField(frameLayout, "mKey", mKey);
         }
 
-        storyButton.setVisibility(Preferences.getInt(Preferences.Prefs.SAVEMODE_STORY) == Preferences.SAVE_BUTTON
-                ? View.VISIBLE : View.INVISIBLE);
-        storyButton.setAlpha((float) Preferences.getInt(Prefs.BUTTON_OPACITY) / 100);
+        PreferenceSnapshot prefs = Preferences.getSnapshot();
+        storyButton.setVisibility(prefs.savemodeStory == Preferences.SAVE_BUTTON ? View.VISIBLE : View.INVISIBLE);
+        storyButton.setAlpha((float) prefs.buttonOpacity / 100);
         storyButton.bringToFront();
         storyButton.invalidate();
         frameLayout.invalidate();
@@ -540,17 +543,19 @@ public class HookedLayouts {
                 HookMethods.SnapContext.runOnUiThread(new Runnable() {
                     @Override
                     public void run() {
-                        if (Preferences.getBool(Prefs.TEXT_TOOLS)) {
+                        PreferenceSnapshot prefs = Preferences.getSnapshot();
+
+                        if (prefs.textTools) {
                             relativeLayout.addView(textButton, layoutParams);
                             relativeLayout.addView(outerOptionsLayout, outerOptionsLayoutParams);
                         }
-                        if (Preferences.getBool(Prefs.SPEED)) {
+                        if (prefs.speed) {
                             relativeLayout.addView(speed, paramsSpeed);
                         }
-                        if (Preferences.getBool(Prefs.LOCATION)) {
+                        if (prefs.location) {
                             relativeLayout.addView(location, paramsLocation);
                         }
-                        if (Preferences.getBool(Prefs.WEATHER)) {
+                        if (prefs.weather) {
                             relativeLayout.addView(weather, paramsWeather);
                         }
                     }
@@ -5,14 +5,15 @@ import android.content.res.XModuleResources;
 
 import com.marz.snapprefs.Databases.LensDatabaseHelper;
 import com.marz.snapprefs.Logger.LogType;
-import com.marz.snapprefs.Preferences.Prefs;
+import com.marz.snapprefs.Obfuscation.Handles;
 import com.marz.snapprefs.Util.LensData;
 import com.marz.snapprefs.Util.LensData.LensType;
+import com.marz.snapprefs.Util.LensIconWarmup;
+import com.marz.snapprefs.Util.StartupTracer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 
 import de.robv.android.xposed.XC_MethodHook;
@@ -20,15 +21,15 @@ import de.robv.android.xposed.callbacks.XC_LoadPackage;
 
 import static com.marz.snapprefs.Util.LensData.LensType.GEO;
 import static com.marz.snapprefs.Util.LensData.LensType.SCHEDULED;
-import static de.robv.android.xposed.XposedHelpers.callMethod;
 import static de.robv.android.xposed.XposedHelpers.findAndHookMethod;
 import static de.robv.android.xposed.XposedHelpers.findClass;
 import static de.robv.android.xposed.XposedHelpers.getObjectField;
 import static de.robv.android.xposed.XposedHelpers.getStaticObjectField;
 import static de.robv.android.xposed.XposedHelpers.newInstance;
-import static de.robv.android.xposed.XposedHelpers.setObjectField;
 
 public class Lens {
+    // The carousel only gets the most used lenses, so its size doesn't grow with the collection
+    private static final int MAX_INJECTED_LENSES = 100;
     private static final List<String> stringFilter = Arrays.asList(
             "code_scheduled_lens_-_",
             "len_",
@@ -43,10 +44,20 @@ public class Lens {
     private static Class LensCategoryClass;
     private static Class lensListTypeClass;
     private static LensDatabaseHelper lensDatabaseHelper;
+    private static final LensObjectCache lensObjects = new LensObjectCache();
+    private static final LensObjectCache.Builder lensBuilder = new LensObjectCache.Builder() {
+        @Override
+        public Object build(LensData lensData) {
+            return buildModifiedLens(lensData);
+        }
+    };
 
     public static LensDatabaseHelper getLensDatabase(Context context) {
-        if (lensDatabaseHelper == null)
+        if (lensDatabaseHelper == null) {
+            StartupTracer.Span span = StartupTracer.begin("LensDatabaseHelper open", "database");
             lensDatabaseHelper = new LensDatabaseHelper(context);
+            span.end();
+        }
 
         return lensDatabaseHelper;
     }
@@ -77,6 +88,10 @@ public class Lens {
         enumSelfieLens = getStaticObjectField(LensCategoryClass, "SELFIE");
 
         getLensDatabase(snapContext);
+        LensCatalog.init();
+        LensUsage.init();
+        LensIconWarmup.init(snapContext);
+        LensValidator.init(snapContext);
         // TODO Allow for this to be toggled
         findAndHookMethod("com.snapchat.android.app.shared.persistence.sharedprefs.SharedPreferenceKey", lpparam.classLoader, "getBoolean", boolean.class, new XC_MethodHook() {
             @Override
@@ -127,15 +142,25 @@ public class Lens {
             @Override
             protected void afterHookedMethod(MethodHookParam param) throws Throwable {
                 param.setResult(true);
+
+                // Snapchat checks the signature of a lens as it is applied
+                try {
+                    LensUsage.recordUse((String) Handles.lens.CODE.get(param.args[0]));
+                } catch (Throwable t) {
+                    Logger.log("Failed to record the lens use", t, LogType.LENS);
+                }
             }
         });
     }
 
     private static void addLensesToDB(List<Object> list, LensType type) {
-        for (Object lens : list) {
-            String mCode = (String) getObjectField(lens, "mCode");
+        if (!Preferences.getSnapshot().lensesCollect)
+            return;
+
+        LensCatalog.Snapshot catalog = LensCatalog.getSnapshot();
 
-            if (Preferences.getBool(Prefs.LENSES_COLLECT) && !getLensDatabase().containsLens(mCode))
+        for (Object lens : list) {
+            if (!catalog.contains((String) Handles.lens.CODE.get(lens)))
                 performLensSave(lens, type);
         }
     }
@@ -143,65 +168,55 @@ public class Lens {
     private static void buildModifiedList(List<Object> list, LensType type) {
         Logger.log("Original lens list size: " + list.size(), LogType.LENS);
 
-        final LinkedHashMap<String, Object> queriedList = (LinkedHashMap<String, Object>) getLensDatabase().getAllActive();
-        final boolean canInjectLenses = queriedList != null;
-
-        if (!canInjectLenses)
-            Logger.log("No lenses to load for type: " + type, LogType.LENS);
-
+        PreferenceSnapshot prefs = Preferences.getSnapshot();
+        LensCatalog.Snapshot catalog = LensCatalog.getSnapshot();
         HashSet<String> containedList = new HashSet<>();
 
         for (Object lens : list) {
-            String mCode = (String) getObjectField(lens, "mCode");
+            String mCode = (String) Handles.lens.CODE.get(lens);
 
-            if (Preferences.getBool(Prefs.LENSES_COLLECT) &&
-                    (!canInjectLenses || !queriedList.containsKey(mCode)) &&
-                    !getLensDatabase().containsLens(mCode)) {
+            if (prefs.lensesCollect && !catalog.contains(mCode))
                 performLensSave(lens, type);
-            }
 
-            if (!Preferences.getBool(Prefs.LENSES_HIDE_CURRENTLY_PROVIDED_SC_LENSES) && canInjectLenses)
+            if (!prefs.lensesHideCurrentlyProvidedScLenses)
                 containedList.add(mCode);
         }
 
-        if (Preferences.getBool(Prefs.LENSES_HIDE_CURRENTLY_PROVIDED_SC_LENSES))
+        if (prefs.lensesHideCurrentlyProvidedScLenses)
             list.clear();
 
-        if (!Preferences.getBool(Prefs.LENSES_LOAD) || !canInjectLenses)
+        if (!prefs.lensesLoad)
             return;
 
-        Logger.log("Potential lenses to load: " + queriedList.size(), LogType.LENS);
-
-        int injectedLensCount = 0;
-        for (Object lensObj : queriedList.values()) {
-            LensData lensData = (LensData) lensObj;
-            String mCode = lensData.mCode;
+        if (catalog.active.isEmpty()) {
+            Logger.log("No lenses to load for type: " + type, LogType.LENS);
+            return;
+        }
 
-            if (!lensData.mActive || containedList.contains(mCode))
-                continue;
+        Logger.log("Potential lenses to load: " + catalog.active.size(), LogType.LENS);
 
-            Object lens = buildModifiedLens(lensData, type);
-            list.add(lens);
+        int injectedLensCount = 0;
+        lensObjects.beginBuild(LensClass);
+        for (LensData lensData : LensUsage.top(catalog, containedList, MAX_INJECTED_LENSES)) {
+            list.add(lensObjects.get(lensData, lensBuilder));
             injectedLensCount++;
         }
+        lensObjects.endBuild();
 
         Logger.log(String.format("Injected %s %s Lenses", injectedLensCount, String.valueOf(type)), LogType.LENS);
     }
 
-    private static Object buildModifiedLens(LensData lensData, LensType type) {
+    private static Object buildModifiedLens(LensData lensData) {
         Object lensType = enumScheduledType;
         Object lens = newInstance(LensClass, lensData.mId, lensData.mCode, lensType, lensData.mIconLink, null, null);
-        setObjectField(lens, "mHintId", lensData.mHintId);
-        //setObjectField(lens, "mGplayIapId", lensData.mGplayIapId);
-        setObjectField(lens, "mIsBackSection", false);
-        setObjectField(lens, "mIsFeatured", true);
-        setObjectField(lens, "mIsLoading", true);
-        setObjectField(lens, "mLensLink", lensData.mLensLink);
-        setObjectField(lens, "mPriority", 0);
-        setObjectField(lens, "mSignature", lensData.mSignature);
-
-        Object category = callMethod(lens, "a");
-        setObjectField(lens, "mCategories", category);
+        Handles.lens.HINT_ID.set(lens, lensData.mHintId);
+        Handles.lens.IS_BACK_SECTION.set(lens, false);
+        Handles.lens.IS_FEATURED.set(lens, true);
+        Handles.lens.IS_LOADING.set(lens, true);
+        Handles.lens.LENS_LINK.set(lens, lensData.mLensLink);
+        Handles.lens.PRIORITY.set(lens, 0);
+        Handles.lens.SIGNATURE.set(lens, lensData.mSignature);
+        Handles.lens.CATEGORIES.set(lens, Handles.lens.GET_CATEGORIES.invoke(lens));
 
         return lens;
     }
@@ -210,32 +225,37 @@ public class Lens {
         LensData lensData = buildSaveableLensData(lens, type);
         Logger.log("Inserting lens of type: " + type, LogType.LENS);
 
+        LensCatalog.beginOwnWrite();
         try {
             getLensDatabase().insertLens(lensData);
+            LensCatalog.add(lensData);
+            LensIconWarmup.enqueue(lensData.mIconLink);
         } catch (Exception e) {
             if (lensData == null || lensData.mCode == null)
                 Logger.log("Error inserting lens", e, LogType.LENS);
             else
                 Logger.log("Error inserting lens: " + lensData.mCode, e, LogType.LENS);
+        } finally {
+            LensCatalog.endOwnWrite();
         }
     }
 
     private static LensData buildSaveableLensData(Object lens, LensType type) {
         LensData lensData = new LensData();
-        lensData.mId = (String) getObjectField(lens, "mId");
-        lensData.mCode = (String) getObjectField(lens, "mCode");
+        lensData.mId = (String) Handles.lens.ID.get(lens);
+        lensData.mCode = (String) Handles.lens.CODE.get(lens);
         //lensData.mGplayIapId = (String) getObjectField(lens, "mGplayIapId");
-        lensData.mHintId = (String) getObjectField(lens, "mHintId");
+        lensData.mHintId = (String) Handles.lens.HINT_ID.get(lens);
         //lensData.mHintTranslations = (Map<String, String>) getObjectField(lens, "mHintTranslations");
-        lensData.mIconLink = (String) getObjectField(lens, "mIconLink");
+        lensData.mIconLink = (String) Handles.lens.ICON_LINK.get(lens);
         //lensData.mIsBackSection = (boolean) getObjectField(lens, "mIsBackSection");
         //lensData.mIsFeatured = (boolean) getObjectField(lens, "mIsFeatured");
         //lensData.mIsLoading = (boolean) getObjectField(lens, "mIsLoading");
         //lensData.mIsSponsored = (boolean) getObjectField(lens, "mIsSponsored");
-        lensData.mLensLink = (String) getObjectField(lens, "mLensLink");
+        lensData.mLensLink = (String) Handles.lens.LENS_LINK.get(lens);
         //lensData.mPriority = (int) getObjectField(lens, "mPriority");
-        lensData.mSignature = (String) getObjectField(lens, "mSignature");
-        lensData.mActive = Preferences.getBool(Prefs.LENSES_AUTO_ENABLE);
+        lensData.mSignature = (String) Handles.lens.SIGNATURE.get(lens);
+        lensData.mActive = Preferences.getSnapshot().lensesAutoEnable;
         lensData.selTime = -1;
 
         lensData.mType = type;
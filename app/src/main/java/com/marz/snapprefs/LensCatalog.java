@@ -0,0 +1,222 @@
+package com.marz.snapprefs;
+
+import android.os.FileObserver;
+
+import com.marz.snapprefs.Databases.LensDatabaseHelper;
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Util.LensData;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The collected lenses held in memory, so building the lens carousel never queries SQLite.
+ * <p>
+ * A {@link Snapshot} holds the codes of every collected lens and the prebuilt list of the
+ * active ones. It is swapped whole when the lens database changes: lenses we collect are
+ * added straight away, and a {@link FileObserver} on the database reloads the snapshot
+ * shortly after the Snapprefs app writes to it, for example when lenses are toggled.
+ * <p>
+ * Writes made from Snapchat update the snapshot themselves, so they are wrapped in
+ * {@link #beginOwnWrite()} and {@link #endOwnWrite()}, and the file events they cause don't
+ * trigger a reload of the whole catalog.
+ */
+public class LensCatalog {
+    private static final int OBSERVED_EVENTS = FileObserver.MODIFY | FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO;
+    // A toggle from the app writes the database and its journal several times
+    private static final long RELOAD_DELAY_MILLIS = 500;
+    // How long after one of our writes its file events may still be arriving
+    private static final long OWN_WRITE_GRACE_MILLIS = 250;
+
+    private static final ScheduledExecutorService loader = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Snapprefs-lenses");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private static final Runnable reloadTask = new Runnable() {
+        @Override
+        public void run() {
+            reload();
+        }
+    };
+    private static volatile Snapshot snapshot;
+    private static ScheduledFuture<?> pendingReload;
+    // Must stay referenced, an observer stops watching once it is garbage collected
+    private static FileObserver observer;
+    // Not the class lock, so a write doesn't wait for a reload to finish
+    private static final Object ownWriteLock = new Object();
+    private static int ownWrites;
+    private static long ownWriteEventsUntil;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private LensCatalog() {
+    }
+
+    /**
+     * Load the catalog in the background and start watching the database.
+     */
+    static synchronized void init() {
+        if (observer != null)
+            return;
+
+        loader.execute(reloadTask);
+
+        observer = new FileObserver(Preferences.getContentPath(), OBSERVED_EVENTS) {
+            @Override
+            public void onEvent(int event, String path) {
+                if (path != null && path.startsWith(LensDatabaseHelper.DATABASE_FILE) && !isOwnWrite())
+                    scheduleReload();
+            }
+        };
+        observer.startWatching();
+    }
+
+    /**
+     * @return The current snapshot, loaded on the calling thread if the first load hasn't finished
+     */
+    public static Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+
+        if (current != null)
+            return current;
+
+        synchronized (LensCatalog.class) {
+            if (snapshot == null)
+                reload();
+
+            return snapshot;
+        }
+    }
+
+    /**
+     * Add a lens we just collected without waiting for a reload.
+     */
+    static synchronized void add(LensData lensData) {
+        Snapshot current = getSnapshot();
+
+        if (current.contains(lensData.mCode))
+            return;
+
+        HashSet<String> codes = new HashSet<>(current.codes);
+        codes.add(lensData.mCode);
+        List<LensData> active = current.active;
+
+        if (lensData.mActive) {
+            active = new ArrayList<>(active);
+            active.add(lensData);
+        }
+
+        snapshot = new Snapshot(codes, active);
+    }
+
+    /**
+     * Drop lenses from the active list without waiting for a reload.
+     */
+    static synchronized void deactivate(Collection<String> mCodes) {
+        Snapshot current = getSnapshot();
+        HashSet<String> removed = new HashSet<>(mCodes);
+        ArrayList<LensData> active = new ArrayList<>(current.active.size());
+
+        for (LensData lensData : current.active) {
+            if (!removed.contains(lensData.mCode))
+                active.add(lensData);
+        }
+
+        snapshot = new Snapshot(current.codes, active);
+    }
+
+    /**
+     * Mark the start of a write to the lens database whose changes are applied to the snapshot
+     * directly, every call must be followed by {@link #endOwnWrite()}.
+     */
+    static void beginOwnWrite() {
+        synchronized (ownWriteLock) {
+            ownWrites++;
+        }
+    }
+
+    static void endOwnWrite() {
+        synchronized (ownWriteLock) {
+            ownWrites--;
+            ownWriteEventsUntil = System.currentTimeMillis() + OWN_WRITE_GRACE_MILLIS;
+        }
+    }
+
+    private static boolean isOwnWrite() {
+        synchronized (ownWriteLock) {
+            return ownWrites > 0 || System.currentTimeMillis() < ownWriteEventsUntil;
+        }
+    }
+
+    private static synchronized void scheduleReload() {
+        if (pendingReload != null)
+            pendingReload.cancel(false);
+
+        pendingReload = loader.schedule(reloadTask, RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static synchronized void reload() {
+        LensDatabaseHelper database = Lens.getLensDatabase();
+
+        if (database == null) {
+            if (snapshot == null)
+                snapshot = new Snapshot(Collections.<String>emptySet(), Collections.<LensData>emptyList());
+
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        // The helper caches query results, which don't see writes from the app
+        database.invalidateQueryCache();
+        Map<String, Object> lenses = database.getAllLenses();
+        HashSet<String> codes = new HashSet<>(lenses.size());
+        ArrayList<LensData> active = new ArrayList<>();
+
+        for (Object lens : lenses.values()) {
+            LensData lensData = (LensData) lens;
+            codes.add(lensData.mCode);
+
+            if (lensData.mActive)
+                active.add(lensData);
+        }
+
+        snapshot = new Snapshot(codes, active);
+        Logger.log(String.format("Loaded lens catalog: %s lenses, %s active in %sms",
+                codes.size(), active.size(), System.currentTimeMillis() - start), LogType.LENS);
+    }
+
+    public static class Snapshot {
+        private final Set<String> codes;
+        public final List<LensData> active;
+
+        Snapshot(Set<String> codes, List<LensData> active) {
+            this.codes = Collections.unmodifiableSet(codes);
+            this.active = Collections.unmodifiableList(active);
+        }
+
+        public boolean contains(String mCode) {
+            return codes.contains(mCode);
+        }
+
+        public int size() {
+            return codes.size();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.marz.snapprefs;
+
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Util.LensData;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Keeps the Snapchat Lens objects built for injected lenses across carousel rebuilds.
+ * <p>
+ * Entries are keyed by lens code and signature. An entry is rebuilt when its lens row
+ * describes a different lens than the one it was built from, and the whole cache is dropped
+ * when the Lens class comes from another class loader. A build only keeps the entries it
+ * used, so lenses that were deactivated don't linger.
+ * <p>
+ * Only used from the carousel hook, which Snapchat calls on one thread at a time.
+ */
+class LensObjectCache {
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private ClassLoader classLoader;
+    private int generation;
+    private long averageBuildNanos;
+
+    // Stats of the current carousel build
+    private int reused;
+    private int built;
+
+    /**
+     * Start a carousel build with lenses of the given class.
+     */
+    void beginBuild(Class<?> lensClass) {
+        if (lensClass.getClassLoader() != classLoader) {
+            entries.clear();
+            classLoader = lensClass.getClassLoader();
+        }
+
+        generation++;
+        reused = 0;
+        built = 0;
+    }
+
+    Object get(LensData lensData, Builder builder) {
+        String key = lensData.mCode + '\n' + lensData.mSignature;
+        Entry entry = entries.get(key);
+
+        if (entry != null && entry.source.isSameLens(lensData)) {
+            entry.generation = generation;
+            reused++;
+            return entry.lens;
+        }
+
+        long start = System.nanoTime();
+        Object lens = builder.build(lensData);
+        long elapsed = System.nanoTime() - start;
+        // Exponential moving average, the first build seeds it
+        averageBuildNanos = averageBuildNanos == 0 ? elapsed : (averageBuildNanos * 7 + elapsed) / 8;
+
+        entries.put(key, new Entry(lensData, lens, generation));
+        built++;
+        return lens;
+    }
+
+    /**
+     * Drop the entries the build didn't use and report the reuse.
+     */
+    void endBuild() {
+        int evicted = 0;
+
+        for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().generation != generation) {
+                iterator.remove();
+                evicted++;
+            }
+        }
+
+        Logger.log(String.format(Locale.ENGLISH, "Lens objects: %s reused, %s built, %s evicted, ~%.1fms saved",
+                reused, built, evicted, reused * averageBuildNanos / 1000000.0), LogType.LENS);
+    }
+
+    interface Builder {
+        Object build(LensData lensData);
+    }
+
+    private static class Entry {
+        final LensData source;
+        final Object lens;
+        int generation;
+
+        Entry(LensData source, Object lens, int generation) {
+            this.source = source;
+            this.lens = lens;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package com.marz.snapprefs;
+
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Util.LensData;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks how often lenses are applied, so the carousel shows the ones that are used.
+ * <p>
+ * Every use adds one to a lens's score, and scores halve every {@link #HALF_LIFE_MILLIS}.
+ * They're stored as log2(score) + time / half-life, which doesn't change while time passes,
+ * so scores recorded at different times compare directly and are never decayed in place.
+ * <p>
+ * Scores are loaded, uses recorded and the scores written to disk on a background thread,
+ * a little after the last use so a burst of uses costs one write. Scores of lenses that are no
+ * longer in the catalog are dropped when writing. The carousel takes the top {@code k} active
+ * lenses through {@link #top}, which never waits for the disk. It keeps its ranking while the
+ * catalog doesn't change, and moves just the lenses that were used since into place. Using a
+ * lens only ever raises its score, so that keeps the ranking exact.
+ * <p>
+ * An active lens that was never seen before is given a score of {@link #SEED_USES} uses at
+ * that moment, so a freshly activated lens gets into the carousel until it has had a chance
+ * to be used, rather than being crowded out by the lenses with a history.
+ */
+class LensUsage {
+    static final String SCORES_FILE = "LensUsage.scores";
+    private static final double HALF_LIFE_MILLIS = 14 * 86400000.0;
+    // Applying a lens may check its signature more than once
+    private static final long REPEAT_WINDOW_MILLIS = 60000;
+    private static final long SAVE_DELAY_SECONDS = 5;
+    // Extra ranked lenses kept so that Snapchat's own lenses can be skipped without reranking
+    private static final int RANK_SLACK = 32;
+    private static final double SEED_USES = 0.5;
+    // Uses remembered for updating the ranking in place, beyond that it's ranked again
+    private static final int MAX_CHANGES = 64;
+
+    private static final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Snapprefs-lens-usage");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+    private static final Runnable saveTask = new Runnable() {
+        @Override
+        public void run() {
+            save();
+        }
+    };
+
+    // Null until loaded, replaced as a whole on every change, all guarded by the class lock
+    private static Map<String, Double> scores;
+    private static int version;
+    // The codes used since the scores had version changesFrom, one per version
+    private static final ArrayList<String> changes = new ArrayList<>();
+    private static int changesFrom;
+    private static boolean saveScheduled;
+    private static String lastCode;
+    private static long lastUse;
+
+    // The last ranking and what it was computed from, only touched by the carousel hook
+    private static LensCatalog.Snapshot rankedSnapshot;
+    private static HashMap<String, Integer> catalogPositions;
+    private static int rankedVersion;
+    private static int rankedLimit;
+    private static ArrayList<Ranked> ranked;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private LensUsage() {
+    }
+
+    /**
+     * Start loading the scores in the background, returns straight away.
+     */
+    static void init() {
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                getScores();
+            }
+        });
+    }
+
+    /**
+     * Record that a lens was applied, returns straight away.
+     */
+    static void recordUse(final String mCode) {
+        if (mCode == null)
+            return;
+
+        final long now = System.currentTimeMillis();
+
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (LensUsage.class) {
+                    if (mCode.equals(lastCode) && now - lastUse < REPEAT_WINDOW_MILLIS)
+                        return;
+
+                    lastCode = mCode;
+                    lastUse = now;
+
+                    HashMap<String, Double> updated = new HashMap<>(getScores());
+                    Double previous = updated.get(mCode);
+                    updated.put(mCode, addUse(previous != null ? previous : Double.NEGATIVE_INFINITY, now));
+                    scores = updated;
+                    version++;
+
+                    if (changes.size() < MAX_CHANGES)
+                        changes.add(mCode);
+                    else
+                        resetChanges();
+
+                    scheduleSave();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The stored score after one more use at the given time
+     */
+    static double addUse(double stored, long now) {
+        double timeUnits = now / HALF_LIFE_MILLIS;
+        // The current score is 2^(stored - timeUnits), add one and convert back
+        double current = Math.pow(2, stored - timeUnits);
+        return Math.log(current + 1) / Math.log(2) + timeUnits;
+    }
+
+    /**
+     * @return The stored score of a lens that was first seen at the given time
+     */
+    static double seed(long now) {
+        return Math.log(SEED_USES) / Math.log(2) + now / HALF_LIFE_MILLIS;
+    }
+
+    /**
+     * Give the active lenses that don't have a score yet their first one, in the background.
+     */
+    private static void seedNew(final List<LensData> lenses) {
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (LensUsage.class) {
+                    Map<String, Double> current = getScores();
+                    HashMap<String, Double> updated = null;
+                    double seeded = seed(System.currentTimeMillis());
+
+                    for (LensData lensData : lenses) {
+                        if (current.containsKey(lensData.mCode))
+                            continue;
+
+                        if (updated == null)
+                            updated = new HashMap<>(current);
+
+                        updated.put(lensData.mCode, seeded);
+                    }
+
+                    if (updated == null)
+                        return;
+
+                    scores = updated;
+                    version++;
+                    resetChanges();
+                    scheduleSave();
+                }
+            }
+        });
+    }
+
+    /**
+     * Forget the single changes, the next ranking is computed from scratch.
+     */
+    private static void resetChanges() {
+        changes.clear();
+        changesFrom = version;
+    }
+
+    private static void scheduleSave() {
+        if (!saveScheduled) {
+            saveScheduled = true;
+            worker.schedule(saveTask, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Pick the best scored active lenses, ties keep catalog order. Until the scores are loaded
+     * the lenses are picked in catalog order.
+     *
+     * @param exclude Codes of lenses that must not be picked
+     * @param limit   The most lenses to return
+     */
+    static List<LensData> top(LensCatalog.Snapshot catalog, Set<String> exclude, int limit) {
+        if (rankedSnapshot != catalog) {
+            seedNew(catalog.active);
+            catalogPositions = new HashMap<>(catalog.active.size() * 2);
+
+            for (int i = 0; i < catalog.active.size(); i++)
+                catalogPositions.put(catalog.active.get(i).mCode, i);
+        }
+
+        Map<String, Double> currentScores;
+        int currentVersion;
+        List<String> changed = null;
+
+        synchronized (LensUsage.class) {
+            currentScores = scores != null ? scores : Collections.<String, Double>emptyMap();
+            currentVersion = version;
+
+            if (rankedVersion != currentVersion && rankedVersion >= changesFrom)
+                changed = new ArrayList<>(changes.subList(rankedVersion - changesFrom, changes.size()));
+        }
+
+        int capacity = limit + RANK_SLACK;
+
+        if (ranked == null || rankedSnapshot != catalog || rankedLimit != limit ||
+                (rankedVersion != currentVersion && changed == null)) {
+            ranked = rank(catalog.active, currentScores, Collections.<String>emptySet(), capacity);
+            rankedSnapshot = catalog;
+            rankedLimit = limit;
+        } else if (changed != null) {
+            for (String mCode : changed)
+                rerank(catalog, mCode, currentScores, capacity);
+        }
+
+        rankedVersion = currentVersion;
+        List<LensData> picked = new ArrayList<>(Math.min(limit, ranked.size()));
+
+        for (Ranked entry : ranked) {
+            if (picked.size() == limit)
+                return picked;
+
+            if (!exclude.contains(entry.lensData.mCode))
+                picked.add(entry.lensData);
+        }
+
+        // Too many of the ranked lenses were excluded and there are more to choose from
+        if (picked.size() < limit && ranked.size() < catalog.active.size()) {
+            picked.clear();
+
+            for (Ranked entry : rank(catalog.active, currentScores, exclude, limit))
+                picked.add(entry.lensData);
+        }
+
+        return picked;
+    }
+
+    /**
+     * Move a lens whose score went up to its place in the ranking, in O(k).
+     */
+    private static void rerank(LensCatalog.Snapshot catalog, String mCode, Map<String, Double> currentScores,
+                               int capacity) {
+        Integer position = catalogPositions.get(mCode);
+        Double score = currentScores.get(mCode);
+
+        // Not an active lens
+        if (position == null || score == null)
+            return;
+
+        Ranked updated = new Ranked(catalog.active.get(position), score, position);
+        boolean wasRanked = false;
+
+        for (int i = 0; i < ranked.size(); i++) {
+            if (ranked.get(i).position == position) {
+                ranked.remove(i);
+                wasRanked = true;
+                break;
+            }
+        }
+
+        // A full ranking only lets in a lens that beats its last entry
+        if (!wasRanked && ranked.size() == capacity) {
+            if (updated.compareTo(ranked.get(capacity - 1)) <= 0)
+                return;
+
+            ranked.remove(capacity - 1);
+        }
+
+        int insertAt = Collections.binarySearch(ranked, updated, Collections.reverseOrder());
+        ranked.add(insertAt < 0 ? -insertAt - 1 : insertAt, updated);
+    }
+
+    /**
+     * Select the top lenses with a min-heap of at most {@code limit} entries, in O(n log k).
+     *
+     * @return The selected lenses, best first
+     */
+    private static ArrayList<Ranked> rank(List<LensData> lenses, Map<String, Double> currentScores,
+                                          Set<String> exclude, int limit) {
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(Math.max(1, limit));
+
+        for (int i = 0; i < lenses.size(); i++) {
+            LensData lensData = lenses.get(i);
+
+            if (exclude.contains(lensData.mCode))
+                continue;
+
+            Double score = currentScores.get(lensData.mCode);
+            Ranked candidate = new Ranked(lensData, score != null ? score : Double.NEGATIVE_INFINITY, i);
+
+            if (heap.size() < limit)
+                heap.add(candidate);
+            else if (limit > 0 && candidate.compareTo(heap.peek()) > 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+
+        ArrayList<Ranked> sorted = new ArrayList<>(heap);
+        Collections.sort(sorted, Collections.reverseOrder());
+        return sorted;
+    }
+
+    /**
+     * Only called on the worker thread, the first call loads the scores from disk.
+     */
+    private static Map<String, Double> getScores() {
+        synchronized (LensUsage.class) {
+            if (scores != null)
+                return scores;
+        }
+
+        Map<String, Double> loaded = load();
+
+        synchronized (LensUsage.class) {
+            // Only the worker sets the scores, so nothing was recorded meanwhile
+            scores = loaded;
+            version++;
+            resetChanges();
+            return scores;
+        }
+    }
+
+    private static Map<String, Double> load() {
+        HashMap<String, Double> loaded = new HashMap<>();
+        File file = new File(Preferences.getContentPath(), SCORES_FILE);
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+            try {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.lastIndexOf('\t');
+
+                    if (tab <= 0)
+                        continue;
+
+                    try {
+                        loaded.put(line.substring(0, tab), Double.parseDouble(line.substring(tab + 1)));
+                    } catch (NumberFormatException ignored) {
+                        // A damaged line only loses that lens's history
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (FileNotFoundException ignored) {
+            // No lens was used yet
+        } catch (IOException e) {
+            Logger.log("Failed to load lens usage", e, LogType.LENS);
+        }
+
+        return loaded;
+    }
+
+    private static void save() {
+        Map<String, Double> snapshot;
+
+        synchronized (LensUsage.class) {
+            saveScheduled = false;
+            snapshot = scores;
+        }
+
+        LensCatalog.Snapshot catalog = LensCatalog.getSnapshot();
+
+        // An empty catalog more likely failed to load than had every lens deleted
+        if (catalog.size() > 0) {
+            HashMap<String, Double> kept = new HashMap<>(snapshot.size() * 2);
+
+            for (Map.Entry<String, Double> entry : snapshot.entrySet()) {
+                if (catalog.contains(entry.getKey()))
+                    kept.put(entry.getKey(), entry.getValue());
+            }
+
+            if (kept.size() < snapshot.size()) {
+                synchronized (LensUsage.class) {
+                    // Only lenses that are gone from the catalog are dropped, the ranking stays as it is
+                    if (scores == snapshot)
+                        scores = kept;
+                }
+
+                snapshot = kept;
+            }
+        }
+
+        File file = new File(Preferences.getContentPath(), SCORES_FILE);
+        File temp = new File(file.getPath() + ".tmp");
+
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(temp), "UTF-8");
+
+            try {
+                for (Map.Entry<String, Double> entry : snapshot.entrySet())
+                    writer.write(entry.getKey() + '\t' + entry.getValue() + '\n');
+            } finally {
+                writer.close();
+            }
+
+            if (!temp.renameTo(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                throw new IOException("Failed to replace " + file);
+            }
+
+            Logger.log("Saved usage of " + snapshot.size() + " lenses", LogType.LENS);
+        } catch (IOException e) {
+            Logger.log("Failed to save lens usage", e, LogType.LENS);
+        }
+    }
+
+    private static class Ranked implements Comparable<Ranked> {
+        final LensData lensData;
+        final double score;
+        final int position;
+
+        Ranked(LensData lensData, double score, int position) {
+            this.lensData = lensData;
+            this.score = score;
+            this.position = position;
+        }
+
+        /**
+         * Greater is better: a higher score, then an earlier catalog position.
+         */
+        @Override
+        public int compareTo(Ranked other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : other.position - position;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.marz.snapprefs;
+
+import android.content.Context;
+
+import com.marz.snapprefs.Databases.LensDatabaseHelper;
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Util.DeviceState;
+import com.marz.snapprefs.Util.LensData;
+import com.marz.snapprefs.Util.PersistentStringSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks once a day whether the links of the active lenses still work, and deactivates the
+ * lenses Snapchat has taken down.
+ * <p>
+ * A dead lens otherwise stays in the carousel until someone picks it and it fails to load.
+ * Links are checked against an {@link Endpoint} in batches of {@link #BATCH_SIZE}, on at most
+ * {@link #PARALLEL_CHECKS} threads, and only on an unmetered network. Lenses the endpoint
+ * can't decide on are left alone. A lens is only deactivated once it was found dead by
+ * {@link #DEAD_AFTER_CHECKS} daily checks in a row, counted in a journal so the count survives
+ * restarts, and the deactivation is a single update.
+ */
+public class LensValidator {
+    static final String CHECK_MARKER_FILE = "LensValidation.checked";
+    static final String FAILURES_FILE = "LensValidation.journal";
+    private static final int DEAD_AFTER_CHECKS = 3;
+    private static final long CHECK_INTERVAL = 86400000;
+    private static final long START_DELAY_SECONDS = 60;
+    private static final long RETRY_DELAY_SECONDS = 3600;
+    private static final int BATCH_SIZE = 16;
+    private static final int PARALLEL_CHECKS = 4;
+
+    private static final ThreadFactory lowPriority = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Snapprefs-lens-check");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    };
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(lowPriority);
+    private static final ExecutorService checkers = Executors.newFixedThreadPool(PARALLEL_CHECKS, lowPriority);
+    private static final Runnable validation = new Runnable() {
+        @Override
+        public void run() {
+            validateIfDue();
+        }
+    };
+
+    private static Context context;
+    private static Endpoint endpoint = new HttpEndpoint();
+    private static boolean scheduled;
+    private static PersistentStringSet failures;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private LensValidator() {
+    }
+
+    /**
+     * Schedule the first check of this run of Snapchat.
+     */
+    static synchronized void init(Context context) {
+        LensValidator.context = context.getApplicationContext();
+        schedule(START_DELAY_SECONDS);
+    }
+
+    /**
+     * Replace the endpoint lenses are checked against, for example with a stub.
+     */
+    public static synchronized void setEndpoint(Endpoint endpoint) {
+        LensValidator.endpoint = endpoint;
+    }
+
+    private static synchronized void schedule(long delaySeconds) {
+        if (scheduled)
+            return;
+
+        scheduled = true;
+        scheduler.schedule(validation, delaySeconds, TimeUnit.SECONDS);
+    }
+
+    private static void validateIfDue() {
+        Endpoint endpoint;
+
+        synchronized (LensValidator.class) {
+            scheduled = false;
+            endpoint = LensValidator.endpoint;
+        }
+
+        File marker = new File(Preferences.getContentPath(), CHECK_MARKER_FILE);
+        long sinceLastCheck = System.currentTimeMillis() - marker.lastModified();
+
+        if (sinceLastCheck < CHECK_INTERVAL) {
+            schedule((CHECK_INTERVAL - sinceLastCheck) / 1000);
+            return;
+        }
+
+        if (DeviceState.isMetered(context)) {
+            schedule(RETRY_DELAY_SECONDS);
+            return;
+        }
+
+        LensDatabaseHelper database = Lens.getLensDatabase();
+
+        if (database == null)
+            return;
+
+        Result result = validate(database, LensCatalog.getSnapshot().active, endpoint);
+        Logger.log("Lens validation: " + result, LogType.LENS);
+
+        try {
+            //noinspection ResultOfMethodCallIgnored
+            marker.createNewFile();
+            //noinspection ResultOfMethodCallIgnored
+            marker.setLastModified(System.currentTimeMillis());
+        } catch (IOException e) {
+            Logger.log("Failed to mark the lens validation", e, LogType.LENS);
+        }
+
+        schedule(CHECK_INTERVAL / 1000);
+    }
+
+    /**
+     * Check the lenses and deactivate the dead ones.
+     */
+    static Result validate(LensDatabaseHelper database, List<LensData> lenses, final Endpoint endpoint) {
+        long start = System.currentTimeMillis();
+        Result result = new Result();
+        List<String> dead = new ArrayList<>();
+        HashMap<String, Integer> failureCounts = readFailures();
+        List<String> addedFailures = new ArrayList<>();
+        List<String> removedFailures = new ArrayList<>();
+
+        for (int from = 0; from < lenses.size(); from += BATCH_SIZE) {
+            List<Future<Status>> checks = new ArrayList<>(BATCH_SIZE);
+
+            for (final LensData lensData : lenses.subList(from, Math.min(from + BATCH_SIZE, lenses.size()))) {
+                checks.add(checkers.submit(new Callable<Status>() {
+                    @Override
+                    public Status call() throws IOException {
+                        return endpoint.check(lensData);
+                    }
+                }));
+            }
+
+            // Waiting for the whole batch keeps at most one batch of requests in flight
+            for (int i = 0; i < checks.size(); i++) {
+                LensData lensData = lenses.get(from + i);
+                result.checked++;
+
+                Status status;
+
+                try {
+                    status = checks.get(i).get();
+                } catch (ExecutionException e) {
+                    // An undecided lens keeps the count it had
+                    result.undecided++;
+                    Logger.log("Couldn't check lens " + lensData.mCode + ": " + e.getCause().getMessage(), LogType.LENS);
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return result;
+                }
+
+                Integer previous = failureCounts.remove(lensData.mCode);
+
+                if (previous != null)
+                    removedFailures.add(lensData.mCode + '\t' + previous);
+
+                if (status == Status.ALIVE)
+                    continue;
+
+                int count = previous != null ? previous + 1 : 1;
+
+                if (count >= DEAD_AFTER_CHECKS)
+                    dead.add(lensData.mCode);
+                else {
+                    addedFailures.add(lensData.mCode + '\t' + count);
+                    result.suspect++;
+                }
+            }
+        }
+
+        // Counts of lenses that are no longer active would only carry over to a reactivation
+        HashMap<String, Integer> stale = new HashMap<>(failureCounts);
+
+        for (LensData lensData : lenses)
+            stale.remove(lensData.mCode);
+
+        for (Map.Entry<String, Integer> entry : stale.entrySet())
+            removedFailures.add(entry.getKey() + '\t' + entry.getValue());
+
+        try {
+            getFailures().update(addedFailures, removedFailures);
+        } catch (IOException e) {
+            Logger.log("Failed to save the lens validation journal", e, LogType.LENS);
+        }
+
+        if (!dead.isEmpty()) {
+            LensCatalog.beginOwnWrite();
+            try {
+                result.deactivated = database.setActiveState(dead, false);
+                LensCatalog.deactivate(dead);
+            } finally {
+                LensCatalog.endOwnWrite();
+            }
+        }
+
+        result.millis = System.currentTimeMillis() - start;
+        return result;
+    }
+
+    /**
+     * @return The number of checks in a row each suspect lens was found dead by
+     */
+    private static HashMap<String, Integer> readFailures() {
+        HashMap<String, Integer> counts = new HashMap<>();
+
+        for (String entry : getFailures().view()) {
+            int tab = entry.lastIndexOf('\t');
+
+            if (tab <= 0)
+                continue;
+
+            try {
+                counts.put(entry.substring(0, tab), Integer.parseInt(entry.substring(tab + 1)));
+            } catch (NumberFormatException ignored) {
+                // A damaged entry only restarts that lens's count
+            }
+        }
+
+        return counts;
+    }
+
+    private static synchronized PersistentStringSet getFailures() {
+        if (failures != null)
+            return failures;
+
+        failures = new PersistentStringSet(new File(Preferences.getContentPath(), FAILURES_FILE));
+
+        try {
+            failures.load();
+        } catch (IOException e) {
+            Logger.log("Failed to load the lens validation journal", e, LogType.LENS);
+        }
+
+        return failures;
+    }
+
+    public enum Status {
+        ALIVE, DEAD
+    }
+
+    /**
+     * Decides whether a lens is still served.
+     */
+    public interface Endpoint {
+        /**
+         * @throws IOException When it can't be decided, the lens is kept then
+         */
+        Status check(LensData lensData) throws IOException;
+    }
+
+    /**
+     * Asks the lens CDN for the first byte of the lens link.
+     * <p>
+     * The CDN refuses HEAD requests on some links that still serve a GET, and a 403 can also
+     * be a temporary refusal, so only a missing or gone link counts as dead.
+     * <p>
+     * Only a partial or error response is read to the end. A server that ignores the range
+     * answers 200 with the whole lens, that connection is dropped without reading it.
+     */
+    static class HttpEndpoint implements Endpoint {
+        @Override
+        public Status check(LensData lensData) throws IOException {
+            if (lensData.mLensLink == null || lensData.mLensLink.isEmpty())
+                return Status.DEAD;
+
+            HttpURLConnection connection = (HttpURLConnection) new URL(lensData.mLensLink).openConnection();
+
+            try {
+                connection.setRequestProperty("Range", "bytes=0-0");
+                connection.setConnectTimeout(15000);
+                connection.setReadTimeout(10000);
+                int status = connection.getResponseCode();
+
+                if (status == HttpURLConnection.HTTP_PARTIAL)
+                    drain(connection.getInputStream());
+                else if (status >= 400)
+                    drain(connection.getErrorStream());
+
+                if (status >= 200 && status < 400)
+                    return Status.ALIVE;
+
+                if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE)
+                    return Status.DEAD;
+
+                throw new IOException("HTTP " + status);
+            } finally {
+                connection.disconnect();
+            }
+        }
+
+        /**
+         * Read what's left of the response, so that the connection can be reused.
+         */
+        private static void drain(InputStream stream) throws IOException {
+            if (stream == null)
+                return;
+
+            try {
+                byte[] buffer = new byte[512];
+
+                //noinspection StatementWithEmptyBody
+                while (stream.read(buffer) != -1) ;
+            } finally {
+                stream.close();
+            }
+        }
+    }
+
+    static class Result {
+        int checked;
+        int undecided;
+        int suspect;
+        int deactivated;
+        long millis;
+
+        @Override
+        public String toString() {
+            return String.format("%s checked, %s undecided, %s suspect, %s deactivated in %sms", checked, undecided,
+                    suspect, deactivated, millis);
+        }
+    }
+}
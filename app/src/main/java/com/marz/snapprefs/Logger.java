@@ -66,7 +66,7 @@ public class Logger {
      */
     public static void log(String message, boolean prefix, boolean forced) {
         try {
-            if (!Preferences.getBool(Preferences.Prefs.DEBUGGING) && !forced)
+            if (!Preferences.getSnapshot().debugging && !forced)
                 return;
 
         } catch (Throwable t) {
@@ -121,7 +121,7 @@ public class Logger {
     /**
      * Print a '#' Filled row of width {@link #printWidth}
      */
-    static void printFilledRow(LogType logType) {
+    public static void printFilledRow(LogType logType) {
         log(StringUtils.repeat("#", printWidth + 2), logType.removeTag());
     }
 
@@ -189,7 +189,7 @@ public class Logger {
 
     public static void log(String message, @Nullable LogType logType) {
         if (hasLoaded &&
-                (!loggingEnabled || !Preferences.getBool(Preferences.Prefs.DEBUGGING) &&
+                (!loggingEnabled || !Preferences.getSnapshot().debugging &&
                         logType != null && !logType.isForced()))
             return;
 
@@ -334,6 +334,8 @@ public class Logger {
         PREFS("Prefs"),
         FILTER("Filter"),
         PREMIUM("Premium"),
+        STARTUP("Startup"),
+        STORIES("Stories"),
         FORCED("Forced", true);
 
         public String tag;
@@ -45,7 +45,6 @@ import com.google.android.gms.ads.AdView;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.GooglePlayServicesUtil;
 import com.google.android.gms.gcm.GoogleCloudMessaging;
-import com.marz.snapprefs.Fragments.LensesFragment;
 import com.marz.snapprefs.Logger.LogType;
 import com.marz.snapprefs.Tabs.BuyTabFragment;
 import com.marz.snapprefs.Tabs.ChatLogsTabFragment;
@@ -60,6 +59,7 @@ import com.marz.snapprefs.Tabs.SharingTabFragment;
 import com.marz.snapprefs.Tabs.SpoofingTabFragment;
 import com.marz.snapprefs.Tabs.TextTabFragment;
 import com.marz.snapprefs.Util.CommonUtils;
+import com.marz.snapprefs.Util.LensIconLoader;
 
 import java.io.DataOutputStream;
 import java.io.File;
@@ -149,7 +149,7 @@ public class MainActivity extends AppCompatActivity {
         if( prefsFile.exists())
             prefsFile.setReadable(true, false);
 
-        LensesFragment.bitmapCache.clearCache();
+        LensIconLoader.clearMemoryCache();
     }
 
     @Override
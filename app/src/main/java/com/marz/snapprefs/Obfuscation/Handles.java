@@ -0,0 +1,134 @@
+package com.marz.snapprefs.Obfuscation;
+
+import com.marz.snapprefs.Obfuscator;
+import com.marz.snapprefs.Obfuscation.Resolver.ResolvedClass;
+import com.marz.snapprefs.Obfuscation.Resolver.ResolvedField;
+import com.marz.snapprefs.Obfuscation.Resolver.ResolvedMethod;
+
+/**
+ * Cached handles for the {@link Obfuscator} entries used on hot hook paths.
+ * Grouped the same way as {@link Obfuscator}; bound by {@link Resolver#bindAll(ClassLoader)}.
+ */
+public class Handles {
+
+    /**
+     * Restrict instantiation of this class, it only contains static handles.
+     */
+    private Handles() {
+    }
+
+    /**
+     * Forces the nested groups to load, registering their handles with the {@link Resolver}.
+     */
+    static void init() {
+        save.init();
+        chat.init();
+        groups.init();
+        stories.init();
+        friends.init();
+        lens.init();
+        datasaving.init();
+    }
+
+    public static class save {
+        public static final ResolvedField CACHE_KEYTOITEMMAP =
+                Resolver.field(Obfuscator.save.CACHE_CLASS, Obfuscator.save.CACHE_KEYTOITEMMAP);
+        // The cache item class isn't mapped, bind against the first item we see
+        public static final ResolvedField CACHE_ITEM_PATH =
+                Resolver.field(null, Obfuscator.save.CACHE_ITEM_PATH);
+
+        static void init() {
+        }
+    }
+
+    public static class chat {
+        public static final ResolvedMethod CHAT_GET_ID =
+                Resolver.method(Obfuscator.chat.CHAT_CLASS, Obfuscator.chat.CHAT_GET_ID);
+        public static final ResolvedMethod CHAT_GET_TEXT =
+                Resolver.method(Obfuscator.chat.CHAT_CLASS, Obfuscator.chat.CHAT_GET_TEXT);
+        public static final ResolvedField CHAT_SENDER =
+                Resolver.field(Obfuscator.chat.CHAT_CLASS, Obfuscator.chat.CHAT_SENDER);
+        public static final ResolvedMethod CHAT_GET_CONVERSATION_ID =
+                Resolver.method(Obfuscator.chat.CHAT_CLASS, Obfuscator.chat.CHAT_GET_CONVERSATION_ID);
+        public static final ResolvedMethod CHAT_GET_TIMESTAMP =
+                Resolver.method(Obfuscator.chat.CHAT_CLASS, Obfuscator.chat.CHAT_GET_TIMESTAMP);
+
+        static void init() {
+        }
+    }
+
+    public static class groups {
+        public static final ResolvedClass FRIEND = Resolver.clazz(Obfuscator.select.FRIEND_CLASS);
+        public static final ResolvedClass INTERFACE = Resolver.clazz(Obfuscator.groups.INTERFACE);
+        public static final ResolvedField FRIEND_USERNAME =
+                Resolver.field(Obfuscator.select.FRIEND_CLASS, Obfuscator.groups.FRIEND_USERNAME);
+        public static final ResolvedField STORYSECTION_LIST =
+                Resolver.field(Obfuscator.groups.STORYSECTION_CLASS, Obfuscator.groups.STORYSECTION_LIST);
+        public static final ResolvedField STORYSECTION_CALLBACK =
+                Resolver.field(Obfuscator.groups.STORYSECTION_CLASS, Obfuscator.groups.STORYSECTION_CALLBACK);
+        // The callback class isn't mapped, bind against the callback we get
+        public static final ResolvedMethod STORYSECTION_CALLBACK_SELECT =
+                Resolver.method(null, Obfuscator.groups.STORYSECTION_CALLBACK_SELECT,
+                        int.class, Obfuscator.groups.INTERFACE, boolean.class);
+
+        static void init() {
+        }
+    }
+
+    public static class friends {
+        public static final ResolvedMethod GET_USERNAME =
+                Resolver.method(Obfuscator.select.FRIEND_CLASS, Obfuscator.groups.GETUSERNAME_METHOD);
+        public static final ResolvedMethod GET_DISPLAYNAME =
+                Resolver.method(Obfuscator.select.FRIEND_CLASS, Obfuscator.groups.GETDISPLAYNAME_METHOD);
+
+        static void init() {
+        }
+    }
+
+    public static class stories {
+        public static final ResolvedMethod RECENTSTORY_GETUSERNAME =
+                Resolver.method(Obfuscator.stories.RECENTSTORY_CLASS, Obfuscator.stories.RECENTSTORY_GETUSERNAME);
+        public static final ResolvedMethod ALLSTORY_GETUSERNAME =
+                Resolver.method(Obfuscator.stories.ALLSTORY_CLASS, Obfuscator.stories.RECENTSTORY_GETUSERNAME);
+
+        static void init() {
+        }
+    }
+
+    public static class lens {
+        public static final ResolvedField ID = Resolver.field(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_ID);
+        public static final ResolvedField CODE = Resolver.field(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_CODE);
+        public static final ResolvedField HINT_ID = Resolver.field(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_HINTID);
+        public static final ResolvedField ICON_LINK =
+                Resolver.field(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_ICONLINK);
+        public static final ResolvedField LENS_LINK =
+                Resolver.field(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_LENSLINK);
+        public static final ResolvedField SIGNATURE =
+                Resolver.field(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_SIGNATURE);
+        public static final ResolvedField IS_BACK_SECTION =
+                Resolver.field(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_ISBACKSECTION);
+        public static final ResolvedField IS_FEATURED =
+                Resolver.field(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_ISFEATURED);
+        public static final ResolvedField IS_LOADING =
+                Resolver.field(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_ISLOADING);
+        public static final ResolvedField PRIORITY =
+                Resolver.field(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_PRIORITY);
+        public static final ResolvedField CATEGORIES =
+                Resolver.field(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_CATEGORIES);
+        public static final ResolvedMethod GET_CATEGORIES =
+                Resolver.method(Obfuscator.lens.LENSCLASS, Obfuscator.lens.LENS_GETCATEGORIES);
+
+        static void init() {
+        }
+    }
+
+    public static class datasaving {
+        public static final ResolvedField DOWNLOADREQUEST_HOLDER_URL =
+                Resolver.field(Obfuscator.datasaving.DOWNLOADREQUEST_HOLDER_CLASS, Obfuscator.datasaving.DOWNLOADREQUEST_HOLDER_URL);
+        public static final ResolvedField LIVESTORYPRELOAD_USERNAME =
+                Resolver.field(Obfuscator.datasaving.LIVESTORYPRELOAD_CLASS, Obfuscator.datasaving.LIVESTORYPRELOAD_USERNAME);
+
+        static void init() {
+        }
+    }
+}
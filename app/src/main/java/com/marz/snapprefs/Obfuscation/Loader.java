@@ -1,87 +1,214 @@
 package com.marz.snapprefs.Obfuscation;
 
+import com.marz.snapprefs.Logger;
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Obfuscator;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
- * Created by Andre on 04/10/2016.
+ * Loads {@link Obfuscator} mappings from versioned {@link MappingFile}s at startup.
+ * <p>
+ * Mapping files are named after the Snapchat versionCode they were made for. The newest
+ * generation that isn't newer than the running Snapchat is tried first; if any class it maps
+ * fails to load, the next older generation is tried. The mappings compiled into
+ * {@link Obfuscator} act as one more generation and are kept when nothing newer validates.
  */
-
 public class Loader {
+    public static final String MAPPING_FOLDER = "Mappings";
+    private static final long LOAD_BUDGET_NANOS = 1000000;
+    private static HashMap<String, Field> fieldIndex;
+    private static boolean loaded;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private Loader() {
+    }
 
-    /*public static void buildTestClass() throws IOException {
-        DataHolder dh = new DataHolder();
-
-        ConcurrentHashMap<String, DataHolder.MethodData> ml = new ConcurrentHashMap<>();
-
-        String[] strList = new String[] { "param1", "param2"};
-        DataHolder.MethodData md = new DataHolder.MethodData("testClass1", "testMethod1", strList);
-        ml.put("testMethod1", md);
-
-        strList = new String[] { "param1", "param2", "param3"};
-        md = new DataHolder.MethodData("testClass1", "testMethod2", strList);
-        ml.put("testMethod2", md);
-
-        strList = new String[] { "param1"};
-        md = new DataHolder.MethodData("testClass1", "testMethod3", strList);
-        ml.put("testMethod3", md);
-
-        dh.classMap.put("testClass", new DataHolder.ClassData("testClass1", ml));
-        dh.classMap.put("testClass2", new DataHolder.ClassData("testClass2", ml));
+    /**
+     * Apply the best mapping generation for the running Snapchat.
+     *
+     * @param folder      The folder holding the mapping files
+     * @param versionCode The versionCode of the running Snapchat
+     * @param classLoader The Snapchat classloader used to validate the mapped classes
+     * @return The versionCode of the generation now in {@link Obfuscator}
+     */
+    public static synchronized int loadMappings(File folder, int versionCode, ClassLoader classLoader) {
+        // Hooks may already hold on to the names, they must not change under them
+        if (loaded)
+            return Obfuscator.SUPPORTED_VERSION_CODE;
+
+        loaded = true;
+        List<MappingFile> generations = MappingFile.list(folder);
+
+        if (generations.isEmpty())
+            return Obfuscator.SUPPORTED_VERSION_CODE;
+
+        Map<String, Object> builtIn = readCurrent();
+        int builtInVersion = Obfuscator.SUPPORTED_VERSION_CODE;
+
+        for (MappingFile generation : generations) {
+            if (generation.versionCode > versionCode)
+                continue;
+
+            // The compiled in mappings are a newer generation than anything left
+            if (generation.versionCode < builtInVersion && versionCode >= builtInVersion)
+                break;
+
+            long start = System.nanoTime();
+            final ArrayList<String> classNames = new ArrayList<>();
+            final ArrayList<String> unknownKeys = new ArrayList<>();
+            final int[] applied = new int[1];
+
+            try {
+                generation.read(new MappingFile.Visitor() {
+                    @Override
+                    public void visit(String key, Object value) {
+                        if (!apply(key, value)) {
+                            unknownKeys.add(key);
+                            return;
+                        }
+
+                        applied[0]++;
+
+                        if (key.contains("CLASS") && value instanceof String && !((String) value).isEmpty())
+                            classNames.add((String) value);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                // Entries read before the failure were applied already
+                Logger.log("Failed reading mapping file " + generation.file, e, LogType.DEBUG);
+                applyAll(builtIn);
+                continue;
+            }
+
+            long loadNanos = System.nanoTime() - start;
+            Obfuscator.SUPPORTED_VERSION_CODE = generation.versionCode;
+
+            if (loadNanos > LOAD_BUDGET_NANOS)
+                Logger.log(String.format("Mapping load took %sus, over the %sus budget",
+                        loadNanos / 1000, LOAD_BUDGET_NANOS / 1000), LogType.FORCED);
+
+            if (!unknownKeys.isEmpty())
+                Logger.log("Mapping entries without a matching Obfuscator field: " + unknownKeys, LogType.FORCED);
+
+            List<String> missing = validate(classNames, classLoader);
+
+            if (missing.isEmpty()) {
+                Logger.log(String.format("Loaded %s mappings for %s in %sus", applied[0],
+                        generation.versionCode, loadNanos / 1000), LogType.FORCED);
+                return generation.versionCode;
+            }
+
+            Logger.log(String.format("Mapping generation %s is missing %s classes %s, falling back",
+                    generation.versionCode, missing.size(), missing), LogType.FORCED);
+            applyAll(builtIn);
+        }
 
-        writeClasses(dh);
+        Logger.log("Using built-in mappings for " + Obfuscator.SUPPORTED_VERSION_CODE, LogType.FORCED);
+        return Obfuscator.SUPPORTED_VERSION_CODE;
     }
 
-    public static void writeClasses(DataHolder dataHolder ) throws IOException {
-        File file = new File(Preferences.getSavePath() + "/TestFile.json");
+    /**
+     * Write the mappings currently held in {@link Obfuscator} as a mapping file generation.
+     * Called from the debug options, where they're the ones built into this release.
+     */
+    public static File exportCurrent(File folder) throws IOException {
+        if (!folder.exists() && !folder.mkdirs())
+            throw new IOException("Failed to create " + folder);
+
+        File target = MappingFile.fileFor(folder, Obfuscator.SUPPORTED_VERSION_CODE);
+        MappingFile.write(target, Obfuscator.SUPPORTED_VERSION_CODE, readCurrent());
+        return target;
+    }
 
-        FileOutputStream out = new FileOutputStream(file);
-        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, "UTF-8"));
-        writer.setIndent("  ");
+    private static List<String> validate(List<String> classNames, ClassLoader classLoader) {
+        List<String> missing = new ArrayList<>();
 
-        writer.beginArray();
+        for (String className : classNames) {
+            try {
+                Resolver.findClass(className, classLoader);
+            } catch (Throwable t) {
+                missing.add(className);
+            }
+        }
 
-        for(ClassData classData : dataHolder.classMap.values())
-        {
-            writer.beginObject();
+        return missing;
+    }
 
-            writer.name(classData.className);
+    /**
+     * @return Every mappable value currently held in {@link Obfuscator}, keyed like the mapping file
+     */
+    private static Map<String, Object> readCurrent() {
+        HashMap<String, Object> values = new HashMap<>();
 
-            writeMethods(writer, classData);
+        for (Map.Entry<String, Field> entry : getFieldIndex().entrySet()) {
+            try {
+                Object value = entry.getValue().get(null);
 
-            writer.endObject();
+                if (value != null)
+                    values.put(entry.getKey(), value);
+            } catch (IllegalAccessException ignore) {
+            }
         }
-        writer.endArray();
 
-        writer.close();
+        return values;
     }
 
-    public static void writeMethods(JsonWriter writer, DataHolder.ClassData classData) throws IOException {
-        Log.d("snapprefs", "Writing methods");
+    private static void applyAll(Map<String, Object> values) {
+        for (Map.Entry<String, Object> entry : values.entrySet())
+            apply(entry.getKey(), entry.getValue());
+    }
 
-        writer.name(classData);
-        writer.beginObject();
+    private static boolean apply(String key, Object value) {
+        Field field = getFieldIndex().get(key);
 
-        Log.d("snapprefs", "Writing methods DONE");
-        for(DataHolder.MethodData md : classData.methodMap.values())
-        {
-            writer.name("M").value(md.methodName);
+        if (field == null)
+            return false;
 
-            writeParams(writer, md);
+        try {
+            if (field.getType() == int.class)
+                field.setInt(null, (Integer) value);
+            else
+                field.set(null, value);
+
+            return true;
+        } catch (IllegalAccessException | IllegalArgumentException | ClassCastException e) {
+            return false;
         }
-        writer.endObject();
     }
 
-    public static void writeParams(JsonWriter writer, DataHolder.MethodData md) throws IOException {
-        writer.name("Params");
-        writer.beginArray();
-        for( String param : md.parameters)
-            writer.value(param);
-        writer.endArray();
-    }
+    private static HashMap<String, Field> getFieldIndex() {
+        if (fieldIndex != null)
+            return fieldIndex;
 
+        HashMap<String, Field> index = new HashMap<>();
+        indexFields(Obfuscator.class, null, index);
 
-    public static void testParse() throws FileNotFoundException {
-        FileInputStream in = new FileInputStream(new File(Preferences.getSavePath() + "/TestFile.json"));
-        JsonReader reader = new JsonReader(new InputStreamReader(in));
+        for (Class<?> group : Obfuscator.class.getClasses())
+            indexFields(group, group.getSimpleName(), index);
 
+        return fieldIndex = index;
+    }
+
+    private static void indexFields(Class<?> group, String prefix, HashMap<String, Field> index) {
+        for (Field field : group.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            Class<?> type = field.getType();
+
+            if (!Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) ||
+                    (type != String.class && type != String[].class && type != int.class))
+                continue;
 
-    }*/
+            index.put(prefix != null ? prefix + "." + field.getName() : field.getName(), field);
+        }
+    }
 }
@@ -0,0 +1,206 @@
+package com.marz.snapprefs.Obfuscation;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compact binary mapping file for one Snapchat version.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * int    magic ('SPMP')
+ * short  format version
+ * int    Snapchat versionCode the mappings were made for
+ * int    entry count
+ * entry* [short key length][key][byte type][value]
+ * </pre>
+ * Keys are "group.FIELD" as in {@link com.marz.snapprefs.Obfuscator}, or just "FIELD" for the top
+ * level entries. A value is either a string, a string array or an int, see the TYPE_ constants.
+ * Strings are stored as [short length][UTF-8 bytes]. Entries are written sorted by key.
+ */
+public class MappingFile {
+    public static final String EXTENSION = ".spmap";
+    static final byte TYPE_STRING = 0;
+    static final byte TYPE_STRING_ARRAY = 1;
+    static final byte TYPE_INT = 2;
+    private static final int MAGIC = 0x53504D50;
+    private static final short FORMAT_VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public final int versionCode;
+    public final File file;
+
+    private MappingFile(int versionCode, File file) {
+        this.versionCode = versionCode;
+        this.file = file;
+    }
+
+    /**
+     * List the mapping files in a folder, named "&lt;versionCode&gt;.spmap", newest generation first.
+     */
+    public static List<MappingFile> list(File folder) {
+        TreeMap<Integer, MappingFile> generations = new TreeMap<>();
+        File[] files = folder.listFiles();
+
+        if (files == null)
+            return new ArrayList<>();
+
+        for (File file : files) {
+            String name = file.getName();
+
+            if (!name.endsWith(EXTENSION))
+                continue;
+
+            try {
+                int versionCode = Integer.parseInt(name.substring(0, name.length() - EXTENSION.length()));
+                generations.put(versionCode, new MappingFile(versionCode, file));
+            } catch (NumberFormatException ignore) {
+            }
+        }
+
+        return new ArrayList<>(generations.descendingMap().values());
+    }
+
+    public static File fileFor(File folder, int versionCode) {
+        return new File(folder, versionCode + EXTENSION);
+    }
+
+    /**
+     * Memory-map the file and hand every entry to the visitor.
+     *
+     * @return The versionCode stored in the header
+     * @throws IOException Also when the file is truncated or corrupt, entries before the damage
+     *                     were visited already then
+     */
+    public int read(Visitor visitor) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            require(buffer, 14);
+            if (buffer.getInt() != MAGIC)
+                throw new IOException("Not a mapping file: " + file);
+
+            short format = buffer.getShort();
+            if (format != FORMAT_VERSION)
+                throw new IOException("Unsupported mapping format " + format + ": " + file);
+
+            int headerVersionCode = buffer.getInt();
+            int count = buffer.getInt();
+
+            if (count < 0)
+                throw new IOException("Invalid entry count " + count + ": " + file);
+
+            for (int i = 0; i < count; i++) {
+                String key = readString(buffer);
+                require(buffer, 1);
+                byte type = buffer.get();
+
+                switch (type) {
+                    case TYPE_STRING:
+                        visitor.visit(key, readString(buffer));
+                        break;
+                    case TYPE_STRING_ARRAY:
+                        require(buffer, 2);
+                        String[] values = new String[buffer.getShort() & 0xFFFF];
+                        for (int j = 0; j < values.length; j++)
+                            values[j] = readString(buffer);
+                        visitor.visit(key, values);
+                        break;
+                    case TYPE_INT:
+                        require(buffer, 4);
+                        visitor.visit(key, buffer.getInt());
+                        break;
+                    default:
+                        throw new IOException("Unknown entry type " + type + " for " + key);
+                }
+            }
+
+            return headerVersionCode;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Write a complete mapping file, replacing any existing one atomically.
+     */
+    public static void write(File target, int versionCode, Map<String, Object> entries) throws IOException {
+        TreeMap<String, Object> sorted = new TreeMap<>(entries);
+        File temp = new File(target.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(temp));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeInt(versionCode);
+            out.writeInt(sorted.size());
+
+            for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+                writeString(out, entry.getKey());
+                Object value = entry.getValue();
+
+                if (value instanceof String) {
+                    out.writeByte(TYPE_STRING);
+                    writeString(out, (String) value);
+                } else if (value instanceof String[]) {
+                    String[] values = (String[]) value;
+                    out.writeByte(TYPE_STRING_ARRAY);
+                    out.writeShort(values.length);
+                    for (String item : values)
+                        writeString(out, item);
+                } else if (value instanceof Integer) {
+                    out.writeByte(TYPE_INT);
+                    out.writeInt((Integer) value);
+                } else
+                    throw new IOException("Unsupported mapping value for " + entry.getKey() + ": " + value);
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(target)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Failed to replace " + target);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        require(buffer, 2);
+        int length = buffer.getShort() & 0xFFFF;
+        require(buffer, length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void require(ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes)
+            throw new IOException("Mapping file truncated at " + buffer.position() + ", expected " + bytes +
+                    " more bytes");
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    public interface Visitor {
+        void visit(String key, Object value);
+    }
+}
@@ -0,0 +1,314 @@
+package com.marz.snapprefs.Obfuscation;
+
+import com.marz.snapprefs.HookMethods;
+import com.marz.snapprefs.Logger;
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Obfuscator;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.robv.android.xposed.XposedHelpers;
+
+/**
+ * Resolves {@link Obfuscator} names into cached {@link Class}, {@link Field} and {@link Method}
+ * handles.
+ * <p>
+ * Handles are declared once (see {@link Handles}) and bound against the Snapchat classloader by
+ * {@link #bindAll(ClassLoader)} during startup, which also validates every class mapping in
+ * {@link Obfuscator} and reports the ones missing from the running Snapchat build.
+ * Hooks then read fields and invoke methods through the handles directly instead of going
+ * through the name based lookups of {@link XposedHelpers} on every call.
+ */
+public class Resolver {
+    private static final List<Handle> handles = new ArrayList<>();
+    private static final ConcurrentHashMap<String, Class<?>> classCache = new ConcurrentHashMap<>();
+    private static volatile ClassLoader classLoader;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private Resolver() {
+    }
+
+    public static ResolvedClass clazz(String className) {
+        return register(new ResolvedClass(className));
+    }
+
+    /**
+     * @param className The declaring class, or null to bind against the class of the first receiver
+     * @param fieldName The (obfuscated) field name
+     */
+    public static ResolvedField field(String className, String fieldName) {
+        return register(new ResolvedField(className, fieldName));
+    }
+
+    /**
+     * @param className      The declaring class, or null to bind against the class of the first receiver
+     * @param methodName     The (obfuscated) method name
+     * @param parameterTypes {@link Class} or Snapchat class name for each parameter
+     */
+    public static ResolvedMethod method(String className, String methodName, Object... parameterTypes) {
+        return register(new ResolvedMethod(className, methodName, parameterTypes));
+    }
+
+    private static <T extends Handle> T register(T handle) {
+        synchronized (handles) {
+            handles.add(handle);
+        }
+
+        return handle;
+    }
+
+    /**
+     * Find a class by name through the cache, falling back to {@link XposedHelpers#findClass}.
+     */
+    public static Class<?> findClass(String className, ClassLoader cl) {
+        Class<?> clazz = classCache.get(className);
+
+        if (clazz == null) {
+            clazz = XposedHelpers.findClass(className, cl);
+            classCache.put(className, clazz);
+        }
+
+        return clazz;
+    }
+
+    /**
+     * Bind every declared handle and validate the class mappings in {@link Obfuscator}.
+     *
+     * @return A description of every mapping that couldn't be resolved
+     */
+    public static List<String> bindAll(ClassLoader cl) {
+        long start = System.nanoTime();
+        classLoader = cl;
+        classCache.clear();
+
+        // Touching Handles registers all of its handles
+        Handles.init();
+
+        List<String> missing = new ArrayList<>();
+        int classMappings = validateObfuscatorClasses(cl, missing);
+
+        List<Handle> snapshot;
+        synchronized (handles) {
+            snapshot = new ArrayList<>(handles);
+        }
+
+        int deferred = 0;
+        for (Handle handle : snapshot) {
+            if (handle.className == null) {
+                deferred++;
+                continue;
+            }
+
+            try {
+                handle.bind(findClass(handle.className, cl));
+            } catch (Throwable t) {
+                missing.add(handle.describe());
+            }
+        }
+
+        Logger.log(String.format("Resolved %s class mappings and %s handles (%s bound on first use) in %sms",
+                classMappings, snapshot.size(), deferred, (System.nanoTime() - start) / 1000000), LogType.DEBUG);
+
+        if (!missing.isEmpty()) {
+            Logger.printTitle("Missing obfuscation mappings", LogType.FORCED);
+
+            for (String mapping : missing)
+                Logger.printMessage(mapping, LogType.FORCED);
+
+            Logger.printFilledRow(LogType.FORCED);
+        }
+
+        return missing;
+    }
+
+    /**
+     * Every constant in {@link Obfuscator} whose name marks it as a class is expected to load.
+     * Member names carry no declaring class, so those are only checked through the handles.
+     */
+    private static int validateObfuscatorClasses(ClassLoader cl, List<String> missing) {
+        int count = 0;
+        HashMap<String, String> mappings = new HashMap<>();
+
+        collectClassMappings(Obfuscator.class, mappings);
+
+        for (Class<?> group : Obfuscator.class.getClasses())
+            collectClassMappings(group, mappings);
+
+        for (String name : mappings.keySet()) {
+            String className = mappings.get(name);
+            count++;
+
+            try {
+                findClass(className, cl);
+            } catch (Throwable t) {
+                missing.add(String.format("%s -> class %s", name, className));
+            }
+        }
+
+        return count;
+    }
+
+    private static void collectClassMappings(Class<?> group, HashMap<String, String> mappings) {
+        for (Field field : group.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class ||
+                    !field.getName().contains("CLASS"))
+                continue;
+
+            try {
+                String value = (String) field.get(null);
+
+                if (value != null && !value.isEmpty())
+                    mappings.put(group.getSimpleName() + "." + field.getName(), value);
+            } catch (IllegalAccessException ignore) {
+            }
+        }
+    }
+
+    private static ClassLoader currentClassLoader() {
+        ClassLoader cl = classLoader;
+        return cl != null ? cl : HookMethods.classLoader;
+    }
+
+    private static Class<?>[] resolveParameterTypes(Object[] parameterTypes, ClassLoader cl) {
+        Class<?>[] types = new Class<?>[parameterTypes.length];
+
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Object type = parameterTypes[i];
+            types[i] = type instanceof Class ? (Class<?>) type : findClass((String) type, cl);
+        }
+
+        return types;
+    }
+
+    static abstract class Handle {
+        final String className;
+        final String memberName;
+
+        Handle(String className, String memberName) {
+            this.className = className;
+            this.memberName = memberName;
+        }
+
+        abstract void bind(Class<?> clazz);
+
+        String describe() {
+            return (className != null ? className : "<receiver>") + (memberName != null ? "." + memberName : "");
+        }
+    }
+
+    public static class ResolvedClass extends Handle {
+        private volatile Class<?> clazz;
+
+        ResolvedClass(String className) {
+            super(className, null);
+        }
+
+        @Override
+        void bind(Class<?> clazz) {
+            this.clazz = clazz;
+        }
+
+        public Class<?> get() {
+            Class<?> bound = clazz;
+
+            if (bound == null)
+                bound = clazz = findClass(className, currentClassLoader());
+
+            return bound;
+        }
+
+        public boolean isInstance(Object object) {
+            return get().isInstance(object);
+        }
+    }
+
+    public static class ResolvedField extends Handle {
+        private volatile Field field;
+
+        ResolvedField(String className, String fieldName) {
+            super(className, fieldName);
+        }
+
+        @Override
+        void bind(Class<?> clazz) {
+            field = XposedHelpers.findField(clazz, memberName);
+        }
+
+        private Field resolve(Object receiver) {
+            Field bound = field;
+
+            if (bound == null || (className == null && !bound.getDeclaringClass().isInstance(receiver))) {
+                bind(className != null ? findClass(className, currentClassLoader()) : receiver.getClass());
+                bound = field;
+            }
+
+            return bound;
+        }
+
+        public Object get(Object receiver) {
+            try {
+                return resolve(receiver).get(receiver);
+            } catch (IllegalAccessException e) {
+                throw new IllegalAccessError(e.getMessage());
+            }
+        }
+
+        public void set(Object receiver, Object value) {
+            try {
+                resolve(receiver).set(receiver, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalAccessError(e.getMessage());
+            }
+        }
+    }
+
+    public static class ResolvedMethod extends Handle {
+        private final Object[] parameterTypes;
+        private volatile Method method;
+
+        ResolvedMethod(String className, String methodName, Object[] parameterTypes) {
+            super(className, methodName);
+            this.parameterTypes = parameterTypes;
+        }
+
+        @Override
+        void bind(Class<?> clazz) {
+            method = XposedHelpers.findMethodBestMatch(clazz, memberName,
+                    resolveParameterTypes(parameterTypes, clazz.getClassLoader()));
+        }
+
+        private Method resolve(Object receiver) {
+            Method bound = method;
+
+            if (bound == null || (className == null && !bound.getDeclaringClass().isInstance(receiver))) {
+                bind(className != null ? findClass(className, currentClassLoader()) : receiver.getClass());
+                bound = method;
+            }
+
+            return bound;
+        }
+
+        /**
+         * Invoke the bound method, unwrapping reflection exceptions the same way
+         * {@link XposedHelpers#callMethod} does.
+         */
+        public Object invoke(Object receiver, Object... args) {
+            try {
+                return resolve(receiver).invoke(receiver, args);
+            } catch (IllegalAccessException e) {
+                throw new IllegalAccessError(e.getMessage());
+            } catch (InvocationTargetException e) {
+                throw new XposedHelpers.InvocationTargetError(e.getCause());
+            }
+        }
+    }
+}
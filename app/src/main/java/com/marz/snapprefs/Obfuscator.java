@@ -40,12 +40,22 @@ import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 
+/**
+ * The names of the Snapchat classes and members the hooks use, for the Snapchat release in
+ * {@link #SUPPORTED_VERSION_CODE}.
+ * <p>
+ * The fields naming Snapchat's own code aren't final, so that
+ * {@link com.marz.snapprefs.Obfuscation.Loader} can replace them with a mapping file for a
+ * newer Snapchat. It does so once, before any hook is installed, and nothing else may assign
+ * them. Names Snapchat's obfuscation can't change, like overridden Android framework methods,
+ * stay final and can't be mapped.
+ */
 public class Obfuscator implements Serializable {
     public static int SUPPORTED_VERSION_CODE = 847;
-    public final static String SUPPORTED_VERSION_CODENAME = "9.39.5.0";
-    public final static String ROOTDETECTOR_CLASS = "aAY";//prev. ali
-    public final static String[] ROOTDETECTOR_METHODS= {"b", "c", "d", "e"};
-    public final static String FRIENDS_BF= "l";//prev. j
+    public static final String SUPPORTED_VERSION_CODENAME = "9.39.5.0";
+    public static String ROOTDETECTOR_CLASS = "aAY";//prev. ali
+    public static String[] ROOTDETECTOR_METHODS= {"b", "c", "d", "e"};
+    public static String FRIENDS_BF= "l";//prev. j
 
     /**
      * Check if Snapprefs is compatible with this Snapchat version.
@@ -60,428 +70,454 @@ public class Obfuscator implements Serializable {
     public static class save {
 
         //User class
-        public final static String USER_CLASS = "DP"; //prev. VU
+        public static String USER_CLASS = "DP"; //prev. VU
         //ReceivedSnap class
-        public final static String RECEIVEDSNAP_CLASS = "Sc"; //+ prev Vt
-        public final static String OBJECT_MID = "mId";
-        public final static String OBJECT_CACHEKEYSUFFIX = "mCacheKeyInstanceSuffix";
-        public final static String RECEIVEDSNAP_BEING_SEEN = "c"; // prev. d
+        public static String RECEIVEDSNAP_CLASS = "Sc"; //+ prev Vt
+        public static String OBJECT_MID = "mId";
+        public static String OBJECT_CACHEKEYSUFFIX = "mCacheKeyInstanceSuffix";
+        public static String RECEIVEDSNAP_BEING_SEEN = "c"; // prev. d
         // ReceivedSnap.getCanonicalDisplayTime()
-        public final static String RECEIVEDSNAP_DISPLAYTIME = "d";//prev. G
+        public static String RECEIVEDSNAP_DISPLAYTIME = "d";//prev. G
         //StorySnap class
-        public final static String STORYSNAP_CLASS = "PO"; //+ prev VK
+        public static String STORYSNAP_CLASS = "PO"; //+ prev VK
         //SnapView class
-        public final static String SNAPVIEW_CLASS = "com.snapchat.android.ui.snapview.SnapView";
+        public static String SNAPVIEW_CLASS = "com.snapchat.android.ui.snapview.SnapView";
         //SnapView.show(ReceivedSnap, ChronologicalSnapProvider, Booleans(?))
-        public final static String SNAPVIEW_SHOW = "b"; // prev. a
-        public final static String STORYVIEW_SHOW = "a"; // prev. a
-        public final static String STORYVIEW_SHOW_FIRST = "aea";
-        public final static String STORYVIEW_SHOW_SECOND = "Vn";
-        public final static String STORYVIEW_SHOW_THIRD = "adW";
+        public static String SNAPVIEW_SHOW = "b"; // prev. a
+        public static String STORYVIEW_SHOW = "a"; // prev. a
+        public static String STORYVIEW_SHOW_FIRST = "aea";
+        public static String STORYVIEW_SHOW_SECOND = "Vn";
+        public static String STORYVIEW_SHOW_THIRD = "adW";
         //First param of SnapView.show -> bdl, avf
-        public final static String SNAPVIEW_SHOW_FIRST = "aea";
+        public static String SNAPVIEW_SHOW_FIRST = "aea";
         //Second param of SnapView.show -> asz, alr
-        public final static String SNAPVIEW_SHOW_SECOND = "Vn";
+        public static String SNAPVIEW_SHOW_SECOND = "Vn";
         //Third param of SnapView.show -> agd, abp
-        public final static String SNAPVIEW_SHOW_THIRD = "HQ";
+        public static String SNAPVIEW_SHOW_THIRD = "HQ";
         //Fourth param of SnapView.show -> agd, abp
-        public final static String SNAPVIEW_SHOW_FOURTH = "HS";
+        public static String SNAPVIEW_SHOW_FOURTH = "HS";
         //SnapView.hide(SnapViewEventAnalytics.EndReason)->(rm)
-        public final static String SNAPVIEW_HIDE = "a";
+        public static String SNAPVIEW_HIDE = "a";
         //SnapPreviewFragment class
-        public final static String SNAPPREVIEWFRAGMENT_CLASS = "com.snapchat.android.preview.SnapPreviewFragment";
-        public final static String SNAPPREVIEWFRAGMENT_METHOD1 = "a";//prev. l
+        public static String SNAPPREVIEWFRAGMENT_CLASS = "com.snapchat.android.preview.SnapPreviewFragment";
+        public static String SNAPPREVIEWFRAGMENT_METHOD1 = "a";//prev. l
         //ImageResourceView class
-        public final static String IMAGERESOURCEVIEW_CLASS = "com.snapchat.android.ui.ImageResourceView";
+        public static String IMAGERESOURCEVIEW_CLASS = "com.snapchat.android.ui.ImageResourceView";
         //imageResource instance variable name in ui.ImageResourceView
-        public final static String IMAGERESOURCEVIEW_VAR_IMAGERESOURCE = "b";
+        public static String IMAGERESOURCEVIEW_VAR_IMAGERESOURCE = "b";
         //LandingPageActivity class
-        public final static String LANDINGPAGEACTIVITY_CLASS = "com.snapchat.android.LandingPageActivity";
+        public static String LANDINGPAGEACTIVITY_CLASS = "com.snapchat.android.LandingPageActivity";
         //Snap class
-        public final static String SNAP_CLASS = "com.snapchat.android.model.Snap";
+        public static String SNAP_CLASS = "com.snapchat.android.model.Snap";
         //Snap.isScreenshotted()
-        public final static String SNAP_ISSCREENSHOTTED = "at";
-        //public final static String SNAP_ISSCREENSHOTTED2 = "au";
+        public static String SNAP_ISSCREENSHOTTED = "at";
+        //public static String SNAP_ISSCREENSHOTTED2 = "au";
         //Snap.getTimestamp()
-        public final static String SNAP_GETTIMESTAMP = "i";//prev. S
+        public static String SNAP_GETTIMESTAMP = "i";//prev. S
         //EndReason class
-        public final static String ENDREASON_CLASS = "rm";
+        public static String ENDREASON_CLASS = "rm";
         //ImageResource -> Aw prev. avg, apz --  mIsSavedByRecipient:Z
         //ChatMedia instance variable name in ImageResource
-        public final static String IMAGERESOURCE_VAR_CHATMEDIA = "c";
+        public static String IMAGERESOURCE_VAR_CHATMEDIA = "c";
         //.model.chat.Chat -> zV.2
         //Chat.getTimeStamp()
-        public final static String CHAT_GETTIMESTAMP = "S";
+        public static String CHAT_GETTIMESTAMP = "S";
         //.model.chat.StatefulChatFeedItem
         //StatefulChatFeedItem.getSender()
-        public final static String STATEFULCHATFEEDITEM_GETSENDER = "m";
+        public static String STATEFULCHATFEEDITEM_GETSENDER = "m";
         //ScreenshotDetector class -> datetaken
-        public final static String SCREENSHOTDETECTOR_CLASS = "Tk";//prev. Zm
+        public static String SCREENSHOTDETECTOR_CLASS = "Tk";//prev. Zm
         //ScreenshotDetector.run(List)
-        public final static String SCREENSHOTDETECTOR_RUN = "a";
+        public static String SCREENSHOTDETECTOR_RUN = "a";
         //SnapStateMessage class
-        public final static String SNAPSTATEMESSAGE_CLASS = "aNt";//prev. auW
+        public static String SNAPSTATEMESSAGE_CLASS = "aNt";//prev. auW
         //SnapStateMessage.setScreenshotCount(Long)
-        public final static String SNAPSTATEMESSAGE_SETSCREENSHOTCOUNT = "a";//prev. b
+        public static String SNAPSTATEMESSAGE_SETSCREENSHOTCOUNT = "a";//prev. b
         //SentSnap Bitmap class
-        public final static String SENT_CLASS = "UW";
+        public static String SENT_CLASS = "UW";
         //SentSnap Bitmap method
-        public final static String SENT_METHOD = "a";
+        public static String SENT_METHOD = "a";
         //ImagesnapRenderer
-        public final static String IMAGESNAPRENDERER_CLASS = "ard";//prev YI
-        public final static String IMAGESNAPRENDERER_CLASS2 = IMAGESNAPRENDERER_CLASS + "$1";
-        public final static String IMAGESNAPRENDERER_NEW_BITMAP = "a";
+        public static String IMAGESNAPRENDERER_CLASS = "ard";//prev YI
+        public static String IMAGESNAPRENDERER_CLASS2 = IMAGESNAPRENDERER_CLASS + "$1";
+        public static String IMAGESNAPRENDERER_NEW_BITMAP = "a";
         // Inside IMAGESNAPRENDERER, Object is of type extending mediabryo and contains mKey
-        public final static String OBJECT_KEYHOLDERCLASSOBJECT = "b"; //.prev b
-        public final static String OBJECT_KEYHOLDER_KEY = "b"; //.prev ahZ
+        public static String OBJECT_KEYHOLDERCLASSOBJECT = "b"; //.prev b
+        public static String OBJECT_KEYHOLDER_KEY = "b"; //.prev ahZ
 
-        public final static String DECRYPTEDSNAPVIDEO_CLASS = "Sh";//.prev UZ
-        public final static String CACHE_CLASS = "amh";//.prev ahZ
-        public final static String CACHE_KEYTOITEMMAP = "b"; //.prev mKeyToItemMap
-        public final static String CACHE_ITEM_PATH = "a";
+        public static String DECRYPTEDSNAPVIDEO_CLASS = "Sh";//.prev UZ
+        public static String CACHE_CLASS = "amh";//.prev ahZ
+        public static String CACHE_KEYTOITEMMAP = "b"; //.prev mKeyToItemMap
+        public static String CACHE_ITEM_PATH = "a";
         //ImagesnapRenderer.start()
-        public final static String IMAGESNAPRENDERER_START = "c";
+        public static String IMAGESNAPRENDERER_START = "c";
         //ImageView instance in ImageSnapRenderer
-        public final static String IMAGESNAPRENDERER_VAR_IMAGEVIEW = "a";//AspectMaintainedImageView!!
+        public static String IMAGESNAPRENDERER_VAR_IMAGEVIEW = "a";//AspectMaintainedImageView!!
         //SnapImageBryo - JPEG_ENCODING_QUALITY
-        public final static String SNAPIMAGEBRYO_CLASS = "aph";//prev. VC
+        public static String SNAPIMAGEBRYO_CLASS = "aph";//prev. VC
         //VideoSnapRenderer.start()
-        public final static String VIDEOSNAPRENDERER_CLASS = "YK";
+        public static String VIDEOSNAPRENDERER_CLASS = "YK";
         //VideoSnapRenderer.show()
-        public final static String VIDEOSNAPRENDERER_SHOW = "c";
+        public static String VIDEOSNAPRENDERER_SHOW = "c";
         //View Instance in VideoSnapRenderer
-        public final static String VIDEOSNAPRENDERER_VAR_VIEW = "d";
-        public final static String IMAGESNAPRENDERER_SETVIEW = "a";
-        public final static String VIDEOSNAPRENDERER_SETVIEW = "a";
+        public static String VIDEOSNAPRENDERER_VAR_VIEW = "d";
+        public static String IMAGESNAPRENDERER_SETVIEW = "a";
+        public static String VIDEOSNAPRENDERER_SETVIEW = "a";
         //SwipeUpArrowView is the View containing the Chat element of the Friend's story screen
-        public final static String SWIPEUPARROWVIEW_CLASS = "com.snapchat.opera.view.ArrowView";//?
+        public static String SWIPEUPARROWVIEW_CLASS = "com.snapchat.opera.view.ArrowView";//?
         //SwipeUpArrowView.setLongFormAreaOnClickListener
-        public final static String SWIPEUPARROWVIEW_SETONCLICK = "setTouchAreaOnClickListener";//?
+        public static String SWIPEUPARROWVIEW_SETONCLICK = "setTouchAreaOnClickListener";//?
         //stories_mystoryoverlaysave_icon
-        public final static String STORIES_MYOVERLAYSAVE_ICON = "0x7f02030e";
+        public static String STORIES_MYOVERLAYSAVE_ICON = "0x7f02030e";
         // Get Username function of Friend Class
-        public static final String GET_FRIEND_USERNAME = "d";//prev. g
-        public static final String CLASS_FRIEND_MINI_PROFILE_POPUP_FRAGMENT = "aqT";//prev. com.snapchat.android.fragments.FriendMiniProfilePopupFragment
+        public static String GET_FRIEND_USERNAME = "d";//prev. g
+        public static String CLASS_FRIEND_MINI_PROFILE_POPUP_FRAGMENT = "aqT";//prev. com.snapchat.android.fragments.FriendMiniProfilePopupFragment
         // com.snapchat.android.fragments.FriendMiniProfilePopupFragment Friend Field
-        public final static String FRIEND_MINI_PROFILE_POPUP_FRIEND_FIELD = "i";// Prev F
+        public static String FRIEND_MINI_PROFILE_POPUP_FRIEND_FIELD = "i";// Prev F
         // com.snapchat.android.fragments.FriendMiniProfilePopupFragement getCachedProfilePicutres method
-        public final static String FRIEND_MINI_PROFILE_POPUP_GET_CACHED_PROFILE_PICTURES = "e"; //Prev y
+        public static String FRIEND_MINI_PROFILE_POPUP_GET_CACHED_PROFILE_PICTURES = "e"; //Prev y
         // com.snapchat.android.fragments.FriendMiniProfilePopupFragement FriendsProfileImagesCache field
-        public final static String FRIEND_MINI_PROFILE_POPUP_FRIENDS_PROFILE_IMAGES_CACHE = "g";//prev i
-        public final static String PROFILE_IMAGES_CACHE_GET_PROFILE_IMAGES = "a";
-        public final static String PROFILE_IMAGE_UTILS_PROFILE_IMAGE_SIZE_INNER_CLASS = "com.snapchat.android.util.profileimages.ProfileImageUtils$ProfileImageSize";
-        public final static String MINI_PROFILE_SNAPCODE = "l";//Prev q
+        public static String FRIEND_MINI_PROFILE_POPUP_FRIENDS_PROFILE_IMAGES_CACHE = "g";//prev i
+        public static String PROFILE_IMAGES_CACHE_GET_PROFILE_IMAGES = "a";
+        public static String PROFILE_IMAGE_UTILS_PROFILE_IMAGE_SIZE_INNER_CLASS = "com.snapchat.android.util.profileimages.ProfileImageUtils$ProfileImageSize";
+        public static String MINI_PROFILE_SNAPCODE = "l";//Prev q
 
         // SnapTimerView class
-        public final static String CLASS_SNAP_TIMER_VIEW = "com.snapchat.android.ui.SnapTimerView";
-        public final static String METHOD_SNAPTIMERVIEW_ONDRAW = "onDraw";
+        public static String CLASS_SNAP_TIMER_VIEW = "com.snapchat.android.ui.SnapTimerView";
+        public static final String METHOD_SNAPTIMERVIEW_ONDRAW = "onDraw";
 
         // StoryTimerView class
-        public final static String CLASS_NEW_STORY_TIMER_VIEW = "com.snapchat.android.framework.ui.views.NewConcentricTimerView";
-        public final static String CLASS_STORY_TIMER_VIEW = "com.snapchat.android.framework.ui.views.ConcentricTimerView"; //Prev com.snapchat.android.ui.StoryTimerView
-        public final static String METHOD_STORYTIMERVIEW_ONDRAW = "onDraw";
+        public static String CLASS_NEW_STORY_TIMER_VIEW = "com.snapchat.android.framework.ui.views.NewConcentricTimerView";
+        public static String CLASS_STORY_TIMER_VIEW = "com.snapchat.android.framework.ui.views.ConcentricTimerView"; //Prev com.snapchat.android.ui.StoryTimerView
+        public static final String METHOD_STORYTIMERVIEW_ONDRAW = "onDraw";
 
         // TextureVideoView
-        public final static String CLASS_TEXTURE_VIDEO_VIEW = "com.snapchat.opera.shared.view.TextureVideoView";
-        public final static String METHOD_TVV_START = "start";
-        public final static String METHOD_TVV_SETLOOPING = "setLooping";
+        public static String CLASS_TEXTURE_VIDEO_VIEW = "com.snapchat.opera.shared.view.TextureVideoView";
+        public static String METHOD_TVV_START = "start";
+        public static String METHOD_TVV_SETLOOPING = "setLooping";
 
         // SnapCountdownController class
-        public final static String CLASS_SNAP_COUNTDOWN_CONTROLLER = "com.snapchat.android.app.shared.feature.feed.controller.SnapCountdownController";//.Prev com.snapchat.android.controller.countdown.SnapCountdownController
-        public final static String METHOD_SCC_VAR1 = "a";
+        public static String CLASS_SNAP_COUNTDOWN_CONTROLLER = "com.snapchat.android.app.shared.feature.feed.controller.SnapCountdownController";//.Prev com.snapchat.android.controller.countdown.SnapCountdownController
+        public static String METHOD_SCC_VAR1 = "a";
 
         // SnapViewSessionStopReason class
-        public final static String CLASS_SNAP_VIEW_SESSION_STOP_REASON = "com.snapchat.android.ui.snapview.SnapViewSessionStopReason";
+        public static String CLASS_SNAP_VIEW_SESSION_STOP_REASON = "com.snapchat.android.ui.snapview.SnapViewSessionStopReason";
 
         // SENT SNAP HANDLING \\
 
         //Inside SnapPreviewFragment
-        public final static String OBJECT_SNAP_EDITOR_VIEW = "b";
+        public static String OBJECT_SNAP_EDITOR_VIEW = "b";
         //Inside SnapEditorView
-        public final static String OBJECT_MEDIABRYO = "p"; //.prev p
-        public final static String CLASS_MEDIABRYO_VIDEO = "apx";//prev. VZ
-        public final static String METHOD_GET_SENT_BITMAP = "a";
+        public static String OBJECT_MEDIABRYO = "p"; //.prev p
+        public static String CLASS_MEDIABRYO_VIDEO = "apx";//prev. VZ
+        public static String METHOD_GET_SENT_BITMAP = "a";
         //Inside MediaBryo
-        public final static String OBJECT_MCLIENTID = "mClientId";
-        public final static String OBJECT_MVIDEOURI = "mVideoUri";
+        public static String OBJECT_MCLIENTID = "mClientId";
+        public static String OBJECT_MVIDEOURI = "mVideoUri";
 
-        public final static String STORY_DETAILS_PACKET = "aGg";
-        public final static String SDP_GET_ENUM_METHOD = "b";
-        public final static String SDP_GET_OBJECT = "a";
-        public final static String SDP_GET_STRING = "d";
+        public static String STORY_DETAILS_PACKET = "aGg";
+        public static String SDP_GET_ENUM_METHOD = "b";
+        public static String SDP_GET_OBJECT = "a";
+        public static String SDP_GET_STRING = "d";
 
-        public final static String STORY_VIEWER_MEDIA_CACHE = "com.snapchat.android.stories.viewer.StoryViewerMediaCache";
-        public final static String VIEWING_STORY_METHOD = "a";
-        public final static String VIEWING_STORY_VAR4 = "aEm$a";
-        public final static String SVMC_STORYLIST_OBJECT = "c";
+        public static String STORY_VIEWER_MEDIA_CACHE = "com.snapchat.android.stories.viewer.StoryViewerMediaCache";
+        public static String VIEWING_STORY_METHOD = "a";
+        public static String VIEWING_STORY_VAR4 = "aEm$a";
+        public static String SVMC_STORYLIST_OBJECT = "c";
 
-        public final static String STORY_IMAGE_HOLDER = "gC";
+        public static String STORY_IMAGE_HOLDER = "gC";
 
-        public final static String STORY_LOADER = "asT";
-        public final static String SL_ISVIEWING_METHOD = "i";
-        public final static String SL_ON_RESOURCE_READY_METHOD = "onResourceReady";
-        public final static String SL_VAR2 = "gt";
+        public static String STORY_LOADER = "asT";
+        public static String SL_ISVIEWING_METHOD = "i";
+        public static String SL_ON_RESOURCE_READY_METHOD = "onResourceReady";
+        public static String SL_VAR2 = "gt";
 
         public final static int OPERA_PAGE_VIEW_ID = +2131689491;
 
-        public final static String DIRECTIONAL_LAYOUT_CLASS = "com.snapchat.opera.ui.DirectionalLayout";
-        public final static String MCANONICALDISPLAYNAME = "mCanonicalDisplayTime";
+        public static String DIRECTIONAL_LAYOUT_CLASS = "com.snapchat.opera.ui.DirectionalLayout";
+        public static String MCANONICALDISPLAYNAME = "mCanonicalDisplayTime";
     }
     public static class datasaving {
-        public final static String DSNAPDOWNLOADER_CLASS = "Df$a";//Prev. KL
-        public final static String DSNAPDOWNLOADER_DOWNLOADSNAP = "a";
-        public final static String DOWNLOADREQUEST_CLASS = "com.snapchat.android.app.shared.framework.network.manager";//prev. com.snapchat.android.networkmanager.DownloadRequest
-        public final static String DYNAMICBYTEBUFFER_CLASS = "aku";
-        public final static String DOWNLOADREQUEST_HOLDER_CLASS = "Qq";
-        public final static String NETWORKRESULT_CLASS = "Ae";
-        public final static String DSNAPDOWNLOAD_CLASS = "Df$a";//prev. KP$a
-        public final static String DSNAPDOWNLOAD_PARAM = "mz";//prev. mp
-        public final static String DSNAPINTRODOWNLOAD_CLASS = "Df$a";
-        public final static String LIVESTORYPRELOAD_CLASS = "asx";
-        public final static String LIVESTORYPRELOAD_METHOD = "d";
-        public final static String STORYPRELOAD_CLASS = "aaF";
-        public final static String STORYPRELOAD_METHOD = "H_";
+        public static String DSNAPDOWNLOADER_CLASS = "Df$a";//Prev. KL
+        public static String DSNAPDOWNLOADER_DOWNLOADSNAP = "a";
+        public static String DOWNLOADREQUEST_CLASS = "com.snapchat.android.app.shared.framework.network.manager";//prev. com.snapchat.android.networkmanager.DownloadRequest
+        public static String DYNAMICBYTEBUFFER_CLASS = "aku";
+        public static String DOWNLOADREQUEST_HOLDER_CLASS = "Qq";
+        public static String NETWORKRESULT_CLASS = "Ae";
+        public static String DSNAPDOWNLOAD_CLASS = "Df$a";//prev. KP$a
+        public static String DSNAPDOWNLOAD_PARAM = "mz";//prev. mp
+        public static String DSNAPINTRODOWNLOAD_CLASS = "Df$a";
+        public static String LIVESTORYPRELOAD_CLASS = "asx";
+        public static String LIVESTORYPRELOAD_METHOD = "d";
+        // What the preload requests are told apart by, a live story goes by its username like its snaps
+        public static String DOWNLOADREQUEST_HOLDER_URL = "mUrl";
+        public static String LIVESTORYPRELOAD_USERNAME = "mUsername";
+        public static String STORYPRELOAD_CLASS = "aaF";
+        public static String STORYPRELOAD_METHOD = "H_";
     }
     public static class spoofing {
         //SpeedometerView class
-        public final static String SPEEDOMETERVIEW_CLASS = "awa";
+        public static String SPEEDOMETERVIEW_CLASS = "awa";
         //SpeedometerView.setSpeed(Float)
-        public final static String SPEEDOMETERVIEW_SETSPEED = "a";
-        public final static String LOCATION_CLASS = "Rm";
-        public final static String LOCATION_GETLOCATION = "a";
-        public final static String LOCATION_GETLOCATION_PARAM = "Rl";
-        public final static String WEATHER_CLASS = "apy";
-        public final static String WEATHER_FIRST = "aPd";
-        public final static String BATTERY_FILTER = "Pc";
-        public final static String BATTERY_FULL_ENUM = "FULL";
+        public static String SPEEDOMETERVIEW_SETSPEED = "a";
+        public static String LOCATION_CLASS = "Rm";
+        public static String LOCATION_GETLOCATION = "a";
+        public static String LOCATION_GETLOCATION_PARAM = "Rl";
+        public static String WEATHER_CLASS = "apy";
+        public static String WEATHER_FIRST = "aPd";
+        public static String BATTERY_FILTER = "Pc";
+        public static String BATTERY_FULL_ENUM = "FULL";
     }
     public static class select {
         //SendToFragment class
-        public final static String SENDTOFRAGMENT_CLASS = "com.snapchat.android.fragments.sendto.SendToFragment";
+        public static String SENDTOFRAGMENT_CLASS = "com.snapchat.android.fragments.sendto.SendToFragment";
         //SendToFragment.AddToList()
-        public final static String SENDTOFRAGMENT_ADDTOLIST = "b";//prev. l
+        public static String SENDTOFRAGMENT_ADDTOLIST = "b";//prev. l
         //TopView instance variable in SendToFragment
-        public final static String SENDTOFRAGMENT_VAR_TOPVIEW = "f";//prev. e
+        public static String SENDTOFRAGMENT_VAR_TOPVIEW = "f";//prev. e
         //FriendHashSet instance variable in SendToFragment
-        public final static String SENDTOFRAGMENT_VAR_SET = "m";//prev. l
+        public static String SENDTOFRAGMENT_VAR_SET = "m";//prev. l
         //ArrayList instance variable in SendToFragment
-        public final static String SENDTOFRAGMENT_VAR_ARRAYLIST = "p";//prev n
+        public static String SENDTOFRAGMENT_VAR_ARRAYLIST = "p";//prev n
         //SendToAdapter class
-        public final static String SENDTOADAPTER_CLASS = "afe";//prev OP
+        public static String SENDTOADAPTER_CLASS = "afe";//prev OP
         //List instance variable in SendToAdapter
-        public final static String SENDTOADAPTER_VAR_LIST = "c";//prev e
+        public static String SENDTOADAPTER_VAR_LIST = "c";//prev e
         //Friend class
-        public final static String FRIEND_CLASS = "com.snapchat.android.model.Friend";
+        public static String FRIEND_CLASS = "com.snapchat.android.model.Friend";
         //PostToStory class
-        public final static String POSTTOSTORY_CLASS = "aoZ";//prev. Vl
+        public static String POSTTOSTORY_CLASS = "aoZ";//prev. Vl
         //PostToVenue class
-        public final static String POSTTOVENUE_CLASS = "apb";//prev. Vp
+        public static String POSTTOVENUE_CLASS = "apb";//prev. Vp
     }
     public static class sharing {
         //cameraStateEvent class
-        public final static String CAMERASTATEEVENT_CLASS = "azr";
+        public static String CAMERASTATEEVENT_CLASS = "azr";
         //snapCapturedEvent class
-        public final static String SNAPCAPTUREDEVENT_CLASS = "bhv"; //prev. bhv, bfy ->from LandingPageActivity$8
+        public static String SNAPCAPTUREDEVENT_CLASS = "bhv"; //prev. bhv, bfy ->from LandingPageActivity$8
         //snapCaptureContext class
-        public final static String SNAPCAPTURECONTEXT_CLASS = "com.snapchat.android.util.eventbus.SnapCaptureContext";
+        public static String SNAPCAPTURECONTEXT_CLASS = "com.snapchat.android.util.eventbus.SnapCaptureContext";
         //aa_chat_camera_upload
-        public final static String UPLOAD_ICON = "0x7f02001a";
+        public static String UPLOAD_ICON = "0x7f02001a";
 
         //API, SCREENSHOT # TAKE_PHOTO_METHOD
-        public static final String TAKE_PHOTO_METHOD = "com.snapchat.android.camera.TakePhotoCallback.TAKE_PHOTO_METHOD";
+        public static String TAKE_PHOTO_METHOD = "com.snapchat.android.camera.TakePhotoCallback.TAKE_PHOTO_METHOD";
     }
     public static class lens {
-        public final static String LENSCLASS = "com.snapchat.android.model.lenses.Lens";
-
-        public final static String CLASS_LENSLIST_TYPE = "aLo";//.prev atz
-        public final static String LENSCALLBACK_CLASS = "BT";//.prev AN
-        public final static String LENSCALLBACK_ONJSONRESULT_VAR2 = "Qq";//.prev Ae
+        public static String LENSCLASS = "com.snapchat.android.model.lenses.Lens";
+        public static String LENS_ID = "mId";
+        public static String LENS_CODE = "mCode";
+        public static String LENS_HINTID = "mHintId";
+        public static String LENS_ICONLINK = "mIconLink";
+        public static String LENS_LENSLINK = "mLensLink";
+        public static String LENS_SIGNATURE = "mSignature";
+        public static String LENS_ISBACKSECTION = "mIsBackSection";
+        public static String LENS_ISFEATURED = "mIsFeatured";
+        public static String LENS_ISLOADING = "mIsLoading";
+        public static String LENS_PRIORITY = "mPriority";
+        public static String LENS_CATEGORIES = "mCategories";
+        //Lens.getCategories()
+        public static String LENS_GETCATEGORIES = "a";
+
+        public static String CLASS_LENSLIST_TYPE = "aLo";//.prev atz
+        public static String LENSCALLBACK_CLASS = "BT";//.prev AN
+        public static String LENSCALLBACK_ONJSONRESULT_VAR2 = "Qq";//.prev Ae
         //ScheduledLensesProvider class
-        public final static String LENSESPROVIDER_CLASS = "wr";
+        public static String LENSESPROVIDER_CLASS = "wr";
         //getLenses()
-        public final static String LENSESPROVIDER_GETLENSES = "f";
+        public static String LENSESPROVIDER_GETLENSES = "f";
 
-        public final static String LENSPREPARESTATECHANGE = "com.snapchat.android.util.eventbus.LensPrepareStateChangedEvent";
-        public final static String STATECHANGEPREPARESTATUSENUM = LENSPREPARESTATECHANGE + "$PrepareStatus";
-        public final static String AUTHENTICATION_CLASS = "arS";//prev. Zq
-        public final static String SIGNITURE_CHECK_METHOD = "a";
+        public static String LENSPREPARESTATECHANGE = "com.snapchat.android.util.eventbus.LensPrepareStateChangedEvent";
+        public static String STATECHANGEPREPARESTATUSENUM = LENSPREPARESTATECHANGE + "$PrepareStatus";
+        public static String AUTHENTICATION_CLASS = "arS";//prev. Zq
+        public static String SIGNITURE_CHECK_METHOD = "a";
     }
     public static class stickers {
         //FastZippedAssetReader class
-        public final static String ASSETREADER_CLASS = "agm";
+        public static String ASSETREADER_CLASS = "agm";
         //FastZippedAssetReader.a
-        public final static String ASSETREADER_A_CLASS = "TB$a";//TODO: not right, they changed it to byte[]
+        public static String ASSETREADER_A_CLASS = "TB$a";//TODO: not right, they changed it to byte[]
         //read()
-        public final static String ASSETREADER_READ = "a";
+        public static String ASSETREADER_READ = "a";
         //SVG class
-        public final static String SVG_CLASS = "hc";//prev gZ
+        public static String SVG_CLASS = "hc";//prev gZ
     }
     public static class filters {
         //FilterLoader class
-        public final static String LOADER_CLASS = "axf";//prev. afM
+        public static String LOADER_CLASS = "axf";//prev. afM
         //FilterLoader First Param
-        public final static String LOADER_FIRST = "amH";//prev. SP
+        public static String LOADER_FIRST = "amH";//prev. SP
         //added instance
-        public final static String FILTER_CLASS = "avV";//prev. adG
+        public static String FILTER_CLASS = "avV";//prev. adG
         //called Object
-        public final static String OBJECT_CLASS = "awU";//prev. afy
+        public static String OBJECT_CLASS = "awU";//prev. afy
         //onSnapCapturedEvent first param
-        public final static String CAPTURED_FIRST = "azW";//prev. ajD
+        public static String CAPTURED_FIRST = "azW";//prev. ajD
         //public.xml - battery_view
         public static int BATTERY_VIEW = 2130968600;
         //public.xml - battery_icon
         public static int BATTERY_ICON = 2131689687;
-        public final static String SNAPCHAPTUREDEVENT_CLASS = "";
+        public static String SNAPCHAPTUREDEVENT_CLASS = "";
     }
-    public class visualfilters {
-        public static final String FILTERS_CLASS = "On";//prev. afg
-        public static final String FILTERSLOADER_CLASS = "awB";//prev. afh
-        public static final String FILTERSLOADER_2_CLASS = "awH";//prev. afn
-        public static final String SETFILTER_B_CLASS = "sK";//prev. rA
-        public static final String GREYSCALE_CLASS = "axc";//prev. afJ
-        public static final String ADDFILTER_CLASS = "axd";//prev. afK
-        public static final String ADDFILTER_PARAM = "axa";//prev. afH
-        public static final String ADDER_3_PARAM = "awH";
-        public static final String ADDER_CLASS = "awC"; //prev. afi
-        public static final String ADDER_PARAM = "awL"; //prev afr
-        public static final String SNAPCHAPTUREDEVENT_CLASS = "azW";//prev. ajD
-        public static final String FILTERMETRICSPROVIDER_CLASS = "yo";
-        public static final String ANNOTATEDMEDIABRYO = "com.snapchat.android.model.AnnotatedMediabryo";
-        public static final String VISUALFILTERBASE = "awI";
-        public static final String FILTER_GETVIEW = "c";
-        public static final String BRYO_SNAPTYPE = "com.snapchat.android.app.feature.messaging.chat.type.SnapType";
-        public static final String VISUALFILTER_TYPE = "com.snapchat.android.app.shared.feature.preview.model.filter.VisualFilterType";
-        public static final String VISUAL_FILTER_TYPE_CHECK_METHOD = "c";
-        public static final String VISUAL_FILTER_TYPE_CHECK_METHOD_PARAMETER_CLASS = "Oi";
+    public static class visualfilters {
+        public static String FILTERS_CLASS = "On";//prev. afg
+        public static String FILTERSLOADER_CLASS = "awB";//prev. afh
+        public static String FILTERSLOADER_2_CLASS = "awH";//prev. afn
+        public static String SETFILTER_B_CLASS = "sK";//prev. rA
+        public static String GREYSCALE_CLASS = "axc";//prev. afJ
+        public static String ADDFILTER_CLASS = "axd";//prev. afK
+        public static String ADDFILTER_PARAM = "axa";//prev. afH
+        public static String ADDER_3_PARAM = "awH";
+        public static String ADDER_CLASS = "awC"; //prev. afi
+        public static String ADDER_PARAM = "awL"; //prev afr
+        public static String SNAPCHAPTUREDEVENT_CLASS = "azW";//prev. ajD
+        public static String FILTERMETRICSPROVIDER_CLASS = "yo";
+        public static String ANNOTATEDMEDIABRYO = "com.snapchat.android.model.AnnotatedMediabryo";
+        public static String VISUALFILTERBASE = "awI";
+        public static String FILTER_GETVIEW = "c";
+        public static String BRYO_SNAPTYPE = "com.snapchat.android.app.feature.messaging.chat.type.SnapType";
+        public static String VISUALFILTER_TYPE = "com.snapchat.android.app.shared.feature.preview.model.filter.VisualFilterType";
+        public static String VISUAL_FILTER_TYPE_CHECK_METHOD = "c";
+        public static String VISUAL_FILTER_TYPE_CHECK_METHOD_PARAMETER_CLASS = "Oi";
     }
     public static class timer {
-        public final static String TAKESNAPBUTTON_CLASS = "com.snapchat.android.ui.camera.TakeSnapButton";
-        public final static String TAKESNAPBUTTON_ONDRAW = "onDraw";
-        public final static String TAKESNAPBUTTON_BLEAN1 = "c";
-        public final static String TAKESNAPBUTTON_BLEAN2 = "e";
-        public final static String TAKESNAPBUTTON_TIME = "b";
-        public final static String TAKESNAPBUTTON_X = "o";//prev. n
-        public final static String TAKESNAPBUTTON_Y = "p";//prev. o
-        public final static String RECORDING_MESSAGE_HOOK_CLASS = "abc";
-        public final static String RECORDING_MESSAGE_HOOK_METHOD = "handleMessage";
+        public static String TAKESNAPBUTTON_CLASS = "com.snapchat.android.ui.camera.TakeSnapButton";
+        public static final String TAKESNAPBUTTON_ONDRAW = "onDraw";
+        public static String TAKESNAPBUTTON_BLEAN1 = "c";
+        public static String TAKESNAPBUTTON_BLEAN2 = "e";
+        public static String TAKESNAPBUTTON_TIME = "b";
+        public static String TAKESNAPBUTTON_X = "o";//prev. n
+        public static String TAKESNAPBUTTON_Y = "p";//prev. o
+        public static String RECORDING_MESSAGE_HOOK_CLASS = "abc";
+        public static final String RECORDING_MESSAGE_HOOK_METHOD = "handleMessage";
     }
     public static class chat {
-        public final static String CHAT_CLASS = "Ie";
-        public final static String CONVERSATION_CLASS = "Ig";//prev. com.snapchat.android.model.chat.ChatConversation
-        public final static String ABSTRACT_CONVERSATION_CLASS = "IM";
-        public final static String CHATFEEDITEM_CLASS = "com.snapchat.android.model.chat.ChatFeedItem";
-        public final static String CONVERSATION_LOADOLDCHATS = "a";
-        public final static String MESSAGEVIEWHOLDER_CLASS = "com.snapchat.android.app.feature.messaging.chat.impl.viewholder.MessageViewHolder";
-        public final static String MESSAGEVIEWHOLDER_METHOD = "b";
-        public final static String MESSAGEVIEWHOLDER_VAR1 = "z";
-        public final static String MESSAGEVIEWHOLDER_VAR2 = "d";
-        public final static String MESSAGEVIEWHOLDER_ISSAVED = "E_";
-        public final static String MESSAGEVIEWHOLDER_ISFAILED = "N_";//prev. N
-        public final static String MESSAGEVIEWHOLDER_SAVE = "e";//prev. x
-        public final static String CHATLAYOUT_CLASS = "Kc";//prev. Nd
-        public final static String CHATLAYOUT_INSTANTIATEITEM = "instantiateItem";//prev. Nd
-        public final static String BUS_CLASS = "com.squareup.otto.Bus";
-        public final static String CONVERSATION_VAR3 = "Ea";//prev. Vr
-        public final static String USERNAME_HOLDER_CLASS = "B";
-        public final static String HOLDER_USERNAME = "e";
-        public final static String SORTED_CHAT_LIST = "L";//prev. w
-        public final static String CHAT_FEED_ITEM = "Ii";//prev. Wv
-        public final static String CHAT_MEDIA_CLASS = "com.snapchat.android.app.feature.messaging.chat.model2.ChatMedia";
-        public final static String ISTYPING_CLASS = "FI";
-        public final static String ISTYPING_METHOD = "a";
-        public final static String SENT_CHAT_METHOD = "c";
-        public final static String SECURE_CHAT_SERVICE_CLASS = "com.snapchat.android.util.chat.SecureChatService";
-        public final static String SCS_MESSAGE_METHOD = "a";
-        public final static String CHAT_MESSAGE_BASE_CLASS = "aMj";
-        public final static String CHAT_MESSAGE_DETAILS_CLASS = "aJE";
+        public static String CHAT_CLASS = "Ie";
+        public static String CONVERSATION_CLASS = "Ig";//prev. com.snapchat.android.model.chat.ChatConversation
+        public static String ABSTRACT_CONVERSATION_CLASS = "IM";
+        public static String CHATFEEDITEM_CLASS = "com.snapchat.android.model.chat.ChatFeedItem";
+        public static String CONVERSATION_LOADOLDCHATS = "a";
+        public static String MESSAGEVIEWHOLDER_CLASS = "com.snapchat.android.app.feature.messaging.chat.impl.viewholder.MessageViewHolder";
+        public static String MESSAGEVIEWHOLDER_METHOD = "b";
+        public static String MESSAGEVIEWHOLDER_VAR1 = "z";
+        public static String MESSAGEVIEWHOLDER_VAR2 = "d";
+        public static String MESSAGEVIEWHOLDER_ISSAVED = "E_";
+        public static String MESSAGEVIEWHOLDER_ISFAILED = "N_";//prev. N
+        public static String MESSAGEVIEWHOLDER_SAVE = "e";//prev. x
+        public static String CHATLAYOUT_CLASS = "Kc";//prev. Nd
+        public static String CHATLAYOUT_INSTANTIATEITEM = "instantiateItem";//prev. Nd
+        public static String BUS_CLASS = "com.squareup.otto.Bus";
+        public static String CONVERSATION_VAR3 = "Ea";//prev. Vr
+        public static String USERNAME_HOLDER_CLASS = "B";
+        public static String HOLDER_USERNAME = "e";
+        public static String SORTED_CHAT_LIST = "L";//prev. w
+        public static String CHAT_FEED_ITEM = "Ii";//prev. Wv
+        public static String CHAT_MEDIA_CLASS = "com.snapchat.android.app.feature.messaging.chat.model2.ChatMedia";
+        public static String ISTYPING_CLASS = "FI";
+        public static String ISTYPING_METHOD = "a";
+        public static String SENT_CHAT_METHOD = "c";
+        // Chat accessors used when logging sent messages
+        public static String CHAT_GET_ID = "getId";
+        public static String CHAT_GET_TEXT = "r";
+        public static String CHAT_SENDER = "am";
+        public static String CHAT_GET_CONVERSATION_ID = "M_";
+        public static String CHAT_GET_TIMESTAMP = "i";
+        public static String SECURE_CHAT_SERVICE_CLASS = "com.snapchat.android.util.chat.SecureChatService";
+        public static String SCS_MESSAGE_METHOD = "a";
+        public static String CHAT_MESSAGE_BASE_CLASS = "aMj";
+        public static String CHAT_MESSAGE_DETAILS_CLASS = "aJE";
     }
     public static class notification {
-        public final static String NOTIFICATION_CLASS_1 = "xH";//prev. vz
-        public final static String NOTIFICATION_CLASS_2 = "azz";//prev. ajh
+        public static String NOTIFICATION_CLASS_1 = "xH";//prev. vz
+        public static String NOTIFICATION_CLASS_2 = "azz";//prev. ajh
     }
     public static class icons {
-        public final static String CAPTIONOPENED_CLASS = "TX";
-        public final static String CAPTIONOPENED_METHOD = "c";
+        public static String CAPTIONOPENED_CLASS = "TX";
+        public static String CAPTIONOPENED_METHOD = "c";
     }
     public static class stories {
-        public final static String RECENTSTORY_CLASS = "ahd";
-        public final static String RECENTSTORY_GETUSERNAME = "d";
-        public final static String ALLSTORY_CLASS = "agD";
-        public final static String ALLSTORY_GETFRIEND = "h";
-        public final static String LIVESTORY_CLASS = "aee";
-        public final static String DISCOVERSTORY_CLASS = "ati";
-        public final static String STORYLIST = "g";
-        public final static String RECENTSTORIES_CLASS = "com.snapchat.android.fragments.stories.StoriesFragment";
-        public final static String STORIES_FRAGMENT_POPULATEARRAY = "c";
-        public final static String FRIENDMANAGER_CLASS = "com.snapchat.android.model.FriendManager";
-        public final static String FRIENDMANAGER_RETURNINSTANCE = "h";
-        //public final static String DISCOVERSTORY_CLASS = "aay"; new story type "featured?" TODO: look into it
+        public static String RECENTSTORY_CLASS = "ahd";
+        public static String RECENTSTORY_GETUSERNAME = "d";
+        public static String ALLSTORY_CLASS = "agD";
+        public static String ALLSTORY_GETFRIEND = "h";
+        public static String LIVESTORY_CLASS = "aee";
+        public static String DISCOVERSTORY_CLASS = "ati";
+        public static String STORYLIST = "g";
+        public static String RECENTSTORIES_CLASS = "com.snapchat.android.fragments.stories.StoriesFragment";
+        public static String STORIES_FRAGMENT_POPULATEARRAY = "c";
+        public static String FRIENDMANAGER_CLASS = "com.snapchat.android.model.FriendManager";
+        public static String FRIENDMANAGER_RETURNINSTANCE = "h";
+        //public static String DISCOVERSTORY_CLASS = "aay"; new story type "featured?" TODO: look into it
         //search for "AUTO_ADVANCE_RECENT_UPDATES"
-        public final static String AUTOADVANCE_CLASS2 = "atJ";
-        public final static String AUTOADVANCE_METHOD2 = "a";
-        public final static String AUTOADVANCE_CLASS = "aty";
-        public final static String AUTOADVANCE_METHOD = "a";
-
-        public final static String TILE_HANDLER_CLASS = "atk";
-        public final static String GET_TILES_METHOD = "c";
-
-        public final static String STORY_LOADER_CLASS = "ahm";
-        public final static String SL_LOAD_METHOD = "a";
-        public final static String VIEWED_STORY_CLASS = "agD";
-        public final static String VS_FRIEND_OBJECT = "b";
+        public static String AUTOADVANCE_CLASS2 = "atJ";
+        public static String AUTOADVANCE_METHOD2 = "a";
+        public static String AUTOADVANCE_CLASS = "aty";
+        public static String AUTOADVANCE_METHOD = "a";
+
+        public static String TILE_HANDLER_CLASS = "atk";
+        public static String GET_TILES_METHOD = "c";
+
+        public static String STORY_LOADER_CLASS = "ahm";
+        public static String SL_LOAD_METHOD = "a";
+        public static String VIEWED_STORY_CLASS = "agD";
+        public static String VS_FRIEND_OBJECT = "b";
     }
     public static class groups {
-        public final static String STORY_CLASS = "apb";//prev. Vp
-        public final static String STORYARRAY_CLASS = "ase";//prev. Zx
-        public final static String STORYARRAY_METHOD = "a";
-        public final static String STORYSECTION_CLASS = "afe";//prev. OP
-        public final static String INTERFACE = "Ml";//prev. BS
-        public final static String GETFRIENDMANAGER_METHOD = "h";//prev. e
-        public final static String GETUSERNAME_METHOD = "d";//prev. g
-        public final static String GETDISPLAYNAME_METHOD = "f";
+        public static String STORY_CLASS = "apb";//prev. Vp
+        public static String STORYARRAY_CLASS = "ase";//prev. Zx
+        public static String STORYARRAY_METHOD = "a";
+        public static String STORYSECTION_CLASS = "afe";//prev. OP
+        public static String INTERFACE = "Ml";//prev. BS
+        public static String STORYSECTION_LIST = "c";
+        public static String STORYSECTION_CALLBACK = "h";
+        public static String STORYSECTION_CALLBACK_SELECT = "a";
+        public static String FRIEND_USERNAME = "mUsername";
+        public static String GETFRIENDMANAGER_METHOD = "h";//prev. e
+        public static String GETUSERNAME_METHOD = "d";//prev. g
+        public static String GETDISPLAYNAME_METHOD = "f";
     }
     public static class bus {
-        public final static String UPDATEEVENT_CLASS = "Ds";
-        public final static String GETBUS_CLASS = "aju";//prev. RX
-        public final static String GETBUS_METHOD = "a";
-        public final static String BUS_POST = "a";
+        public static String UPDATEEVENT_CLASS = "Ds";
+        public static String GETBUS_CLASS = "aju";//prev. RX
+        public static String GETBUS_METHOD = "a";
+        public static String BUS_POST = "a";
     }
     public static class navbar {
-        public final static String FORCENAVBAR_CLASS = "amv"; // prev. SM
-        public final static String FORCENAVBAR_METHOD = "a";
+        public static String FORCENAVBAR_CLASS = "amv"; // prev. SM
+        public static String FORCENAVBAR_METHOD = "a";
     }
     public static class paint{
-        public final static String LEGACYCANVASVIEW_A = "OF";
+        public static String LEGACYCANVASVIEW_A = "OF";
     }
     public static class flash {
-        public final static String ISVISIBLE_FIELD = "mIsVisible";
-        public final static String SWIPELAYOUT_FIELD = "p";//prev. n
-        public final static String GETRESID_OBJECT = "g";//prev. e
-        public final static String ISSCROLLED_METHOD = "c";
-        public final static String KEYEVENT_CLASS = "Xk";//prev. CX
-        public final static String KEYCODE_FIELD = "a";
-        public final static String FLASH_METHOD = "a";//prev. b
-        public final static String OVERLAY_FIELD = "z";//prev. y
+        public static String ISVISIBLE_FIELD = "mIsVisible";
+        public static String SWIPELAYOUT_FIELD = "p";//prev. n
+        public static String GETRESID_OBJECT = "g";//prev. e
+        public static String ISSCROLLED_METHOD = "c";
+        public static String KEYEVENT_CLASS = "Xk";//prev. CX
+        public static String KEYCODE_FIELD = "a";
+        public static String FLASH_METHOD = "a";//prev. b
+        public static String OVERLAY_FIELD = "z";//prev. y
     }
     public static class friendmojis {
-        public final static String ON_FRIENDS_UPDATE_METHOD = "u";//prev. w
-        public final static String FRIEND_MANAGER_CLASS = "com.snapchat.android.model.FriendManager";
-        public final static String FRIENDS_MAP_FIELD = "mOutgoingFriendsListMap";
-        public final static String GET_VALUES_METHOD = "b";
-        public final static String IS_IT_ME_METHOD = "n";//prev. k
-        public final static String GET_FRIENDMOJI_STRING_METHOD = "q";//Prev. o
+        public static String ON_FRIENDS_UPDATE_METHOD = "u";//prev. w
+        public static String FRIEND_MANAGER_CLASS = "com.snapchat.android.model.FriendManager";
+        public static String FRIENDS_MAP_FIELD = "mOutgoingFriendsListMap";
+        public static String GET_VALUES_METHOD = "b";
+        public static String IS_IT_ME_METHOD = "n";//prev. k
+        public static String GET_FRIENDMOJI_STRING_METHOD = "q";//Prev. o
     }
     public static class misc {
-        public final static String CAPTIONVIEW = "UA";
-        public final static String CAPTIONVIEW_TEXT_LIMITER = "d";
-        public final static String PREFERENCES_CLASS = "SU";
-        public final static String GETUSERNAME_METHOD = "C";
+        public static String CAPTIONVIEW = "UA";
+        public static String CAPTIONVIEW_TEXT_LIMITER = "d";
+        public static String PREFERENCES_CLASS = "SU";
+        public static String GETUSERNAME_METHOD = "C";
 
-        public final static String ADVANCE_TYPE_CLASS = "aFl";
-        public final static String NO_AUTO_ADVANCE_OBJECT = "a";
+        public static String ADVANCE_TYPE_CLASS = "aFl";
+        public static String NO_AUTO_ADVANCE_OBJECT = "a";
     }
     public static class premium{
-        public final static String SNAP_UPDATE_CLASS = "zT";
+        public static String SNAP_UPDATE_CLASS = "zT";
     }
 
     public static void writeGsonFile()
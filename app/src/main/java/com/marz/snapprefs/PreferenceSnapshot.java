@@ -0,0 +1,245 @@
+package com.marz.snapprefs;
+
+import com.marz.snapprefs.Preferences.Prefs;
+
+import java.util.Map;
+
+/**
+ * Immutable, strongly typed view of every {@link Prefs} entry.
+ * <p>
+ * A new snapshot is built by {@link Preferences} whenever the preference map is loaded or
+ * changed and published through a single volatile reference, so hook code can read a
+ * primitive field instead of hashing a key, unboxing and parsing on every call.
+ * <p>
+ * The field list mirrors {@link Prefs} one-to-one; add a field here whenever a preference is added.
+ */
+public final class PreferenceSnapshot {
+
+    public final boolean customFilter;
+    public final boolean paintTools;
+    public final boolean multiFilter;
+    public final boolean timerUnlimited;
+    public final boolean hideTimerStory;
+    public final boolean loopingVids;
+    public final boolean hideTimerSnap;
+    public final boolean toastEnabled;
+    public final boolean vibrationsEnabled;
+    public final boolean saveSentSnaps;
+    public final boolean dedupSaves;
+    public final boolean sortByCategory;
+    public final boolean sortByUsername;
+    public final boolean debugging;
+    public final boolean overlays;
+    public final boolean speed;
+    public final boolean weather;
+    public final boolean location;
+    public final boolean storyPreload;
+    public final boolean discoverSnap;
+    public final boolean discoverUi;
+    public final boolean preloadPolicy;
+    public final boolean customSticker;
+    public final boolean hideLive;
+    public final boolean hidePeople;
+    public final boolean replay;
+    public final boolean stealthViewing;
+    public final boolean stealthChatSaving;
+    public final boolean stealthNotifications;
+    public final boolean hideTypingAndPresence;
+    public final boolean unlimGroups;
+    public final boolean selectAll;
+    public final boolean hideBf;
+    public final boolean timerCounter;
+    public final boolean flashKey;
+    public final boolean chatAutoSave;
+    public final boolean chatMediaSave;
+    public final boolean integration;
+    public final boolean buttonPosition;
+    public final int buttonOpacity;
+    public final boolean buttonResize;
+    public final boolean lensesLoad;
+    public final boolean lensesCollect;
+    public final boolean lensesAutoEnable;
+    public final boolean lensesForced;
+    public final boolean lensesSortBySel;
+    public final boolean lensesHideCurrentlyProvidedScLenses;
+    public final boolean acceptedTou;
+    public final boolean selectStory;
+    public final boolean selectVenue;
+    public final boolean textTools;
+    public final boolean hideRecent;
+    public final boolean addVisualFilters;
+    public final boolean captionUnlimitedVanilla;
+    public final boolean captionUnlimitedFat;
+    public final boolean checkSize;
+    public final boolean timber;
+    public final boolean autoAdvance;
+    public final boolean chatLogging;
+    public final boolean groups;
+    public final boolean killScOnPrefChange;
+    public final boolean vfilterAmaro;
+    public final boolean vfilterF1997;
+    public final boolean vfilterBrannan;
+    public final boolean vfilterEarlybird;
+    public final boolean vfilterHefe;
+    public final boolean vfilterHudson;
+    public final boolean vfilterInkwell;
+    public final boolean vfilterLomo;
+    public final boolean vfilterLordKelvin;
+    public final boolean vfilterNashville;
+    public final boolean vfilterRise;
+    public final boolean vfilterSierra;
+    public final boolean vfilterSutro;
+    public final boolean vfilterToaster;
+    public final boolean vfilterValencia;
+    public final boolean vfilterWalden;
+    public final boolean vfilterXproll;
+    public final String savePath;
+    public final String customFilterLocation;
+    public final String confirmationId;
+    public final String deviceId;
+    public final String prefKeySaveLocation;
+    public final String prefKeyHideLocation;
+    public final int savemodeSnap;
+    public final int savemodeStory;
+    public final int toastLength;
+    public final int timerMinimum;
+    public final int maxRecordingTime;
+    public final int preloadDailyBudget;
+    public final int forceNavbar;
+    public final int customFilterType;
+    public final int licence;
+    public final int rotationMode;
+    public final int adjustMethod;
+    public final int lensSelectorSpan;
+
+    PreferenceSnapshot(Map<String, Object> map) {
+
+        customFilter = readBool(map, Prefs.CUSTOM_FILTER);
+        paintTools = readBool(map, Prefs.PAINT_TOOLS);
+        multiFilter = readBool(map, Prefs.MULTI_FILTER);
+        timerUnlimited = readBool(map, Prefs.TIMER_UNLIMITED);
+        hideTimerStory = readBool(map, Prefs.HIDE_TIMER_STORY);
+        loopingVids = readBool(map, Prefs.LOOPING_VIDS);
+        hideTimerSnap = readBool(map, Prefs.HIDE_TIMER_SNAP);
+        toastEnabled = readBool(map, Prefs.TOAST_ENABLED);
+        vibrationsEnabled = readBool(map, Prefs.VIBRATIONS_ENABLED);
+        saveSentSnaps = readBool(map, Prefs.SAVE_SENT_SNAPS);
+        dedupSaves = readBool(map, Prefs.DEDUPLICATE_SAVES);
+        sortByCategory = readBool(map, Prefs.SORT_BY_CATEGORY);
+        sortByUsername = readBool(map, Prefs.SORT_BY_USERNAME);
+        debugging = readBool(map, Prefs.DEBUGGING);
+        overlays = readBool(map, Prefs.OVERLAYS);
+        speed = readBool(map, Prefs.SPEED);
+        weather = readBool(map, Prefs.WEATHER);
+        location = readBool(map, Prefs.LOCATION);
+        storyPreload = readBool(map, Prefs.STORY_PRELOAD);
+        discoverSnap = readBool(map, Prefs.DISCOVER_SNAP);
+        discoverUi = readBool(map, Prefs.DISCOVER_UI);
+        preloadPolicy = readBool(map, Prefs.PRELOAD_POLICY);
+        customSticker = readBool(map, Prefs.CUSTOM_STICKER);
+        hideLive = readBool(map, Prefs.HIDE_LIVE);
+        hidePeople = readBool(map, Prefs.HIDE_PEOPLE);
+        replay = readBool(map, Prefs.REPLAY);
+        stealthViewing = readBool(map, Prefs.STEALTH_VIEWING);
+        stealthChatSaving = readBool(map, Prefs.STEALTH_CHAT_SAVING);
+        stealthNotifications = readBool(map, Prefs.STEALTH_NOTIFICATIONS);
+        hideTypingAndPresence = readBool(map, Prefs.HIDE_TYPING_AND_PRESENCE);
+        unlimGroups = readBool(map, Prefs.UNLIM_GROUPS);
+        selectAll = readBool(map, Prefs.SELECT_ALL);
+        hideBf = readBool(map, Prefs.HIDE_BF);
+        timerCounter = readBool(map, Prefs.TIMER_COUNTER);
+        flashKey = readBool(map, Prefs.FLASH_KEY);
+        chatAutoSave = readBool(map, Prefs.CHAT_AUTO_SAVE);
+        chatMediaSave = readBool(map, Prefs.CHAT_MEDIA_SAVE);
+        integration = readBool(map, Prefs.INTEGRATION);
+        buttonPosition = readBool(map, Prefs.BUTTON_POSITION);
+        buttonOpacity = readInt(map, Prefs.BUTTON_OPACITY);
+        buttonResize = readBool(map, Prefs.BUTTON_RESIZE);
+        lensesLoad = readBool(map, Prefs.LENSES_LOAD);
+        lensesCollect = readBool(map, Prefs.LENSES_COLLECT);
+        lensesAutoEnable = readBool(map, Prefs.LENSES_AUTO_ENABLE);
+        lensesForced = readBool(map, Prefs.LENSES_FORCED);
+        lensesSortBySel = readBool(map, Prefs.LENSES_SORT_BY_SEL);
+        lensesHideCurrentlyProvidedScLenses = readBool(map, Prefs.LENSES_HIDE_CURRENTLY_PROVIDED_SC_LENSES);
+        acceptedTou = readBool(map, Prefs.ACCEPTED_TOU);
+        selectStory = readBool(map, Prefs.SELECT_STORY);
+        selectVenue = readBool(map, Prefs.SELECT_VENUE);
+        textTools = readBool(map, Prefs.TEXT_TOOLS);
+        hideRecent = readBool(map, Prefs.HIDE_RECENT);
+        addVisualFilters = readBool(map, Prefs.ADD_VISUAL_FILTERS);
+        captionUnlimitedVanilla = readBool(map, Prefs.CAPTION_UNLIMITED_VANILLA);
+        captionUnlimitedFat = readBool(map, Prefs.CAPTION_UNLIMITED_FAT);
+        checkSize = readBool(map, Prefs.CHECK_SIZE);
+        timber = readBool(map, Prefs.TIMBER);
+        autoAdvance = readBool(map, Prefs.AUTO_ADVANCE);
+        chatLogging = readBool(map, Prefs.CHAT_LOGGING);
+        groups = readBool(map, Prefs.GROUPS);
+        killScOnPrefChange = readBool(map, Prefs.KILL_SC_ON_PREF_CHANGE);
+        vfilterAmaro = readBool(map, Prefs.VFILTER_AMARO);
+        vfilterF1997 = readBool(map, Prefs.VFILTER_F1997);
+        vfilterBrannan = readBool(map, Prefs.VFILTER_BRANNAN);
+        vfilterEarlybird = readBool(map, Prefs.VFILTER_EARLYBIRD);
+        vfilterHefe = readBool(map, Prefs.VFILTER_HEFE);
+        vfilterHudson = readBool(map, Prefs.VFILTER_HUDSON);
+        vfilterInkwell = readBool(map, Prefs.VFILTER_INKWELL);
+        vfilterLomo = readBool(map, Prefs.VFILTER_LOMO);
+        vfilterLordKelvin = readBool(map, Prefs.VFILTER_LORD_KELVIN);
+        vfilterNashville = readBool(map, Prefs.VFILTER_NASHVILLE);
+        vfilterRise = readBool(map, Prefs.VFILTER_RISE);
+        vfilterSierra = readBool(map, Prefs.VFILTER_SIERRA);
+        vfilterSutro = readBool(map, Prefs.VFILTER_SUTRO);
+        vfilterToaster = readBool(map, Prefs.VFILTER_TOASTER);
+        vfilterValencia = readBool(map, Prefs.VFILTER_VALENCIA);
+        vfilterWalden = readBool(map, Prefs.VFILTER_WALDEN);
+        vfilterXproll = readBool(map, Prefs.VFILTER_XPROLL);
+        savePath = readString(map, Prefs.SAVE_PATH);
+        customFilterLocation = readString(map, Prefs.CUSTOM_FILTER_LOCATION);
+        confirmationId = readString(map, Prefs.CONFIRMATION_ID);
+        deviceId = readString(map, Prefs.DEVICE_ID);
+        prefKeySaveLocation = readString(map, Prefs.PREF_KEY_SAVE_LOCATION);
+        prefKeyHideLocation = readString(map, Prefs.PREF_KEY_HIDE_LOCATION);
+        savemodeSnap = readInt(map, Prefs.SAVEMODE_SNAP);
+        savemodeStory = readInt(map, Prefs.SAVEMODE_STORY);
+        toastLength = readInt(map, Prefs.TOAST_LENGTH);
+        timerMinimum = readInt(map, Prefs.TIMER_MINIMUM);
+        maxRecordingTime = readInt(map, Prefs.MAX_RECORDING_TIME);
+        preloadDailyBudget = readInt(map, Prefs.PRELOAD_DAILY_BUDGET);
+        forceNavbar = readInt(map, Prefs.FORCE_NAVBAR);
+        customFilterType = readInt(map, Prefs.CUSTOM_FILTER_TYPE);
+        licence = readInt(map, Prefs.LICENCE);
+        rotationMode = readInt(map, Prefs.ROTATION_MODE);
+        adjustMethod = readInt(map, Prefs.ADJUST_METHOD);
+        lensSelectorSpan = readInt(map, Prefs.LENS_SELECTOR_SPAN);
+    }
+
+    private static Object read(Map<String, Object> map, Prefs preference) {
+        Object value = map.get(preference.key);
+        return value != null ? value : preference.defaultVal;
+    }
+
+    private static boolean readBool(Map<String, Object> map, Prefs preference) {
+        Object value = read(map, preference);
+        return value instanceof Boolean && (Boolean) value;
+    }
+
+    private static int readInt(Map<String, Object> map, Prefs preference) {
+        Object value = read(map, preference);
+
+        if (value instanceof Integer)
+            return (Integer) value;
+
+        if (value instanceof String) {
+            try {
+                return Integer.parseInt(((String) value).trim());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        return preference.defaultVal instanceof Integer ? (Integer) preference.defaultVal : 0;
+    }
+
+    private static String readString(Map<String, Object> map, Prefs preference) {
+        Object value = read(map, preference);
+        return value != null ? value.toString() : null;
+    }
+}
@@ -30,7 +30,10 @@ public class Preferences {
     public static final int TIMER_MINIMUM_DISABLED = 0;
     public static final int SPIN_EXCESS = 200;
 
-    private static ConcurrentHashMap<String, Object> preferenceMap = new ConcurrentHashMap<>();
+    // Held for every change of the preference map together with the snapshot built from it
+    private static final Object snapshotLock = new Object();
+    private static volatile ConcurrentHashMap<String, Object> preferenceMap = new ConcurrentHashMap<>();
+    private static volatile PreferenceSnapshot snapshot = new PreferenceSnapshot(preferenceMap);
     private static XSharedPreferences xSPrefs;
 
     private static XSharedPreferences createXSPrefsIfNotExisting() {
@@ -159,8 +162,8 @@ public class Preferences {
             return;
         }
 
-        //preferenceMap = new ConcurrentHashMap<>(map);
-        preferenceMap = new ConcurrentHashMap<>();
+        // Filled in completely before it replaces the map, so the map and snapshot always agree
+        ConcurrentHashMap<String, Object> loaded = new ConcurrentHashMap<>();
         for (String key : map.keySet()) {
             if (key == null) {
                 Logger.log("Null preference key", LogType.PREFS.setForced());
@@ -169,11 +172,17 @@ public class Preferences {
             Object obj = map.get(key);
 
             if (obj == null) {
+                // Left out, so the preference falls back to its default
                 Logger.log("Loaded null object for: " + key, LogType.PREFS.setForced());
-                return;
+                continue;
             }
             //Logger.log("Loaded preference: " + key + " val: " + obj);
-            preferenceMap.put(key, obj);
+            loaded.put(key, obj);
+        }
+
+        synchronized (snapshotLock) {
+            preferenceMap = loaded;
+            refreshSnapshot();
         }
     }
 
@@ -181,6 +190,33 @@ public class Preferences {
         return preferenceMap;
     }
 
+    /**
+     * Returns the typed preference snapshot built from the last load or change.
+     * Prefer this over {@link #getBool(Prefs)} and friends inside hooks that run frequently.
+     *
+     * @return The current, immutable {@link PreferenceSnapshot}
+     */
+    public static PreferenceSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Rebuild the typed snapshot from the preference map and publish it in a single write.
+     * Changes hold the lock from their put to this, so a snapshot never misses a later value.
+     */
+    private static void refreshSnapshot() {
+        synchronized (snapshotLock) {
+            snapshot = new PreferenceSnapshot(preferenceMap);
+        }
+    }
+
+    private static void putAndRefresh(String key, Object value) {
+        synchronized (snapshotLock) {
+            preferenceMap.put(key, value);
+            refreshSnapshot();
+        }
+    }
+
     public static Object getPref(String key, Object defaultVal) {
         Object preferenceVal = preferenceMap.get(key);
 
@@ -217,7 +253,7 @@ public class Preferences {
     }
 
     public static void setPref(Prefs preference, Object value) {
-        preferenceMap.put(preference.key, value != null ? value : preference.defaultVal);
+        putAndRefresh(preference.key, value != null ? value : preference.defaultVal);
         Logger.log(String.format("Setting preference [Pref:%s] to [Value:%s]", preference, value));
     }
 
@@ -236,9 +272,13 @@ public class Preferences {
         }
 
         if (editor.commit()) {
-            for (String key : values.keySet()) {
-                Object obj = values.get(key);
-                preferenceMap.put(key, obj);
+            synchronized (snapshotLock) {
+                for (String key : values.keySet()) {
+                    Object obj = values.get(key);
+                    preferenceMap.put(key, obj);
+                }
+
+                refreshSnapshot();
             }
         }
 
@@ -248,8 +288,9 @@ public class Preferences {
     public static void putString(String key, String value) {
         SharedPreferences.Editor editor = MainActivity.prefs.edit();
         editor.putString(key, value);
-        if (editor.commit())
-            preferenceMap.put(key, value);
+        if (editor.commit()) {
+            putAndRefresh(key, value);
+        }
 
         updateProtection();
     }
@@ -258,8 +299,9 @@ public class Preferences {
         SharedPreferences.Editor editor = MainActivity.prefs.edit();
         editor.putBoolean(key, value);
 
-        if (editor.commit())
-            preferenceMap.put(key, value);
+        if (editor.commit()) {
+            putAndRefresh(key, value);
+        }
 
         updateProtection();
     }
@@ -267,8 +309,9 @@ public class Preferences {
     public static void putInt(String key, int value) {
         SharedPreferences.Editor editor = MainActivity.prefs.edit();
         editor.putInt(key, value);
-        if (editor.commit())
-            preferenceMap.put(key, value);
+        if (editor.commit()) {
+            putAndRefresh(key, value);
+        }
 
         updateProtection();
     }
@@ -398,6 +441,7 @@ public class Preferences {
         TOAST_ENABLED("pref_key_toasts_checkbox", true),
         VIBRATIONS_ENABLED("pref_key_vibration_checkbox", true),
         SAVE_SENT_SNAPS("pref_key_save_sent_snaps", true),
+        DEDUPLICATE_SAVES("pref_key_dedup_saves", false),
         SORT_BY_CATEGORY("pref_key_sort_files_mode", false),
         SORT_BY_USERNAME("pref_key_sort_files_username", true),
         DEBUGGING("pref_key_debug", BuildConfig.BUILD_TYPE.toLowerCase() == "debug"),
@@ -408,6 +452,7 @@ public class Preferences {
         STORY_PRELOAD("pref_key_storypreload", false),
         DISCOVER_SNAP("pref_key_discover", false),
         DISCOVER_UI("pref_key_discover_ui", false),
+        PRELOAD_POLICY("pref_key_preload_policy", false),
         CUSTOM_STICKER("pref_key_sticker", false),
         HIDE_LIVE("pref_key_hidelive", false),
         HIDE_PEOPLE("pref_key_hidepeople", false),
@@ -480,6 +525,7 @@ public class Preferences {
         TOAST_LENGTH("pref_key_toasts_duration", TOAST_LENGTH_LONG),
         TIMER_MINIMUM("pref_key_timer_minimum", TIMER_MINIMUM_DISABLED),
         MAX_RECORDING_TIME("pref_key_max_recording_time", "10"),
+        PRELOAD_DAILY_BUDGET("pref_key_preload_daily_budget", "50"),
         FORCE_NAVBAR("pref_key_forcenavbar", 0),
         CUSTOM_FILTER_TYPE("pref_key_filter_type", 0),
         LICENCE(DEVICE_ID.key, 0),
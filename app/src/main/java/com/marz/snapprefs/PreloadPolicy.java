@@ -0,0 +1,262 @@
+package com.marz.snapprefs;
+
+import android.content.Context;
+
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Util.DeviceState;
+import com.marz.snapprefs.Util.PersistentStringSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Decides for every preload Snapchat starts whether it is downloaded or skipped.
+ * <p>
+ * The old per-source block preferences still skip their source outright. With smart
+ * preloading enabled the remaining requests go through these rules:
+ * <ul>
+ * <li>A request that was skipped before and is made again means the user opened it, so
+ * it is downloaded and counted as a hit.</li>
+ * <li>On an unmetered network with enough battery everything is downloaded.</li>
+ * <li>On low battery without a charger the preload is skipped.</li>
+ * <li>On a metered network, content the user has opened before is downloaded while the
+ * daily byte budget lasts, everything else is skipped.</li>
+ * </ul>
+ * Content counts as opened once it was requested again after a skip, or when a hook reports
+ * it through {@link #recordView}. Requests without a key can't be matched to anything, so
+ * they only go by the network and battery.
+ * <p>
+ * Snapchat doesn't tell us the size of a preload before it starts, so every source is
+ * charged a fixed estimate.
+ * <p>
+ * Decisions are made on Snapchat's preload threads and never wait for the disk: the history
+ * of opened content is loaded in the background by {@link #init} and kept in memory, and new
+ * entries are appended to its journal in the background too.
+ */
+public class PreloadPolicy {
+    static final String HISTORY_FILE = "PreloadHistory.journal";
+    private static final int LOW_BATTERY_PERCENT = 15;
+    private static final int STATS_LOG_INTERVAL = 20;
+    private static final long BYTES_PER_MB = 1024 * 1024;
+
+    private static final ExecutorService historyWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Snapprefs-preload-history");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    // Skipped keys of the current day, a repeated request or a view of one of these is a hit
+    private static final HashSet<String> skipped = new HashSet<>();
+    // Keys of the content the user opened, filled in from the history once it's loaded
+    private static final HashSet<String> opened = new HashSet<>();
+    // Only touched on the history thread
+    private static PersistentStringSet history;
+    private static boolean initialised;
+    private static int budgetDay = -1;
+    private static long budgetSpent;
+    private static long bytesSaved;
+    private static int skippedCount;
+    private static int skippedHits;
+    private static int decisions;
+
+    private static boolean metered;
+    private static boolean charging;
+    private static int batteryPercent = 100;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private PreloadPolicy() {
+    }
+
+    /**
+     * Start loading the history of opened content in the background, returns straight away.
+     */
+    static synchronized void init() {
+        if (initialised)
+            return;
+
+        initialised = true;
+        historyWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                PersistentStringSet loaded = new PersistentStringSet(new File(Preferences.getContentPath(), HISTORY_FILE));
+
+                try {
+                    loaded.load();
+                } catch (IOException e) {
+                    Logger.log("Failed to load the preload history", e, LogType.DEBUG);
+                }
+
+                synchronized (PreloadPolicy.class) {
+                    opened.addAll(loaded.view());
+                }
+
+                history = loaded;
+            }
+        });
+    }
+
+    /**
+     * @param key Tells the requests of a source apart, or null if the request has no key
+     */
+    public static synchronized Decision decide(Source source, String key) {
+        PreferenceSnapshot prefs = Preferences.getSnapshot();
+
+        if (source.isBlocked(prefs))
+            return record(source, Decision.SKIP);
+
+        if (!prefs.preloadPolicy)
+            return Decision.DOWNLOAD;
+
+        resetBudgetIfNewDay();
+        readDeviceState(HookMethods.context);
+
+        String historyKey = key != null ? source.name() + ":" + key : null;
+
+        if (historyKey != null && skipped.remove(historyKey)) {
+            countHit(source);
+            remember(historyKey);
+            charge(source);
+            return record(source, Decision.DOWNLOAD);
+        }
+
+        if (!metered && (charging || batteryPercent > LOW_BATTERY_PERCENT))
+            return record(source, Decision.DOWNLOAD);
+
+        if (historyKey != null && (charging || batteryPercent > LOW_BATTERY_PERCENT) &&
+                opened.contains(historyKey) &&
+                budgetSpent + source.estimatedBytes <= prefs.preloadDailyBudget * BYTES_PER_MB) {
+            charge(source);
+            return record(source, Decision.DOWNLOAD);
+        }
+
+        if (historyKey != null)
+            skipped.add(historyKey);
+
+        skippedCount++;
+        bytesSaved += source.estimatedBytes;
+        return record(source, Decision.SKIP);
+    }
+
+    /**
+     * Remember that the user opened some content, so its preloads are downloaded from now on.
+     */
+    public static synchronized void recordView(Source source, String key) {
+        if (key == null || !Preferences.getSnapshot().preloadPolicy)
+            return;
+
+        String historyKey = source.name() + ":" + key;
+
+        if (skipped.remove(historyKey))
+            countHit(source);
+
+        remember(historyKey);
+    }
+
+    private static void countHit(Source source) {
+        skippedHits++;
+        // The estimate was counted as saved when it was skipped
+        bytesSaved -= source.estimatedBytes;
+    }
+
+    public static synchronized String getStats() {
+        return String.format(Locale.ENGLISH,
+                "Saved ~%.1fMB, skipped %s (%s later opened, %.0f%% hit rate), %.1f/%sMB of today's budget used",
+                bytesSaved / (double) BYTES_PER_MB, skippedCount, skippedHits,
+                skippedCount == 0 ? 0 : skippedHits * 100.0 / skippedCount,
+                budgetSpent / (double) BYTES_PER_MB, Preferences.getSnapshot().preloadDailyBudget);
+    }
+
+    private static Decision record(Source source, Decision decision) {
+        Logger.log(String.format("Preload %s: %s", source, decision), LogType.DEBUG);
+
+        if (++decisions % STATS_LOG_INTERVAL == 0)
+            Logger.log("Preload policy: " + getStats(), LogType.DEBUG);
+
+        return decision;
+    }
+
+    private static void charge(Source source) {
+        if (metered)
+            budgetSpent += source.estimatedBytes;
+    }
+
+    private static void resetBudgetIfNewDay() {
+        int today = Calendar.getInstance().get(Calendar.DAY_OF_YEAR);
+
+        if (today != budgetDay) {
+            budgetDay = today;
+            budgetSpent = 0;
+            skipped.clear();
+        }
+    }
+
+    private static void readDeviceState(Context context) {
+        metered = DeviceState.isMetered(context);
+        charging = DeviceState.isCharging(context);
+        batteryPercent = DeviceState.getBatteryPercent(context);
+    }
+
+    private static void remember(final String historyKey) {
+        if (!opened.add(historyKey))
+            return;
+
+        // Queued behind the load, so the history is there by the time this runs
+        init();
+        historyWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    history.add(historyKey);
+                } catch (IOException e) {
+                    Logger.log("Failed to save the preload history", e, LogType.DEBUG);
+                }
+            }
+        });
+    }
+
+    public enum Decision {
+        DOWNLOAD,
+        SKIP
+    }
+
+    public enum Source {
+        DISCOVER_SNAP(2 * BYTES_PER_MB) {
+            @Override
+            boolean isBlocked(PreferenceSnapshot prefs) {
+                return prefs.discoverSnap;
+            }
+        },
+        DISCOVER_INTRO(BYTES_PER_MB) {
+            @Override
+            boolean isBlocked(PreferenceSnapshot prefs) {
+                return prefs.discoverUi;
+            }
+        },
+        LIVE_STORY(3 * BYTES_PER_MB) {
+            @Override
+            boolean isBlocked(PreferenceSnapshot prefs) {
+                return prefs.storyPreload;
+            }
+        };
+
+        final long estimatedBytes;
+
+        Source(long estimatedBytes) {
+            this.estimatedBytes = estimatedBytes;
+        }
+
+        abstract boolean isBlocked(PreferenceSnapshot prefs);
+    }
+}
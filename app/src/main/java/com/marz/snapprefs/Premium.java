@@ -1,7 +1,6 @@
 package com.marz.snapprefs;
 
 import com.marz.snapprefs.Logger.LogType;
-import com.marz.snapprefs.Preferences.Prefs;
 
 import java.util.Map;
 import java.util.concurrent.Executor;
@@ -19,9 +18,9 @@ public class Premium {
     static void initPremium(final XC_LoadPackage.LoadPackageParam lpparam) {
         final ClassLoader cl = lpparam.classLoader;
 
-        final boolean blockPresence = Preferences.getBool(Prefs.HIDE_TYPING_AND_PRESENCE) && Preferences.getLicence() >= 1;
-        final boolean stealthViewing = Preferences.getBool(Prefs.STEALTH_VIEWING) && Preferences.getLicence() >= 2;
-        final boolean stealthSaving = Preferences.getBool(Prefs.STEALTH_CHAT_SAVING) && Preferences.getLicence() >= 2;
+        final boolean blockPresence = Preferences.getSnapshot().hideTypingAndPresence && Preferences.getLicence() >= 1;
+        final boolean stealthViewing = Preferences.getSnapshot().stealthViewing && Preferences.getLicence() >= 2;
+        final boolean stealthSaving = Preferences.getSnapshot().stealthChatSaving && Preferences.getLicence() >= 2;
 
         if (blockPresence || stealthViewing || stealthSaving) {
             findAndHookMethod("GN", cl, "a", findClass("IM", cl), findClass("aKd", cl),
@@ -18,9 +18,10 @@ import android.widget.ImageView;
 import android.widget.Toast;
 
 import com.marz.snapprefs.Logger.LogType;
-import com.marz.snapprefs.Preferences.Prefs;
+import com.marz.snapprefs.Obfuscation.Handles;
 import com.marz.snapprefs.SnapData.FlagState;
-import com.marz.snapprefs.Util.CommonUtils;
+import com.marz.snapprefs.Util.ContentHasher;
+import com.marz.snapprefs.Util.DedupIndex;
 import com.marz.snapprefs.Util.FlingSaveGesture;
 import com.marz.snapprefs.Util.GestureEvent;
 import com.marz.snapprefs.Util.NotificationUtils;
@@ -32,8 +33,8 @@ import com.marz.snapprefs.Util.SweepSaveGesture;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -88,6 +89,20 @@ public class Saving {
 
         if (mSCResources == null) mSCResources = snapContext.getResources();
 
+        // Decides which hooks are installed, the hooks read the current snapshot themselves
+        PreferenceSnapshot prefs = Preferences.getSnapshot();
+
+        if (prefs.dedupSaves) {
+            DedupIndex.scanIfDue(new DedupIndex.ScanListener() {
+                @Override
+                public void onScanFinished(DedupIndex.ScanResult result) {
+                    if (result.duplicates > 0)
+                        createStatefulToast("Removed " + result.duplicates + " duplicate saves, reclaimed " +
+                                result.getReclaimed(), ToastType.GOOD);
+                }
+            });
+        }
+
         try {
             final ClassLoader cl = lpparam.classLoader;
 
@@ -131,8 +146,7 @@ public class Saving {
                 }
             });
 
-            if (Preferences.getInt(Prefs.SAVEMODE_STORY) == Preferences.SAVE_S2S ||
-                    Preferences.getInt(Prefs.SAVEMODE_STORY) == Preferences.SAVE_F2S) {
+            if (prefs.savemodeStory == Preferences.SAVE_S2S || prefs.savemodeStory == Preferences.SAVE_F2S) {
                 findAndHookMethod(Obfuscator.save.DIRECTIONAL_LAYOUT_CLASS, cl, "dispatchTouchEvent", MotionEvent.class, new XC_MethodHook() {
                     @Override
                     protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
@@ -142,9 +156,11 @@ public class Saving {
                             return;
 
                         if (gestureEvent == null) {
-                            if (Preferences.getInt(Prefs.SAVEMODE_STORY) == Preferences.SAVE_S2S)
+                            int savemodeStory = Preferences.getSnapshot().savemodeStory;
+
+                            if (savemodeStory == Preferences.SAVE_S2S)
                                 gestureEvent = new SweepSaveGesture();
-                            else if (Preferences.getInt(Prefs.SAVEMODE_STORY) == Preferences.SAVE_F2S)
+                            else if (savemodeStory == Preferences.SAVE_F2S)
                                 gestureEvent = new FlingSaveGesture();
                             else {
                                 Logger.log("No gesture method provided", LogType.SAVING);
@@ -195,15 +211,16 @@ public class Saving {
 
                             View view = (View) param.args[2];
 
-                            if (Preferences.getInt(Prefs.SAVEMODE_STORY) != Preferences.SAVE_AUTO) {
+                            int savemodeStory = Preferences.getSnapshot().savemodeStory;
+
+                            if (savemodeStory != Preferences.SAVE_AUTO) {
                                 FrameLayout snapContainer = scanForStoryContainer(view);
                                 String mKey = (String) getObjectField(storySnap, "mId");
 
                                 if (snapContainer != null) {
-                                    if (Preferences.getInt(Prefs.SAVEMODE_STORY) == Preferences.SAVE_BUTTON)
+                                    if (savemodeStory == Preferences.SAVE_BUTTON)
                                         HookedLayouts.assignStoryButton(snapContainer, snapContext, mKey);
-                                    else if (Preferences.getInt(Prefs.SAVEMODE_STORY) == Preferences.SAVE_S2S ||
-                                            Preferences.getInt(Prefs.SAVEMODE_STORY) == Preferences.SAVE_F2S) {
+                                    else if (savemodeStory == Preferences.SAVE_S2S || savemodeStory == Preferences.SAVE_F2S) {
                                         FrameLayout snapContainerParent = (FrameLayout) snapContainer.getParent();
 
                                         if (snapContainerParent != null)
@@ -264,6 +281,8 @@ public class Saving {
                         return;
                     }
 
+                    // Its live story is preloaded from now on
+                    PreloadPolicy.recordView(PreloadPolicy.Source.LIVE_STORY, storyUsername);
                     handleSnapHeader(snapContext, storySnap);
                 }
             });
@@ -329,7 +348,7 @@ public class Saving {
                 @Override
                 protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
                     try {
-                        if (Preferences.getBool(Prefs.SAVE_SENT_SNAPS))
+                        if (Preferences.getSnapshot().saveSentSnaps)
                             handleSentSnap(param.thisObject, snapContext);
                     } catch (Exception e) {
                         Logger.log("Error getting sent media", e, LogType.SAVING);
@@ -343,8 +362,7 @@ public class Saving {
              */
 
             // UPDATED METHOD & CONTENT 9.39.5
-            if (Preferences.getBool(Prefs.TIMER_UNLIMITED) || Preferences.getInt(Prefs.TIMER_MINIMUM) !=
-                    Preferences.TIMER_MINIMUM_DISABLED) {
+            if (prefs.timerUnlimited || prefs.timerMinimum != Preferences.TIMER_MINIMUM_DISABLED) {
 
                 findAndHookMethod(Obfuscator.save.STORY_DETAILS_PACKET, cl, Obfuscator.save.SDP_GET_ENUM_METHOD, String.class, Object.class, new XC_MethodHook() {
                     @Override
@@ -352,30 +370,31 @@ public class Saving {
                         super.beforeHookedMethod(param);
 
                         String key = (String) param.args[0];
+                        PreferenceSnapshot prefs = Preferences.getSnapshot();
                         //Logger.log("aGgkey: " + key);
-                        if (Preferences.getBool(Prefs.AUTO_ADVANCE) && key.equals("auto_advance_mode"))
+                        if (prefs.autoAdvance && key.equals("auto_advance_mode"))
                             param.args[1] = enum_NO_AUTO_ADVANCE;
-                        else if (Preferences.getInt(Prefs.TIMER_MINIMUM) !=
+                        else if (prefs.timerMinimum !=
                                 Preferences.TIMER_MINIMUM_DISABLED && key.equals("total_duration_sec")) {
                             param.args[1] = 9999;
                         }
                     }
                 });
 
-                if (Preferences.getBool(Prefs.TIMER_UNLIMITED) || Preferences.getInt(Prefs.TIMER_MINIMUM) !=
-                        Preferences.TIMER_MINIMUM_DISABLED) {
+                if (prefs.timerUnlimited || prefs.timerMinimum != Preferences.TIMER_MINIMUM_DISABLED) {
                     XposedBridge.hookAllConstructors(findClass(Obfuscator.save.RECEIVEDSNAP_CLASS, lpparam.classLoader), new XC_MethodHook() {
                         @Override
                         protected void afterHookedMethod(MethodHookParam param) throws Throwable {
                             Double currentResult = XposedHelpers.getDoubleField(param.thisObject, Obfuscator.save.MCANONICALDISPLAYNAME);
-                            if (Preferences.getBool(Prefs.TIMER_UNLIMITED)) {
+                            PreferenceSnapshot prefs = Preferences.getSnapshot();
+                            if (prefs.timerUnlimited) {
                                 findAndHookMethod(Obfuscator.save.CLASS_SNAP_TIMER_VIEW, lpparam.classLoader, Obfuscator.save.METHOD_SNAPTIMERVIEW_ONDRAW, Canvas.class, XC_MethodReplacement.DO_NOTHING);
                                 setDoubleField(param.thisObject, Obfuscator.save.MCANONICALDISPLAYNAME, (double) 9999.9F);
                             } else {
-                                if (Preferences.getInt(Prefs.TIMER_MINIMUM) !=
+                                if (prefs.timerMinimum !=
                                         Preferences.TIMER_MINIMUM_DISABLED &&
-                                        currentResult < (double) Preferences.getInt(Prefs.TIMER_MINIMUM)) {
-                                    setDoubleField(param.thisObject, Obfuscator.save.MCANONICALDISPLAYNAME, (double) Preferences.getInt(Prefs.TIMER_MINIMUM));
+                                        currentResult < (double) prefs.timerMinimum) {
+                                    setDoubleField(param.thisObject, Obfuscator.save.MCANONICALDISPLAYNAME, (double) prefs.timerMinimum);
                                 }
                             }
                         }
@@ -385,13 +404,14 @@ public class Saving {
                         @Override
                         protected void afterHookedMethod(MethodHookParam param) throws Throwable {
                             Double currentResult = XposedHelpers.getDoubleField(param.thisObject, Obfuscator.save.MCANONICALDISPLAYNAME);
-                            if (Preferences.getBool(Prefs.TIMER_UNLIMITED)) {
+                            PreferenceSnapshot prefs = Preferences.getSnapshot();
+                            if (prefs.timerUnlimited) {
                                 setDoubleField(param.thisObject, Obfuscator.save.MCANONICALDISPLAYNAME, (double) 9999.9F);
                             } else {
-                                if (Preferences.getInt(Prefs.TIMER_MINIMUM) !=
+                                if (prefs.timerMinimum !=
                                         Preferences.TIMER_MINIMUM_DISABLED &&
-                                        currentResult < (double) Preferences.getInt(Prefs.TIMER_MINIMUM)) {
-                                    setDoubleField(param.thisObject, Obfuscator.save.MCANONICALDISPLAYNAME, (double) Preferences.getInt(Prefs.TIMER_MINIMUM));
+                                        currentResult < (double) prefs.timerMinimum) {
+                                    setDoubleField(param.thisObject, Obfuscator.save.MCANONICALDISPLAYNAME, (double) prefs.timerMinimum);
                                 }
                             }
                         }
@@ -399,16 +419,16 @@ public class Saving {
                 }
             }
 
-            if (Preferences.getBool(Prefs.HIDE_TIMER_SNAP)) {
+            if (prefs.hideTimerSnap) {
                 // UPDATED METHOD & CONTENT
                 findAndHookMethod(Obfuscator.save.CLASS_SNAP_TIMER_VIEW, lpparam.classLoader, Obfuscator.save.METHOD_SNAPTIMERVIEW_ONDRAW, Canvas.class, XC_MethodReplacement.DO_NOTHING);
             }
-            if (Preferences.getBool(Prefs.HIDE_TIMER_STORY)) {
+            if (prefs.hideTimerStory) {
                 // UPDATED METHOD & CONTENT
                 findAndHookMethod(Obfuscator.save.CLASS_NEW_STORY_TIMER_VIEW, lpparam.classLoader, Obfuscator.save.METHOD_STORYTIMERVIEW_ONDRAW, Canvas.class, XC_MethodReplacement.DO_NOTHING);
                 findAndHookMethod(Obfuscator.save.CLASS_STORY_TIMER_VIEW, lpparam.classLoader, Obfuscator.save.METHOD_STORYTIMERVIEW_ONDRAW, Canvas.class, XC_MethodReplacement.DO_NOTHING);
             }
-            if (Preferences.getBool(Prefs.LOOPING_VIDS)) {
+            if (prefs.loopingVids) {
                 // UPDATED METHOD & CONTENT
                 findAndHookMethod(Obfuscator.save.CLASS_TEXTURE_VIDEO_VIEW, lpparam.classLoader, Obfuscator.save.METHOD_TVV_START, new XC_MethodHook() {
                     @Override
@@ -448,7 +468,8 @@ public class Saving {
                             //^.a(F.g(), ProfileImageSize.MEDIUM)
                             List<Bitmap> profileImages = (List<Bitmap>) callMethod(i, Obfuscator.save.PROFILE_IMAGES_CACHE_GET_PROFILE_IMAGES, new Class[]{String.class, profileImageSizeClass}, username, MEDIUM);
                             String filePath = SavingUtils.generateFilePath("ProfileImages", username);
-                            if (Preferences.getBool(Prefs.DEBUGGING)) {
+                            PreferenceSnapshot prefs = Preferences.getSnapshot();
+                            if (prefs.debugging) {
                                 Logger.printTitle("Profile Image Saving Debug Information", LogType.SAVING);
                                 Logger.printMessage("Profile Image Size Inner Class: " + profileImageSizeClass, LogType.SAVING);
                                 Logger.printMessage("friendObject: " + friendObject, LogType.SAVING);
@@ -458,8 +479,8 @@ public class Saving {
                                 Logger.printFilledRow(LogType.SAVING);
 
                                 Logger.printTitle("Profile Image Saving Save Path Debug Information", LogType.SAVING);
-                                Logger.printMessage("Sort by Category Pref: " + Preferences.getBool(Prefs.SORT_BY_CATEGORY), LogType.SAVING);
-                                Logger.printMessage("Sort by Username Pref: " + Preferences.getBool(Prefs.SORT_BY_USERNAME), LogType.SAVING);
+                                Logger.printMessage("Sort by Category Pref: " + prefs.sortByCategory, LogType.SAVING);
+                                Logger.printMessage("Sort by Username Pref: " + prefs.sortByUsername, LogType.SAVING);
                                 Logger.printMessage("File Path: " + filePath, LogType.SAVING);
                                 Logger.printFilledRow(LogType.SAVING);
                             }
@@ -474,33 +495,15 @@ public class Saving {
                                 NotificationUtils.showStatefulMessage("Error Saving Profile Images For " + username + "\nIf The Profile Image Is Not Blank Please Enable Debug Mode And Rep", ToastType.BAD, lpparam.classLoader);
                                 return false;
                             }
-                            int succCounter = 0;
-                            int sizeOfProfileImages = profileImages.size();
-                            for (int iterator = 0; iterator < sizeOfProfileImages; iterator++) {
-                                Bitmap bmp = profileImages.get(iterator);
-                                File f = null;
-                                try {
-                                    f = new File(profileImagesFolder, username + "-" + iterator + "-" + CommonUtils.sha256(bmp) + ".jpg");
-                                } catch (NoSuchAlgorithmException e) {
-                                    e.printStackTrace();
+                            final String profileUsername = username;
+                            // Hash and save off the UI thread, on copies in case Snapchat recycles the images
+                            final List<Bitmap> images = ContentHasher.copyOf(profileImages);
+                            ContentHasher.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    saveProfileImages(snapContext, profileImagesFolder, profileUsername, images, lpparam.classLoader);
                                 }
-                                if (f == null) {
-                                    NotificationUtils.showStatefulMessage("File f is null!", ToastType.BAD, lpparam.classLoader);
-                                    Logger.logStackTrace();
-                                    return false;
-                                }
-                                if (f.exists()) {
-                                    NotificationUtils.showStatefulMessage("Profile Images already Exist.", ToastType.BAD, lpparam.classLoader);
-                                    return true;
-                                }
-
-                                if (SavingUtils.saveJPG(f, profileImages.get(iterator), snapContext, false)) {
-                                    succCounter++;
-                                }
-                            }
-                            Boolean succ = (succCounter == sizeOfProfileImages);
-                            NotificationUtils.showStatefulMessage("Saved " + succCounter + "/" + sizeOfProfileImages + " profile images.", succ ? ToastType.GOOD : ToastType.BAD, lpparam.classLoader);
-                            SavingUtils.vibrate(snapContext, succ);
+                            });
                             return true;
                         }
                     });
@@ -520,6 +523,41 @@ public class Saving {
         }
     }
 
+    /**
+     * Save profile images named by their content fingerprint, runs on the hashing thread.
+     */
+    private static void saveProfileImages(Context snapContext, File folder, String username, List<Bitmap> profileImages, ClassLoader classLoader) {
+        int succCounter = 0;
+        int sizeOfProfileImages = profileImages.size();
+        try {
+            for (int iterator = 0; iterator < sizeOfProfileImages; iterator++) {
+                Bitmap bmp = profileImages.get(iterator);
+                String fingerprint = ContentHasher.fingerprint(bmp);
+                if (fingerprint == null) {
+                    Logger.log("Skipping unreadable profile image " + iterator, LogType.SAVING);
+                    continue;
+                }
+                File f = new File(folder, username + "-" + iterator + "-" + fingerprint + ".jpg");
+                if (f.exists()) {
+                    NotificationUtils.showStatefulMessage("Profile Images already Exist.", ToastType.BAD, classLoader);
+                    return;
+                }
+
+                if (SavingUtils.saveJPG(f, bmp, snapContext, false)) {
+                    succCounter++;
+                }
+            }
+        } finally {
+            // The images are our own copies
+            for (Bitmap bmp : profileImages)
+                bmp.recycle();
+        }
+        Boolean succ = (succCounter == sizeOfProfileImages);
+        NotificationUtils.showStatefulMessage("Saved " + succCounter + "/" + sizeOfProfileImages + " profile images.", succ ? ToastType.GOOD : ToastType.BAD, classLoader);
+        SavingUtils.vibrate(snapContext, succ);
+    }
+
+
     private static FrameLayout scanForStoryContainer(View view) {
         if (view == null) {
             Logger.log("Called scan with Null view");
@@ -653,14 +691,16 @@ public class Saving {
             currentSnapData = hashSnapData.get(currentSnapKey);
 
             if (currentSnapData != null && currentSnapData.getSnapType() != null && relativeContext != null) {
+                PreferenceSnapshot prefs = Preferences.getSnapshot();
+
                 if (currentSnapData.getSnapType() == SnapType.STORY &&
-                        Preferences.getInt(Prefs.SAVEMODE_STORY) != Preferences.SAVE_S2S &&
-                        Preferences.getInt(Prefs.SAVEMODE_STORY) != Preferences.SAVE_F2S) {
+                        prefs.savemodeStory != Preferences.SAVE_S2S &&
+                        prefs.savemodeStory != Preferences.SAVE_F2S) {
                     Logger.printFinalMessage("Tried to perform story S2S from different mode", LogType.SAVING);
                     return;
                 } else if (currentSnapData.getSnapType() == SnapType.SNAP &&
-                        Preferences.getInt(Prefs.SAVEMODE_SNAP) != Preferences.SAVE_S2S &&
-                        Preferences.getInt(Prefs.SAVEMODE_SNAP) != Preferences.SAVE_F2S) {
+                        prefs.savemodeSnap != Preferences.SAVE_S2S &&
+                        prefs.savemodeSnap != Preferences.SAVE_F2S) {
                     Logger.printFinalMessage("Tried to perform snap S2S from different mode", LogType.SAVING);
                     return;
                 }
@@ -686,12 +726,14 @@ public class Saving {
             currentSnapData = hashSnapData.get(mKey);
 
             if (currentSnapData != null && currentSnapData.getSnapType() != null && relativeContext != null) {
+                PreferenceSnapshot prefs = Preferences.getSnapshot();
+
                 if (currentSnapData.getSnapType() == SnapType.STORY &&
-                        Preferences.getInt(Prefs.SAVEMODE_STORY) != Preferences.SAVE_BUTTON) {
+                        prefs.savemodeStory != Preferences.SAVE_BUTTON) {
                     Logger.printFinalMessage("Tried to perform story button save from different mode", LogType.SAVING);
                     return;
                 } else if (currentSnapData.getSnapType() == SnapType.SNAP
-                        && Preferences.getInt(Prefs.SAVEMODE_SNAP) != Preferences.SAVE_BUTTON) {
+                        && prefs.savemodeSnap != Preferences.SAVE_BUTTON) {
                     Logger.printFinalMessage("Tried to perform snap button save from different mode", LogType.SAVING);
                     return;
                 }
@@ -744,16 +786,14 @@ public class Saving {
 
         String className = receivedSnap.getClass().getCanonicalName();
 
-        switch (className) {
-            case Obfuscator.save.STORYSNAP_CLASS:
-                snapType = SnapType.STORY;
-                break;
-            case Obfuscator.save.RECEIVEDSNAP_CLASS:
-                snapType = SnapType.SNAP;
-                break;
-            default:
-                Logger.printFinalMessage("Obfuscator out of date for SnapType in SAVING CLASS", LogType.SAVING);
-                return;
+        // Obfuscator names can be replaced by a mapping file at runtime, so they aren't constant
+        if (Obfuscator.save.STORYSNAP_CLASS.equals(className))
+            snapType = SnapType.STORY;
+        else if (Obfuscator.save.RECEIVEDSNAP_CLASS.equals(className))
+            snapType = SnapType.SNAP;
+        else {
+            Logger.printFinalMessage("Obfuscator out of date for SnapType in SAVING CLASS", LogType.SAVING);
+            return;
         }
 
         Logger.printMessage("SnapType: " + snapType.name, LogType.SAVING);
@@ -842,7 +882,7 @@ public class Saving {
         // Grab the Key to Item Map (Contains file paths)
         @SuppressWarnings("unchecked")
         Map<String, Object> mKeyToItemMap =
-                (Map<String, Object>) getObjectField(mCache, Obfuscator.save.CACHE_KEYTOITEMMAP);
+                (Map<String, Object>) Handles.save.CACHE_KEYTOITEMMAP.get(mCache);
 
         if (mKeyToItemMap == null) {
             Logger.printFinalMessage("Mkey-Item Map not found", LogType.SAVING);
@@ -859,7 +899,7 @@ public class Saving {
         }
 
         // Get the path of the video file
-        String mAbsoluteFilePath = (String) getObjectField(item, Obfuscator.save.CACHE_ITEM_PATH);
+        String mAbsoluteFilePath = (String) Handles.save.CACHE_ITEM_PATH.get(item);
 
         if (mAbsoluteFilePath == null) {
             Logger.printFinalMessage("No path object found", LogType.SAVING);
@@ -1018,12 +1058,14 @@ public class Saving {
 
         Logger.printMessage("Passed payload checks", LogType.SAVING);
 
+        PreferenceSnapshot prefs = Preferences.getSnapshot();
+
         if (snapData.getSnapType() == SnapType.SNAP &&
-                Preferences.getInt(Prefs.SAVEMODE_SNAP) != Preferences.SAVE_AUTO) {
+                prefs.savemodeSnap != Preferences.SAVE_AUTO) {
             Logger.printMessage("Snap save mode check failed", LogType.SAVING);
             return false;
         } else if (snapData.getSnapType() == SnapType.STORY &&
-                Preferences.getInt(Prefs.SAVEMODE_STORY) != Preferences.SAVE_AUTO) {
+                prefs.savemodeStory != Preferences.SAVE_AUTO) {
             Logger.printMessage("Story save mode check failed", LogType.SAVING);
             return false;
         }
@@ -1243,6 +1285,8 @@ public class Saving {
             return SaveResponse.FAILED;
         }
 
+        PreferenceSnapshot prefs = Preferences.getSnapshot();
+
         if (mediaType == MediaType.IMAGE) {
             File imageFile = new File(directory, filename + MediaType.IMAGE.fileExtension);
             if (imageFile.exists()) {
@@ -1251,6 +1295,9 @@ public class Saving {
                 return SaveResponse.EXISTING;
             }
 
+            if (prefs.dedupSaves)
+                return saveImageDeduplicated(imageFile, image, context);
+
             // the following code is somewhat redundant as it defeats the point of an async task
             // Perform an async save of the JPG
             return SavingUtils.saveJPG(imageFile, image, context) ?
@@ -1260,7 +1307,7 @@ public class Saving {
             File overlayFile =
                     new File(directory, filename + "_overlay" + MediaType.IMAGE.fileExtension);
 
-            if (Preferences.getBool(Prefs.OVERLAYS)) {
+            if (prefs.overlays) {
                 if (overlayFile.exists()) {
                     Logger.printMessage("VideoOverlay already exists", LogType.SAVING);
                     SavingUtils.vibrate(context, false);
@@ -1282,6 +1329,9 @@ public class Saving {
                 return SaveResponse.EXISTING;
             }
 
+            if (prefs.dedupSaves && video != null)
+                return saveVideoDeduplicated(videoFile, video, context);
+
             // the following code is somewhat redundant as it defeats the point of an async task
             // Perform an async save of the PNG
             return SavingUtils.saveVideo(videoFile, video, context) ?
@@ -1292,6 +1342,60 @@ public class Saving {
         return SaveResponse.FAILED;
     }
 
+    private static SaveResponse saveImageDeduplicated(File imageFile, Bitmap image, Context context) {
+        byte[] encoded = SavingUtils.encodeJPG(image);
+
+        if (encoded == null) {
+            SavingUtils.vibrate(context, false);
+            return SaveResponse.FAILED;
+        }
+
+        String fingerprint = ContentHasher.fingerprint(encoded, encoded.length);
+        File original = DedupIndex.findDuplicate(fingerprint, encoded.length);
+
+        if (original != null && DedupIndex.matches(original, encoded, encoded.length) &&
+                linkDuplicate(original, imageFile, fingerprint, context))
+            return SaveResponse.SUCCESS;
+
+        if (!SavingUtils.saveEncoded(imageFile, encoded, context))
+            return SaveResponse.FAILED;
+
+        DedupIndex.record(fingerprint, imageFile);
+        return SaveResponse.SUCCESS;
+    }
+
+    private static SaveResponse saveVideoDeduplicated(File videoFile, FileInputStream video, Context context)
+            throws IOException {
+        long length = video.getChannel().size() - video.getChannel().position();
+        String fingerprint = ContentHasher.fingerprint(video);
+        File original = DedupIndex.findDuplicate(fingerprint, length);
+
+        if (original != null && DedupIndex.matches(original, video) &&
+                linkDuplicate(original, videoFile, fingerprint, context))
+            return SaveResponse.SUCCESS;
+
+        if (!SavingUtils.saveVideo(videoFile, video, context))
+            return SaveResponse.FAILED;
+
+        DedupIndex.record(fingerprint, videoFile);
+        return SaveResponse.SUCCESS;
+    }
+
+    /**
+     * Link the file to an earlier save with the same bytes.
+     *
+     * @return Whether the link was made, the file has to be saved normally otherwise
+     */
+    private static boolean linkDuplicate(File original, File file, String fingerprint, Context context) {
+        if (!DedupIndex.link(original, file))
+            return false;
+
+        DedupIndex.record(fingerprint, file);
+        Logger.printMessage("Linked duplicate of " + original.getName(), LogType.SAVING);
+        SavingUtils.vibrate(context, true);
+        return true;
+    }
+
     static void createStatefulToast(String message, ToastType type) {
         NotificationUtils.showStatefulMessage(message, type, lpparam2.classLoader);
     }
@@ -1302,12 +1406,13 @@ public class Saving {
             savePath = Preferences.getContentPath();
 
         File directory = new File(savePath);
+        PreferenceSnapshot prefs = Preferences.getSnapshot();
 
-        if (Preferences.getBool(Prefs.SORT_BY_CATEGORY) || (Preferences.getBool(Prefs.SORT_BY_USERNAME) && sender == null)) {
+        if (prefs.sortByCategory || (prefs.sortByUsername && sender == null)) {
             directory = new File(directory, category);
         }
 
-        if (Preferences.getBool(Prefs.SORT_BY_USERNAME) && sender != null) {
+        if (prefs.sortByUsername && sender != null) {
             directory = new File(directory, sender);
         }
 
@@ -3,8 +3,10 @@ package com.marz.snapprefs.Settings;
 import android.app.AlertDialog;
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Environment;
 import android.support.v7.preference.Preference;
@@ -16,19 +18,24 @@ import android.widget.CompoundButton;
 import android.widget.CompoundButton.OnCheckedChangeListener;
 import android.widget.LinearLayout;
 import android.widget.Switch;
+import android.widget.Toast;
 
+import com.marz.snapprefs.Databases.LensArchive;
 import com.marz.snapprefs.Logger;
 import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Obfuscation.Loader;
 import com.marz.snapprefs.Preferences;
 import com.marz.snapprefs.R;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashSet;
 
 /**
  * Created by MARZ on 2016. 02. 11..
  */
 public class MiscSettings extends PreferenceFragmentCompat {
+    private static final int BENCHMARK_LENSES = 10000;
     private int preferenceId;
 
     @SuppressWarnings("deprecation")
@@ -108,9 +115,61 @@ public class MiscSettings extends PreferenceFragmentCompat {
         AlertDialog.Builder builder = new AlertDialog.Builder(this.getContext());
         builder.setView(view);
         builder.setPositiveButton("Done", null);
+        builder.setNeutralButton("Export mappings", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                exportMappings();
+            }
+        });
+        builder.setNegativeButton("Lens benchmark", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                runLensBenchmark();
+            }
+        });
         builder.show();
     }
 
+    /**
+     * Compare lens archives with merging databases, for checking changes to either. Builds
+     * its generated databases in the cache folder and removes them afterwards.
+     */
+    private void runLensBenchmark() {
+        final Context context = getContext().getApplicationContext();
+        Toast.makeText(context, "Running lens import benchmark", Toast.LENGTH_SHORT).show();
+
+        new AsyncTask<Void, Void, String>() {
+            @Override
+            protected String doInBackground(Void... params) {
+                try {
+                    return LensArchive.benchmark(context, BENCHMARK_LENSES);
+                } catch (IOException e) {
+                    Logger.log("Lens benchmark failed", e, LogType.LENS);
+                    return "Failed: " + e.getMessage();
+                }
+            }
+
+            @Override
+            protected void onPostExecute(String message) {
+                Toast.makeText(context, message, Toast.LENGTH_LONG).show();
+            }
+        }.execute();
+    }
+
+    /**
+     * Write the mappings built into this release as a mapping file, a starting point for the
+     * mappings of a newer Snapchat.
+     */
+    private void exportMappings() {
+        try {
+            File target = Loader.exportCurrent(new File(Preferences.getContentPath(), Loader.MAPPING_FOLDER));
+            Toast.makeText(getContext(), "Exported mappings to " + target, Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Logger.log("Failed to export the mappings", e, LogType.DEBUG);
+            Toast.makeText(getContext(), "Failed to export the mappings", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     private void applyLogTypeSwitches(LinearLayout layout) {
         LogType[] logTypes = Logger.LogType.values();
         final float scale = getContext().getResources().getDisplayMetrics().density;
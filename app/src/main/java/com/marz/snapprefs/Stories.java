@@ -10,15 +10,20 @@ import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.RelativeLayout;
 
-import com.marz.snapprefs.Preferences.Prefs;
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Obfuscation.Handles;
+import com.marz.snapprefs.Obfuscation.Resolver.ResolvedMethod;
 import com.marz.snapprefs.Util.FileUtils;
-import com.marz.snapprefs.Util.StringUtils;
+import com.marz.snapprefs.Util.PersistentStringSet;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import de.robv.android.xposed.XC_MethodHook;
 import de.robv.android.xposed.XposedHelpers;
@@ -26,23 +31,23 @@ import de.robv.android.xposed.callbacks.XC_InitPackageResources;
 import de.robv.android.xposed.callbacks.XC_LayoutInflated;
 import de.robv.android.xposed.callbacks.XC_LoadPackage;
 
-import static de.robv.android.xposed.XposedHelpers.callMethod;
 import static de.robv.android.xposed.XposedHelpers.findAndHookMethod;
 import static de.robv.android.xposed.XposedHelpers.findClass;
-import static de.robv.android.xposed.XposedHelpers.getObjectField;
 import static de.robv.android.xposed.XposedHelpers.getStaticObjectField;
 
 /**
  * Created by MARZ on 2016. 04. 12..
  */
 public class Stories {
-    public static List<String> peopleToHide = new ArrayList<>();
+    static final String BLOCKED_STORIES_FILE = "BlockedStories.journal";
+    private static PersistentStringSet peopleToHide;
 
     public static List<Friend> friendList = new ArrayList<>();
-    public static HashMap<Class<?>, Callable> filterMap = new HashMap<>();
+    private static final HashMap<Class<?>, StoryFilter> filterMap = new HashMap<>();
+    private static final Set<Class<?>> unhandledClasses = Collections.synchronizedSet(new HashSet<Class<?>>());
 
     static void initStories(final XC_LoadPackage.LoadPackageParam lpparam) {
-        readBlockedList();
+        getBlockedList();
 
         buildFilterMap(lpparam);
 
@@ -50,25 +55,12 @@ public class Stories {
             @Override
             protected void beforeHookedMethod(MethodHookParam param) throws Throwable {
                 super.beforeHookedMethod(param);
-                ArrayList<Object> originalList = (ArrayList<Object>) param.args[0];
-                ArrayList<Object> iterativeList = new ArrayList<>(originalList);
-
-                for (Object storyItemObject : iterativeList) {
-                    Class<?> storyItemClass = storyItemObject.getClass();
-                    Callable callable = filterMap.get(storyItemClass);
-
-                    if (callable == null) {
-                        Logger.log("Unhandled story item: " + storyItemClass.getCanonicalName());
-                        return;
-                    }
-
-                    callable.callBackMethod(originalList, storyItemObject);
-                }
+                filterStories((List<Object>) param.args[0]);
             }
         });
 
 
-        if( Preferences.getBool(Prefs.AUTO_ADVANCE)) {
+        if( Preferences.getSnapshot().autoAdvance) {
             Class ExitEventTypeClass = findClass("com.snapchat.android.framework.analytics.perf.ExitEvent", lpparam.classLoader);
             final Object ExitEvent_AUTO_ADVANCE = getStaticObjectField(ExitEventTypeClass, "AUTO_ADVANCE");
             findAndHookMethod(Obfuscator.stories.AUTOADVANCE_CLASS2, lpparam.classLoader, Obfuscator.stories.AUTOADVANCE_METHOD2, ExitEventTypeClass, new XC_MethodHook() {
@@ -86,38 +78,49 @@ public class Stories {
         }
     }
 
-    private static void readFriendList(final ClassLoader classLoader) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                final Object friendManager = XposedHelpers.callStaticMethod(XposedHelpers.findClass(Obfuscator.stories.FRIENDMANAGER_CLASS, classLoader), Obfuscator.stories.FRIENDMANAGER_RETURNINSTANCE);
-                List friends = (List) getObjectField(getObjectField(friendManager, "mOutgoingFriendsListMap"), "mList");
-                friendList.clear();
-                for (int i = 0; i <= friends.size() - 1; i++) {
-                    String username = (String) callMethod(friends.get(i), Obfuscator.save.GET_FRIEND_USERNAME);
-                    if (peopleToHide.contains(username)) {
-                        friendList.add(new Friend(username, "", true));
-                    } else {
-                        friendList.add(new Friend(username, "", false));
-                    }
-                }
-                Collections.sort(friendList, new Friend.friendComparator());
-            }
-        }).start();
+    private static void readFriendList() {
+        friendList = FriendRoster.getSnapshot().toFriends(getBlockedList().view());
+    }
+
+    /**
+     * @return The usernames whose stories are hidden, loaded on first use
+     */
+    public static synchronized PersistentStringSet getBlockedList() {
+        if (peopleToHide != null)
+            return peopleToHide;
+
+        PersistentStringSet blocked = new PersistentStringSet(new File(Preferences.getContentPath(), BLOCKED_STORIES_FILE));
+
+        try {
+            if (blocked.exists())
+                blocked.load();
+            else
+                importLegacyBlockedList(blocked);
+        } catch (IOException e) {
+            Logger.log("Failed to load the blocked stories list", e, LogType.STORIES);
+        }
 
+        return peopleToHide = blocked;
     }
 
-    public static void readBlockedList() {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                String read = FileUtils.readFromSDFolder("blockedstories").replaceAll("\n", "");
-                if (!read.equals("0")) {
-                    peopleToHide = Arrays.asList(read.split(";"));
-                }
-            }
-        }).start();
+    /**
+     * Move the usernames from the old "user;user;" text file into the journal.
+     */
+    private static void importLegacyBlockedList(PersistentStringSet blocked) throws IOException {
+        String read = FileUtils.readFromSDFolder("blockedstories").replaceAll("\n", "");
 
+        if (read.equals("0"))
+            return;
+
+        HashSet<String> usernames = new HashSet<>();
+
+        for (String username : read.split(";")) {
+            if (!username.isEmpty())
+                usernames.add(username);
+        }
+
+        blocked.update(usernames, Collections.<String>emptySet());
+        Logger.log(String.format("Imported %s blocked story users", usernames.size()), LogType.STORIES);
     }
 
     public static void addSnapprefsBtn(XC_InitPackageResources.InitPackageResourcesParam resparam, final XModuleResources mResources) {
@@ -137,7 +140,7 @@ public class Stories {
                 snapPrefsBtn.setOnClickListener(new View.OnClickListener() {
                     @Override
                     public void onClick(View v) {
-                        readFriendList(HookMethods.classLoader);
+                        readFriendList();
                         FragmentTransaction ft = HookMethods.SnapContext.getFragmentManager().beginTransaction();
                         Fragment prev = HookMethods.SnapContext.getFragmentManager().findFragmentByTag("dialog");
                         if (prev != null) {
@@ -161,58 +164,91 @@ public class Stories {
         });
     }
 
+    /**
+     * Remove every hidden item from the story feed in a single pass.
+     * The kept items are collected first and only written back when something was removed,
+     * so the list is never shifted per removed item.
+     */
+    static void filterStories(List<Object> storyList) {
+        long start = System.nanoTime();
+        PreferenceSnapshot prefs = Preferences.getSnapshot();
+        Set<String> blocked = getBlockedList().view();
+        int scanned = storyList.size();
+        ArrayList<Object> kept = new ArrayList<>(scanned);
+        Class<?> lastClass = null;
+        StoryFilter filter = null;
+
+        for (int i = 0; i < scanned; i++) {
+            Object storyItem = storyList.get(i);
+            Class<?> storyItemClass = storyItem.getClass();
+
+            // The feed is grouped by type, so the lookup mostly hits the previous class
+            if (storyItemClass != lastClass) {
+                lastClass = storyItemClass;
+                filter = filterMap.get(storyItemClass);
+
+                if (filter == null && unhandledClasses.add(storyItemClass))
+                    Logger.log("Unhandled story item: " + storyItemClass.getCanonicalName(), LogType.STORIES);
+            }
+
+            if (filter == null || !filter.shouldHide(storyItem, prefs, blocked))
+                kept.add(storyItem);
+        }
+
+        int removed = scanned - kept.size();
+
+        if (removed > 0) {
+            storyList.clear();
+            storyList.addAll(kept);
+        }
+
+        Logger.log(String.format("Story filter scanned %s, removed %s in %sus",
+                scanned, removed, (System.nanoTime() - start) / 1000), LogType.STORIES);
+    }
+
     private static void buildFilterMap(XC_LoadPackage.LoadPackageParam lpparam) {
         Class<?> recentStory = XposedHelpers.findClass(Obfuscator.stories.RECENTSTORY_CLASS, lpparam.classLoader);
         Class<?> allStory = XposedHelpers.findClass(Obfuscator.stories.ALLSTORY_CLASS, lpparam.classLoader);
         Class<?> liveStory = XposedHelpers.findClass(Obfuscator.stories.LIVESTORY_CLASS, lpparam.classLoader);
         Class<?> featuredStory = XposedHelpers.findClass(Obfuscator.stories.DISCOVERSTORY_CLASS, lpparam.classLoader);
 
-        filterMap.put(recentStory, new Callable() {
-            public void callBackMethod(ArrayList<Object> objectList, Object obj) {
-                if (Preferences.getBool(Prefs.HIDE_PEOPLE)) {
-                    String friendUsername = (String) callMethod(obj, Obfuscator.stories.RECENTSTORY_GETUSERNAME);
+        filterMap.put(recentStory, new FriendStoryFilter(Handles.stories.RECENTSTORY_GETUSERNAME));
+        filterMap.put(allStory, new FriendStoryFilter(Handles.stories.ALLSTORY_GETUSERNAME));
 
-                    if (friendUsername != null && peopleToHide.contains(friendUsername)) {
-                        Logger.log("Contains blocked friend.... Removing " + StringUtils.obfus(friendUsername));
-                        objectList.remove(obj);
-                    }
-                }
+        filterMap.put(liveStory, new StoryFilter() {
+            public boolean shouldHide(Object storyItem, PreferenceSnapshot prefs, Set<String> blocked) {
+                return prefs.hideLive;
             }
         });
 
-        filterMap.put(allStory, new Callable() {
-            public void callBackMethod(ArrayList<Object> objectList, Object obj) {
-                if (Preferences.getBool(Prefs.HIDE_PEOPLE)) {
-                    String friendUsername = (String) callMethod(obj, Obfuscator.stories.RECENTSTORY_GETUSERNAME);
-
-                    if (friendUsername != null && peopleToHide.contains(friendUsername)) {
-                        Logger.log("Contains blocked friend.... Removing " + StringUtils.obfus(friendUsername));
-                        objectList.remove(obj);
-                    }
-                }
-            }
-        });
-
-        filterMap.put(liveStory, new Callable() {
-            public void callBackMethod(ArrayList<Object> objectList, Object obj) {
-                if (Preferences.getBool(Prefs.HIDE_LIVE)) {
-                    Logger.log("Blocking Live Story");
-                    objectList.remove(obj);
-                }
+        filterMap.put(featuredStory, new StoryFilter() {
+            public boolean shouldHide(Object storyItem, PreferenceSnapshot prefs, Set<String> blocked) {
+                return prefs.discoverUi;
             }
         });
+    }
 
-        filterMap.put(featuredStory, new Callable() {
-            public void callBackMethod(ArrayList<Object> objectList, Object obj) {
-                if (Preferences.getBool(Prefs.DISCOVER_UI)) {
-                    Logger.log("Blocking Featured Story");
-                    objectList.remove(obj);
-                }
-            }
-        });
+    interface StoryFilter {
+        boolean shouldHide(Object storyItem, PreferenceSnapshot prefs, Set<String> blocked);
     }
 
-    interface Callable {
-        void callBackMethod(ArrayList<Object> objectList, Object obj);
+    /**
+     * Hides the stories of blocked friends, the username getter is resolved once per story class.
+     */
+    private static class FriendStoryFilter implements StoryFilter {
+        private final ResolvedMethod getUsername;
+
+        FriendStoryFilter(ResolvedMethod getUsername) {
+            this.getUsername = getUsername;
+        }
+
+        @Override
+        public boolean shouldHide(Object storyItem, PreferenceSnapshot prefs, Set<String> blocked) {
+            if (!prefs.hidePeople || blocked.isEmpty())
+                return false;
+
+            String friendUsername = (String) getUsername.invoke(storyItem);
+            return friendUsername != null && blocked.contains(friendUsername);
+        }
     }
 }
@@ -14,7 +14,6 @@ import com.marz.snapprefs.HookedLayouts;
 import com.marz.snapprefs.Logger;
 import com.marz.snapprefs.Logger.LogType;
 import com.marz.snapprefs.Preferences;
-import com.marz.snapprefs.Preferences.Prefs;
 import com.marz.snapprefs.Saving;
 
 import static com.marz.snapprefs.HookedLayouts.marginValue;
@@ -70,9 +69,9 @@ public class AssignedStoryButton extends ImageButton {
     public void buildParams(FrameLayout frameLayout, Context context) {
         DisplayMetrics metrics = context.getResources().getDisplayMetrics();
 
-        boolean horizontalPosition = Preferences.getBool(Preferences.Prefs.BUTTON_POSITION);
+        boolean horizontalPosition = Preferences.getSnapshot().buttonPosition;
 
-        int saveButtonOpacity = Preferences.getInt(Prefs.BUTTON_OPACITY);
+        int saveButtonOpacity = Preferences.getSnapshot().buttonOpacity;
 
         // We determine our scale according the the value
         float unscaledSize = ((float )(100 - saveButtonOpacity)/100) * regularButtonSize + regularButtonSize;
@@ -84,7 +83,7 @@ public class AssignedStoryButton extends ImageButton {
         int newY;
 
         // Resize and change margins the button only if needed
-        if (Preferences.getBool(Prefs.BUTTON_RESIZE)) {
+        if (Preferences.getSnapshot().buttonResize) {
             this.setScaleX(scalingFactor);
             this.setScaleY(scalingFactor);
 
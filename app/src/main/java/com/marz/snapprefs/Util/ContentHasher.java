@@ -0,0 +1,237 @@
+package com.marz.snapprefs.Util;
+
+import android.graphics.Bitmap;
+
+import com.marz.snapprefs.Logger;
+import com.marz.snapprefs.Logger.LogType;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fingerprints media by content on a background thread.
+ * <p>
+ * Bitmaps are hashed over their raw pixels, copied into a reusable direct buffer, instead of
+ * being re-encoded first. Files are hashed over their bytes through the same buffer. Only
+ * up to {@link #MAX_RETAINED_BUFFER} bytes are kept around, bigger bitmaps get a buffer of
+ * their own that is dropped after use. The
+ * hash is a fast 64 bit non-cryptographic one, good for telling media apart and finding
+ * duplicates, not for anything security related.
+ * <p>
+ * Background work runs on a single thread, and a task that fails is logged rather than
+ * taking Snapchat down with it. The synchronous methods can be called from any thread, they
+ * share one buffer and take turns on the class lock.
+ */
+public class ContentHasher {
+    private static final int FILE_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_RETAINED_BUFFER = 4 * 1024 * 1024;
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Snapprefs-hasher");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    });
+    private static ByteBuffer buffer;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private ContentHasher() {
+    }
+
+    /**
+     * Run work that hashes, or is waiting on hashes, on the hashing thread.
+     */
+    public static void execute(final Runnable task) {
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    Logger.log("Background hashing task failed", t, LogType.SAVING);
+                }
+            }
+        });
+    }
+
+    /**
+     * Copy bitmaps on the calling thread, so the copies can be handed to the hashing thread
+     * while Snapchat recycles or reuses the originals. Recycled bitmaps are left out.
+     */
+    public static List<Bitmap> copyOf(List<Bitmap> bitmaps) {
+        List<Bitmap> copies = new ArrayList<>(bitmaps.size());
+
+        for (Bitmap bitmap : bitmaps) {
+            if (bitmap == null || bitmap.isRecycled())
+                continue;
+
+            Bitmap copy = bitmap.copy(bitmap.getConfig() != null ? bitmap.getConfig() : Bitmap.Config.ARGB_8888, false);
+
+            if (copy != null)
+                copies.add(copy);
+        }
+
+        return copies;
+    }
+
+    /**
+     * Fingerprint bitmaps off the calling thread, the callback runs on the hashing thread.
+     * A bitmap that can't be read gets a null fingerprint.
+     */
+    public static void fingerprintAsync(final List<Bitmap> bitmaps, final Callback callback) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                List<String> fingerprints = new ArrayList<>(bitmaps.size());
+
+                for (Bitmap bitmap : bitmaps) {
+                    try {
+                        fingerprints.add(fingerprint(bitmap));
+                    } catch (RuntimeException e) {
+                        Logger.log("Failed to fingerprint bitmap", e, LogType.SAVING);
+                        fingerprints.add(null);
+                    }
+                }
+
+                callback.onFingerprinted(fingerprints);
+            }
+        });
+    }
+
+    /**
+     * @return The hex fingerprint of the bitmap's dimensions, config and pixels, or null for a
+     * recycled bitmap or one without a known config
+     */
+    public static synchronized String fingerprint(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || bitmap.getConfig() == null)
+            return null;
+
+        ByteBuffer pixels = obtainBuffer(bitmap.getByteCount());
+        bitmap.copyPixelsToBuffer(pixels);
+        pixels.flip();
+
+        Hash64 hash = new Hash64(((long) bitmap.getWidth() << 32) ^ bitmap.getHeight() ^
+                bitmap.getConfig().ordinal() * PRIME_3);
+        hash.update(pixels);
+        return hash.finish(pixels);
+    }
+
+    /**
+     * @return The hex fingerprint of the bytes, equal to that of a file holding them
+     */
+    public static String fingerprint(byte[] data, int length) {
+        ByteBuffer bytes = ByteBuffer.wrap(data, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        Hash64 hash = new Hash64(length);
+        return hash.finish(bytes);
+    }
+
+    /**
+     * @return The hex fingerprint of the file's bytes
+     */
+    public static String fingerprint(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+
+        try {
+            return fingerprint(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Hash the rest of a stream and rewind it, so it can still be copied afterwards.
+     *
+     * @return The hex fingerprint of the bytes from the current position to the end
+     */
+    public static synchronized String fingerprint(FileInputStream in) throws IOException {
+        FileChannel channel = in.getChannel();
+        long start = channel.position();
+        ByteBuffer chunk = obtainBuffer(FILE_CHUNK_SIZE);
+        Hash64 hash = new Hash64(channel.size() - start);
+
+        try {
+            while (channel.read(chunk) != -1) {
+                chunk.flip();
+                hash.update(chunk);
+                // Keep the bytes short of a whole word for the next read
+                chunk.compact();
+            }
+
+            chunk.flip();
+            return hash.finish(chunk);
+        } finally {
+            channel.position(start);
+        }
+    }
+
+    private static ByteBuffer obtainBuffer(int size) {
+        if (size > MAX_RETAINED_BUFFER)
+            return ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer == null || buffer.capacity() < size)
+            buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.clear();
+        return buffer;
+    }
+
+    public interface Callback {
+        void onFingerprinted(List<String> fingerprints);
+    }
+
+    /**
+     * Multiply and rotate mixing over 8 byte words with an avalanche at the end.
+     */
+    private static class Hash64 {
+        private long state;
+        private long length;
+
+        Hash64(long seed) {
+            state = seed * PRIME_1 + PRIME_2;
+        }
+
+        void update(ByteBuffer data) {
+            while (data.remaining() >= 8) {
+                long word = data.getLong() * PRIME_2;
+                state ^= Long.rotateLeft(word, 31) * PRIME_1;
+                state = Long.rotateLeft(state, 27) * PRIME_1 + PRIME_3;
+                length += 8;
+            }
+        }
+
+        String finish(ByteBuffer tail) {
+            update(tail);
+
+            while (tail.hasRemaining()) {
+                state ^= (tail.get() & 0xFF) * PRIME_3;
+                state = Long.rotateLeft(state, 11) * PRIME_1;
+                length++;
+            }
+
+            long h = state ^ length;
+            h ^= h >>> 33;
+            h *= PRIME_2;
+            h ^= h >>> 29;
+            h *= PRIME_3;
+            h ^= h >>> 32;
+            return String.format("%016x", h);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.marz.snapprefs.Util;
+
+import android.os.Build;
+import android.system.Os;
+import android.system.StructStat;
+
+import com.marz.snapprefs.Logger;
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Preferences;
+import com.marz.snapprefs.Saving.SnapType;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers which saved file holds which content, so identical media is only stored once.
+ * <p>
+ * Every file Snapprefs saves is recorded with its {@link ContentHasher} fingerprint, kept as
+ * a "fingerprint\tpath" value of a {@link PersistentStringSet}. The first recorded file of a
+ * fingerprint is the original for that content. An entry whose file was deleted or changed
+ * is dropped when it's next looked up.
+ * <p>
+ * A duplicate is only stored as a hard link to the original once their bytes were compared,
+ * a matching fingerprint alone is never trusted. Where linking isn't possible the duplicate
+ * is saved normally.
+ * <p>
+ * Links turn into copies when the save folder is copied or restored, and snaps saved before
+ * deduplication was enabled were never recorded. The daily scan therefore walks the recorded
+ * saves and the media folders of the snap types, fingerprints what changed since the last
+ * scan and replaces the copies of an original after comparing them byte for byte. Other
+ * files in the save folder, such as filters or lens icons, are never looked at.
+ */
+public class DedupIndex {
+    static final String INDEX_FILE = "SavedMedia.journal";
+    static final String SCAN_MARKER_FILE = "SavedMedia.scanned";
+    private static final long SCAN_INTERVAL = 86400000;
+    private static final double BYTES_PER_MB = 1024 * 1024;
+    private static final String[] MEDIA_EXTENSIONS = {".jpg", ".png", ".mp4"};
+
+    // Fingerprint to the path of its original, and every recorded path to its fingerprint
+    private static final HashMap<String, String> paths = new HashMap<>();
+    private static final HashMap<String, String> recorded = new HashMap<>();
+    private static PersistentStringSet entries;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private DedupIndex() {
+    }
+
+    /**
+     * @return The saved file with the same content, or null when the content is new
+     */
+    public static synchronized File findDuplicate(String fingerprint, long length) {
+        String path = getPaths().get(fingerprint);
+
+        if (path == null)
+            return null;
+
+        File original = new File(path);
+
+        if (original.isFile() && original.length() == length)
+            return original;
+
+        forget(fingerprint, path);
+        // Another save with the same content takes over as the original
+        path = paths.get(fingerprint);
+        return path != null ? findDuplicate(fingerprint, length) : null;
+    }
+
+    /**
+     * Record a file Snapprefs saved, it becomes the original if the content has none yet.
+     */
+    public static synchronized void record(String fingerprint, File file) {
+        String path = file.getAbsolutePath();
+        getPaths();
+        String previous = recorded.get(path);
+
+        if (fingerprint.equals(previous))
+            return;
+
+        // The file was overwritten with other content
+        if (previous != null)
+            forget(previous, path);
+
+        try {
+            entries.add(fingerprint + '\t' + path);
+            put(fingerprint, path);
+        } catch (IOException e) {
+            Logger.log("Failed to record saved media " + file, e, LogType.SAVING);
+        }
+    }
+
+    /**
+     * @return Whether the target was created as a hard link to the original
+     */
+    public static boolean link(File original, File target) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+            return false;
+
+        try {
+            Os.link(original.getAbsolutePath(), target.getAbsolutePath());
+            return true;
+        } catch (Exception e) {
+            // Usually EPERM on FUSE and sdcardfs backed storage
+            Logger.log("Unable to link " + target + ": " + e.getMessage(), LogType.SAVING);
+            return false;
+        }
+    }
+
+    /**
+     * @return Whether the file holds exactly the given bytes, false when it can't be read
+     */
+    public static boolean matches(File original, byte[] data, int length) {
+        if (original.length() != length)
+            return false;
+
+        try {
+            InputStream in = new BufferedInputStream(new FileInputStream(original));
+
+            try {
+                for (int i = 0; i < length; i++) {
+                    if (in.read() != (data[i] & 0xFF))
+                        return false;
+                }
+
+                return in.read() == -1;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Logger.log("Unable to compare with " + original + ": " + e.getMessage(), LogType.SAVING);
+            return false;
+        }
+    }
+
+    /**
+     * Compare the rest of a stream with a file and rewind the stream, so it can still be copied
+     * afterwards.
+     *
+     * @return Whether the file holds exactly the remaining bytes, false when it can't be read
+     */
+    public static boolean matches(File original, FileInputStream data) {
+        try {
+            FileChannel channel = data.getChannel();
+            long start = channel.position();
+
+            if (original.length() != channel.size() - start)
+                return false;
+
+            try {
+                InputStream in = new BufferedInputStream(new FileInputStream(original));
+                // Not closed, that would close the caller's stream
+                InputStream other = new BufferedInputStream(data);
+
+                try {
+                    return contentEquals(in, other);
+                } finally {
+                    in.close();
+                }
+            } finally {
+                channel.position(start);
+            }
+        } catch (IOException e) {
+            Logger.log("Unable to compare with " + original + ": " + e.getMessage(), LogType.SAVING);
+            return false;
+        }
+    }
+
+    /**
+     * Scan the saves on the hashing thread, unless they were scanned within the last day.
+     */
+    public static void scanIfDue(final ScanListener listener) {
+        final File marker = new File(Preferences.getContentPath(), SCAN_MARKER_FILE);
+        // Zero when there was no scan yet, every file is scanned then
+        final long lastScan = marker.lastModified();
+
+        if (System.currentTimeMillis() - lastScan < SCAN_INTERVAL)
+            return;
+
+        ContentHasher.execute(new Runnable() {
+            @Override
+            public void run() {
+                ScanResult result = scan(lastScan);
+
+                try {
+                    //noinspection ResultOfMethodCallIgnored
+                    marker.createNewFile();
+                    //noinspection ResultOfMethodCallIgnored
+                    marker.setLastModified(System.currentTimeMillis());
+                } catch (IOException e) {
+                    Logger.log("Failed to mark the deduplication scan", e, LogType.SAVING);
+                }
+
+                listener.onScanFinished(result);
+            }
+        });
+    }
+
+    /**
+     * Replace the saves changed since the given time that are copies of their original.
+     */
+    static ScanResult scan(long since) {
+        long start = System.currentTimeMillis();
+        ScanResult result = new ScanResult();
+        LinkedHashSet<String> candidates = new LinkedHashSet<>();
+
+        synchronized (DedupIndex.class) {
+            getPaths();
+            candidates.addAll(recorded.keySet());
+        }
+
+        String savePath = Preferences.getSavePath();
+
+        if (savePath == null)
+            savePath = Preferences.getContentPath();
+
+        for (SnapType snapType : SnapType.values())
+            collectMedia(new File(savePath + snapType.subdir), candidates);
+
+        for (String path : candidates) {
+            File file = new File(path);
+
+            if (file.isFile() && file.lastModified() >= since)
+                scanFile(file, result);
+        }
+
+        Logger.log(String.format(Locale.ENGLISH, "Deduplication scan: %s files, %s duplicates, %s in %sms",
+                result.scanned, result.duplicates, result.getReclaimed(), System.currentTimeMillis() - start),
+                LogType.SAVING);
+        return result;
+    }
+
+    /**
+     * Add the paths of the media files in a snap type's folder and its sender folders.
+     */
+    private static void collectMedia(File directory, LinkedHashSet<String> paths) {
+        File[] files = directory.listFiles();
+
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            if (file.isDirectory())
+                collectMedia(file, paths);
+            else if (isMedia(file.getName()))
+                paths.add(file.getAbsolutePath());
+        }
+    }
+
+    private static boolean isMedia(String name) {
+        String lowerCase = name.toLowerCase(Locale.ENGLISH);
+
+        for (String extension : MEDIA_EXTENSIONS) {
+            if (lowerCase.endsWith(extension))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static void scanFile(File file, ScanResult result) {
+        result.scanned++;
+        String path = file.getAbsolutePath();
+
+        try {
+            String fingerprint = ContentHasher.fingerprint(file);
+
+            synchronized (DedupIndex.class) {
+                String recordedFingerprint = recorded.get(path);
+
+                // Changed since it was saved, it's not a save of that content anymore
+                if (recordedFingerprint != null && !fingerprint.equals(recordedFingerprint))
+                    forget(recordedFingerprint, path);
+            }
+
+            long length = file.length();
+            File original = findDuplicate(fingerprint, length);
+
+            // New content, or a fingerprint collision, it's kept and recorded as it is
+            if (original == null || original.getAbsolutePath().equals(path) || isSameFile(original, file) ||
+                    !contentEquals(original, file)) {
+                record(fingerprint, file);
+                return;
+            }
+
+            if (replaceWithLink(original, file)) {
+                record(fingerprint, file);
+                Logger.log("Relinked " + file + " to " + original, LogType.SAVING);
+            } else if (file.delete()) {
+                synchronized (DedupIndex.class) {
+                    if (recorded.containsKey(path))
+                        forget(fingerprint, path);
+                }
+            } else {
+                Logger.log("Failed to remove duplicate " + file, LogType.SAVING);
+                return;
+            }
+
+            result.duplicates++;
+            result.reclaimedBytes += length;
+            Logger.log("Deduplicated " + file + " (copy of " + original + ")", LogType.SAVING);
+        } catch (IOException e) {
+            Logger.log("Failed to deduplicate " + file, e, LogType.SAVING);
+        }
+    }
+
+    /**
+     * Link to a temporary name first and rename it over the duplicate, so the file is never
+     * missing.
+     */
+    private static boolean replaceWithLink(File original, File duplicate) {
+        File temp = new File(duplicate.getPath() + ".tmp");
+
+        if (!link(original, temp))
+            return false;
+
+        if (temp.renameTo(duplicate))
+            return true;
+
+        //noinspection ResultOfMethodCallIgnored
+        temp.delete();
+        return false;
+    }
+
+    private static boolean isSameFile(File a, File b) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP)
+            return false;
+
+        try {
+            StructStat statA = Os.stat(a.getAbsolutePath());
+            StructStat statB = Os.stat(b.getAbsolutePath());
+            return statA.st_dev == statB.st_dev && statA.st_ino == statB.st_ino;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean contentEquals(File a, File b) throws IOException {
+        if (a.length() != b.length())
+            return false;
+
+        InputStream inA = new BufferedInputStream(new FileInputStream(a));
+
+        try {
+            InputStream inB = new BufferedInputStream(new FileInputStream(b));
+
+            try {
+                return contentEquals(inA, inB);
+            } finally {
+                inB.close();
+            }
+        } finally {
+            inA.close();
+        }
+    }
+
+    private static boolean contentEquals(InputStream a, InputStream b) throws IOException {
+        int read;
+
+        while ((read = a.read()) != -1) {
+            if (read != b.read())
+                return false;
+        }
+
+        return b.read() == -1;
+    }
+
+    private static void put(String fingerprint, String path) {
+        recorded.put(path, fingerprint);
+
+        if (!paths.containsKey(fingerprint))
+            paths.put(fingerprint, path);
+    }
+
+    private static void forget(String fingerprint, String path) {
+        recorded.remove(path);
+
+        if (path.equals(paths.get(fingerprint))) {
+            paths.remove(fingerprint);
+
+            // Promote another recorded save of the content, if there is one
+            for (Map.Entry<String, String> entry : recorded.entrySet()) {
+                if (entry.getValue().equals(fingerprint)) {
+                    paths.put(fingerprint, entry.getKey());
+                    break;
+                }
+            }
+        }
+
+        try {
+            entries.remove(fingerprint + '\t' + path);
+        } catch (IOException e) {
+            Logger.log("Failed to update the saved media index", e, LogType.SAVING);
+        }
+    }
+
+    private static HashMap<String, String> getPaths() {
+        if (entries != null)
+            return paths;
+
+        entries = new PersistentStringSet(new File(Preferences.getContentPath(), INDEX_FILE));
+
+        try {
+            entries.load();
+        } catch (IOException e) {
+            Logger.log("Failed to load the saved media index", e, LogType.SAVING);
+        }
+
+        for (String entry : entries.view()) {
+            int separator = entry.indexOf('\t');
+
+            if (separator > 0)
+                put(entry.substring(0, separator), entry.substring(separator + 1));
+        }
+
+        return paths;
+    }
+
+    public interface ScanListener {
+        void onScanFinished(ScanResult result);
+    }
+
+    public static class ScanResult {
+        public int scanned;
+        public int duplicates;
+        public long reclaimedBytes;
+
+        public String getReclaimed() {
+            return String.format(Locale.ENGLISH, "%.1fMB", reclaimedBytes / BYTES_PER_MB);
+        }
+    }
+}
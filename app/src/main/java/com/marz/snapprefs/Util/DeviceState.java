@@ -0,0 +1,75 @@
+package com.marz.snapprefs.Util;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+
+/**
+ * Network and battery state for background work, read at most once per
+ * {@link #CACHE_MILLIS} since both only change slowly.
+ */
+public class DeviceState {
+    private static final long CACHE_MILLIS = 30000;
+
+    private static long readAt;
+    private static boolean metered;
+    private static boolean charging;
+    private static int batteryPercent = 100;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private DeviceState() {
+    }
+
+    public static synchronized boolean isMetered(Context context) {
+        refresh(context);
+        return metered;
+    }
+
+    public static synchronized boolean isCharging(Context context) {
+        refresh(context);
+        return charging;
+    }
+
+    public static synchronized int getBatteryPercent(Context context) {
+        refresh(context);
+        return batteryPercent;
+    }
+
+    private static void refresh(Context context) {
+        long now = System.currentTimeMillis();
+
+        if (now - readAt < CACHE_MILLIS || context == null)
+            return;
+
+        readAt = now;
+        ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        metered = connectivity != null && readMetered(connectivity);
+
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+
+        if (battery != null) {
+            int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+
+            batteryPercent = level >= 0 && scale > 0 ? level * 100 / scale : 100;
+            charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+        }
+    }
+
+    private static boolean readMetered(ConnectivityManager connectivity) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            return connectivity.isActiveNetworkMetered();
+
+        // Older releases can't tell, count everything but Wi-Fi and ethernet as metered
+        NetworkInfo network = connectivity.getActiveNetworkInfo();
+        return network != null && network.getType() != ConnectivityManager.TYPE_WIFI &&
+                network.getType() != ConnectivityManager.TYPE_ETHERNET;
+    }
+}
@@ -140,7 +140,8 @@ public class FileUtils {
 
     public static void writeToSDFile(String data, File fileToWrite) {
         try {
-            new File(Environment.getExternalStorageDirectory() + "/Snapprefs/Groups/").mkdir();
+            //noinspection ResultOfMethodCallIgnored
+            fileToWrite.getParentFile().mkdirs();
             fileToWrite.createNewFile();
             FileOutputStream fOut = new FileOutputStream(fileToWrite);
             OutputStreamWriter myOutWriter =
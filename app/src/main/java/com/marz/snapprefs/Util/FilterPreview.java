@@ -60,10 +60,10 @@ public class FilterPreview extends Activity {
                 original.setVisibility(View.GONE);
             } else {
                 enabled = getIntent().getBooleanExtra("enabled", false);
-                DrawableManager.fetchDrawableOnThread("http://snapprefs.com/original.jpg", original);
+                ImageFetcher.getInstance(this).fetchInto("http://snapprefs.com/original.jpg", original);
                 original.setVisibility(View.VISIBLE);
             }
-            DrawableManager.fetchDrawableOnThread(imgPath, image);
+            ImageFetcher.getInstance(this).fetchInto(imgPath, image);
 
             fp = this;
 
@@ -8,7 +8,6 @@ import android.view.View;
 import com.marz.snapprefs.HookedLayouts;
 import com.marz.snapprefs.Logger;
 import com.marz.snapprefs.Preferences;
-import com.marz.snapprefs.Preferences.Prefs;
 import com.marz.snapprefs.Saving;
 
 import static com.marz.snapprefs.Util.GestureEvent.ReturnType.FAILED;
@@ -34,9 +33,9 @@ public class FlingSaveGesture implements GestureEvent {
     public ReturnType onTouch(View v, MotionEvent event, Saving.SnapType type) {
         Logger.log("Touch: " + event.getAction());
 
-        if (type == Saving.SnapType.STORY && Preferences.getInt(Prefs.SAVEMODE_STORY) != Preferences.SAVE_F2S)
+        if (type == Saving.SnapType.STORY && Preferences.getSnapshot().savemodeStory != Preferences.SAVE_F2S)
             return FAILED;
-        else if (type == Saving.SnapType.SNAP && Preferences.getInt(Prefs.SAVEMODE_SNAP) != Preferences.SAVE_F2S)
+        else if (type == Saving.SnapType.SNAP && Preferences.getSnapshot().savemodeSnap != Preferences.SAVE_F2S)
             return FAILED;
 
         Logger.log("Position: " + event.getRawX() + " " + event.getRawY());
@@ -0,0 +1,484 @@
+package com.marz.snapprefs.Util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.marz.snapprefs.Logger;
+import com.marz.snapprefs.Logger.LogType;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches images over HTTP with a memory and a disk cache, for the filter previews.
+ * <p>
+ * Fetches run on a small fixed pool. Responses are always read to the end and closed, so
+ * HttpURLConnection hands the connection back to its keep-alive pool. The queue is bounded,
+ * and when it overflows the oldest waiting fetch is cancelled, as the view that wanted it
+ * has most likely scrolled away. A cancelled fetch still reports back with null, so no
+ * caller is left waiting. Binding an ImageView to a new URL cancels its previous fetch.
+ * <p>
+ * The memory cache is budgeted in bytes, the disk cache is trimmed back to
+ * {@link #DISK_BUDGET_BYTES} by dropping the least recently used entries. Disk entries are
+ * reused without a request for {@link #FRESH_MILLIS}, after that they're revalidated with
+ * If-None-Match or If-Modified-Since and served stale when the network fails. Every download
+ * goes to its own temporary file, so fetches of the same URL never write into each other.
+ * Images are decoded sampled down to the size they're shown at, and kept in memory per size.
+ */
+public class ImageFetcher {
+    static final long FRESH_MILLIS = 3600000;
+    private static final int DEFAULT_THREADS = 3;
+    private static final int MAX_QUEUED = 32;
+    private static final int DEFAULT_TARGET_SIZE = 512;
+    static final long DISK_BUDGET_BYTES = 32 * 1024 * 1024;
+    // Downloaded bytes after which the disk cache is checked against its budget again
+    private static final long TRIM_INTERVAL_BYTES = DISK_BUDGET_BYTES / 8;
+    private static final RejectedExecutionHandler cancelOldest = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                if (task instanceof Future)
+                    ((Future<?>) task).cancel(false);
+
+                return;
+            }
+
+            Runnable oldest = executor.getQueue().poll();
+
+            if (oldest instanceof Future)
+                ((Future<?>) oldest).cancel(false);
+
+            executor.execute(task);
+        }
+    };
+    private static ImageFetcher instance;
+
+    private final File cacheDir;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final WeakHashMap<ImageView, Future<?>> bindings = new WeakHashMap<>();
+    // Starts full, so the first download trims what earlier runs left
+    private long downloadedSinceTrim = TRIM_INTERVAL_BYTES;
+
+    public ImageFetcher(File cacheDir, int memoryBudgetBytes, int threads) {
+        this.cacheDir = cacheDir;
+        this.memoryCache = new LruCache<String, Bitmap>(memoryBudgetBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_QUEUED), cancelOldest);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static synchronized ImageFetcher getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageFetcher(new File(context.getCacheDir(), "images"),
+                    (int) (Runtime.getRuntime().maxMemory() / 16), DEFAULT_THREADS);
+        }
+
+        return instance;
+    }
+
+    /**
+     * Show the image in the view once it's fetched, replacing the view's previous fetch.
+     * Must be called on the main thread.
+     */
+    public void fetchInto(final String url, final ImageView imageView) {
+        Future<?> previous = bindings.remove(imageView);
+
+        if (previous != null)
+            previous.cancel(false);
+
+        final int targetSize = imageView.getWidth() > 0 ? imageView.getWidth() : DEFAULT_TARGET_SIZE;
+        Bitmap cached = memoryCache.get(getMemoryKey(url, targetSize));
+
+        if (cached != null) {
+            show(imageView, cached);
+            return;
+        }
+
+        FetchTask task = new FetchTask(url, targetSize) {
+            @Override
+            void deliver(Bitmap bmp) {
+                // Only the fetch the view is still bound to may set its image
+                if (bindings.get(imageView) != this)
+                    return;
+
+                bindings.remove(imageView);
+
+                if (bmp != null)
+                    show(imageView, bmp);
+            }
+        };
+
+        bindings.put(imageView, task);
+        executor.execute(task);
+    }
+
+    /**
+     * Fetch on the pool, the callback runs on the main thread with null on failure, or when
+     * the fetch was cancelled or dropped from a full queue.
+     */
+    public Future<?> fetch(String url, int targetSize, final Callback callback) {
+        FetchTask task = new FetchTask(url, targetSize) {
+            @Override
+            void deliver(Bitmap bmp) {
+                callback.onResult(bmp);
+            }
+        };
+
+        executor.execute(task);
+        return task;
+    }
+
+    private Bitmap fetchQuietly(String url, int targetSize) {
+        try {
+            return fetch(url, targetSize);
+        } catch (IOException e) {
+            Logger.log("Failed to fetch " + url + ": " + e.getMessage(), LogType.DEBUG);
+            return null;
+        }
+    }
+
+    /**
+     * Fetch on the calling thread, going through both caches.
+     *
+     * @return The decoded image, or null when it can't be decoded
+     */
+    public Bitmap fetch(String url, int targetSize) throws IOException {
+        String memoryKey = getMemoryKey(url, targetSize);
+        Bitmap cached = memoryCache.get(memoryKey);
+
+        if (cached != null)
+            return cached;
+
+        File file = getCacheFile(url, ".img");
+        File meta = getCacheFile(url, ".meta");
+
+        if (!file.exists() || System.currentTimeMillis() - meta.lastModified() >= FRESH_MILLIS) {
+            try {
+                download(url, file, meta);
+            } catch (IOException e) {
+                if (!file.exists())
+                    throw e;
+
+                Logger.log("Serving stale " + url + ": " + e.getMessage(), LogType.DEBUG);
+            }
+        } else {
+            // The modification time of an image is when it was last used, the trim goes by it
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+        }
+
+        Bitmap bmp = decodeSampled(file, targetSize);
+
+        if (bmp != null)
+            memoryCache.put(memoryKey, bmp);
+
+        return bmp;
+    }
+
+    /**
+     * Drop the least recently used disk entries once the downloads since the last check
+     * could have taken the cache over its budget.
+     */
+    private synchronized void trimDiskCacheIfDue(long downloaded) {
+        downloadedSinceTrim += downloaded;
+
+        if (downloadedSinceTrim < TRIM_INTERVAL_BYTES)
+            return;
+
+        downloadedSinceTrim = 0;
+        File[] images = cacheDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".img");
+            }
+        });
+
+        if (images == null)
+            return;
+
+        long total = 0;
+
+        for (File image : images)
+            total += image.length();
+
+        if (total <= DISK_BUDGET_BYTES)
+            return;
+
+        final HashMap<File, Long> lastUsed = new HashMap<>(images.length);
+
+        for (File image : images)
+            lastUsed.put(image, image.lastModified());
+
+        Arrays.sort(images, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = lastUsed.get(a) - lastUsed.get(b);
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+
+        int removed = 0;
+
+        for (File image : images) {
+            if (total <= DISK_BUDGET_BYTES)
+                break;
+
+            long length = image.length();
+
+            if (!image.delete())
+                continue;
+
+            String path = image.getPath();
+            //noinspection ResultOfMethodCallIgnored
+            new File(path.substring(0, path.length() - ".img".length()) + ".meta").delete();
+            total -= length;
+            removed++;
+        }
+
+        Logger.log(String.format("Trimmed %s images from the image cache", removed), LogType.DEBUG);
+    }
+
+    /**
+     * Download into the disk cache, or just mark the entry fresh when the server says it
+     * hasn't changed.
+     */
+    private void download(String url, File file, File meta) throws IOException {
+        if (!cacheDir.exists() && !cacheDir.mkdirs())
+            throw new IOException("Failed to create " + cacheDir);
+
+        String[] validators = file.exists() ? readValidators(meta) : new String[2];
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+
+        try {
+            connection.setConnectTimeout(15000);
+            connection.setReadTimeout(10000);
+
+            if (validators[0] != null)
+                connection.setRequestProperty("If-None-Match", validators[0]);
+            if (validators[1] != null)
+                connection.setRequestProperty("If-Modified-Since", validators[1]);
+
+            int status = connection.getResponseCode();
+
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                drain(connection.getErrorStream());
+                //noinspection ResultOfMethodCallIgnored
+                meta.setLastModified(System.currentTimeMillis());
+                return;
+            }
+
+            if (status != HttpURLConnection.HTTP_OK) {
+                drain(connection.getErrorStream());
+                throw new IOException("HTTP " + status);
+            }
+
+            // A fetch of the same URL may be downloading at the same time
+            File temp = File.createTempFile(file.getName(), ".tmp", cacheDir);
+            InputStream in = connection.getInputStream();
+
+            try {
+                copy(in, temp);
+            } catch (IOException e) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                throw e;
+            } finally {
+                in.close();
+            }
+
+            if (!temp.renameTo(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                throw new IOException("Failed to replace " + file);
+            }
+
+            writeValidators(meta, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+        } finally {
+            connection.disconnect();
+        }
+
+        trimDiskCacheIfDue(file.length());
+    }
+
+    /**
+     * An image decoded for a small view is too coarse for a larger one, so sizes are kept apart.
+     */
+    private static String getMemoryKey(String url, int targetSize) {
+        return targetSize + ":" + url;
+    }
+
+    private File getCacheFile(String url, String extension) {
+        try {
+            return new File(cacheDir, CommonUtils.sha256(url) + extension);
+        } catch (Exception e) {
+            // SHA-256 is always available, this isn't reached
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return The ETag and the Last-Modified date of a cached image, either may be null
+     */
+    private static String[] readValidators(File meta) {
+        String[] validators = new String[2];
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(meta), "UTF-8"));
+
+            try {
+                for (int i = 0; i < validators.length; i++) {
+                    String line = reader.readLine();
+                    validators[i] = line == null || line.isEmpty() ? null : line;
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ignored) {
+            // Without validators the image is simply downloaded again
+        }
+
+        return validators;
+    }
+
+    private static void writeValidators(File meta, String etag, String lastModified) throws IOException {
+        OutputStream out = new FileOutputStream(meta);
+
+        try {
+            out.write(((etag != null ? etag : "") + "\n" + (lastModified != null ? lastModified : "") + "\n")
+                    .getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void copy(InputStream in, File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read a response body to the end so its connection can be reused.
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null)
+            return;
+
+        try {
+            byte[] buffer = new byte[1024];
+
+            //noinspection StatementWithEmptyBody
+            while (in.read(buffer) != -1) ;
+        } finally {
+            in.close();
+        }
+    }
+
+    static Bitmap decodeSampled(File file, int targetSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+
+        int sampleSize = 1;
+
+        while (options.outWidth / (sampleSize * 2) >= targetSize && options.outHeight / (sampleSize * 2) >= targetSize)
+            sampleSize *= 2;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    private static void show(ImageView imageView, Bitmap bmp) {
+        imageView.setImageBitmap(bmp);
+        imageView.setVisibility(View.VISIBLE);
+    }
+
+    public interface Callback {
+        void onResult(Bitmap bitmap);
+    }
+
+    /**
+     * A fetch that hands its result to the main thread however it ends.
+     */
+    private abstract class FetchTask extends FutureTask<Bitmap> {
+        FetchTask(final String url, final int targetSize) {
+            super(new Callable<Bitmap>() {
+                @Override
+                public Bitmap call() {
+                    return fetchQuietly(url, targetSize);
+                }
+            });
+        }
+
+        @Override
+        protected void done() {
+            Bitmap bmp = null;
+
+            if (!isCancelled()) {
+                try {
+                    bmp = get();
+                } catch (InterruptedException | ExecutionException e) {
+                    Logger.log("Image fetch failed", e, LogType.DEBUG);
+                }
+            }
+
+            final Bitmap result = bmp;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(result);
+                }
+            });
+        }
+
+        /**
+         * Runs on the main thread.
+         *
+         * @param bmp The image, or null if the fetch failed or was cancelled
+         */
+        abstract void deliver(Bitmap bmp);
+    }
+}
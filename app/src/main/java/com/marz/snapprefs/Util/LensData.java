@@ -25,6 +25,8 @@ public class LensData {
     public boolean mActive;
     public long selTime;
     public String name;
+    // Only read by the lens selector, which pages by it
+    public long rowId;
 
     //public Object mType;
     //public Bitmap mLensIcon;
@@ -46,6 +48,19 @@ public class LensData {
         return contentValues;
     }
 
+    /**
+     * @return Whether both describe the same Snapchat lens, ignoring our own columns
+     */
+    public boolean isSameLens(LensData other) {
+        return equal(mCode, other.mCode) && equal(mId, other.mId) && equal(mHintId, other.mHintId) &&
+                equal(mIconLink, other.mIconLink) && equal(mLensLink, other.mLensLink) &&
+                equal(mSignature, other.mSignature);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
     public enum LensType {
         GEO, SCHEDULED
     }
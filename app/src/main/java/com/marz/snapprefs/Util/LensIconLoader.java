@@ -1,126 +1,336 @@
 package com.marz.snapprefs.Util;
 
-import android.app.Activity;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.os.AsyncTask;
-import android.support.annotation.Nullable;
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
 import android.widget.ImageView;
 
-import com.marz.snapprefs.Fragments.LensesFragment;
 import com.marz.snapprefs.Logger;
 import com.marz.snapprefs.Logger.LogType;
 import com.marz.snapprefs.MainActivity;
 import com.marz.snapprefs.Preferences;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Created by Andre on 16/09/2016.
+ * Loads lens icons into the views of the lens selector, from memory, disk or the network.
+ * <p>
+ * Requests for the same icon share one load, and every view is bound to the icon it was
+ * last asked to show. When a recycled view is bound to another lens the old request loses
+ * that view, and a load no view waits for anymore is cancelled. A finished icon is only set
+ * on the views still bound to it, so fast scrolling never shows a stale icon.
+ * <p>
+ * Icons are kept on disk as downloaded, named by the SHA-256 of their URL, and decoded
+ * sampled down to the size of the view showing them. Binding and delivery happen on the
+ * main thread, which is what guards the request state.
  */
 public class LensIconLoader {
-    @Nullable
-    private static Bitmap retrieveAppropriateBitmap(String url, Context context) {
-        File iconDirectory = new File(Preferences.getSavePath(), "/LensIcon/");
+    public static final String ICON_FOLDER = "LensIcon";
+    private static final int MAX_PARALLEL_LOADS = 3;
+    private static final int DEFAULT_TARGET_SIZE = 256;
+    private static final int STATS_LOG_INTERVAL = 100;
+    // Prefetches only fill idle loaders, they must never delay icons that are on screen
+    private static final int MAX_QUEUED_PREFETCHES = 6;
 
-        if (!iconDirectory.exists() && !iconDirectory.mkdirs()) {
-            return getBitmapFromURL(url, 1, context);
+    private static final BitmapCache memoryCache = new BitmapCache(8);
+    private static final HashMap<String, Request> requests = new HashMap<>();
+    private static final WeakHashMap<ImageView, String> bindings = new WeakHashMap<>();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PARALLEL_LOADS,
+            MAX_PARALLEL_LOADS, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    private static final AtomicInteger memoryHits = new AtomicInteger();
+    private static final AtomicInteger diskHits = new AtomicInteger();
+    private static final AtomicInteger networkLoads = new AtomicInteger();
+    private static final AtomicInteger failures = new AtomicInteger();
+    private static int coalesced;
+    private static int cancelled;
+    private static int binds;
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private LensIconLoader() {
+    }
+
+    /**
+     * Show the icon of a lens in the view, replacing whatever the view was bound to before.
+     * Must be called on the main thread.
+     *
+     * @param targetSize The size the view shows the icon at, 0 when it isn't known yet
+     */
+    public static void bind(ImageView view, String lensCode, String url, int targetSize) {
+        if (++binds % STATS_LOG_INTERVAL == 0)
+            Logger.log("Lens icons: " + getStats(), LogType.LENS);
+
+        Bitmap cached = memoryCache.getBitmapFromMemCache(lensCode);
+
+        if (cached != null) {
+            unbind(view);
+            memoryHits.incrementAndGet();
+            view.setImageBitmap(cached);
+            return;
         }
 
-        String hashedFileName = hashBuilder(url);
-        File iconFile = new File(iconDirectory, hashedFileName + ".png");
-        Bitmap bmp;
+        if (lensCode.equals(bindings.get(view)))
+            return;
 
-        if (iconFile.exists()) {
-            bmp = loadBitmapFromFile(iconFile);
+        unbind(view);
+        view.setImageDrawable(null);
+        bindings.put(view, lensCode);
 
-            if (bmp != null)
-                return bmp;
+        Request request = requests.get(lensCode);
+
+        if (request != null) {
+            coalesced++;
+            request.waiting++;
+            return;
         }
 
-        bmp = getBitmapFromURL(url, 1, context);
+        request = new Request(view.getContext().getApplicationContext(), lensCode, url,
+                targetSize > 0 ? targetSize : DEFAULT_TARGET_SIZE);
+        request.waiting = 1;
+        request.future = executor.submit(request);
+        requests.put(lensCode, request);
+    }
 
-        if (bmp == null)
-            return null;
+    /**
+     * Load an icon into the memory cache before a view asks for it, skipped when the loaders
+     * are busy. Must be called on the main thread.
+     */
+    public static void prefetch(Context context, String lensCode, String url, int targetSize) {
+        if (url == null || requests.containsKey(lensCode) || memoryCache.getBitmapFromMemCache(lensCode) != null)
+            return;
 
-        SavingUtils.savePNGAsync(iconFile, bmp, context, false);
+        if (executor.getQueue().size() >= MAX_QUEUED_PREFETCHES)
+            return;
+
+        // Nothing waits for it, so a view that binds and unbinds again cancels it
+        Request request = new Request(context.getApplicationContext(), lensCode, url,
+                targetSize > 0 ? targetSize : DEFAULT_TARGET_SIZE);
+        request.future = executor.submit(request);
+        requests.put(lensCode, request);
+    }
 
-        MainActivity.writeNoMediaFile(Preferences.getSavePath() + "/LensIcon");
+    /**
+     * Release the view from the icon it waits for, cancelling the load if nothing else waits.
+     * Must be called on the main thread.
+     */
+    public static void unbind(ImageView view) {
+        String lensCode = bindings.remove(view);
 
-        return bmp;
+        if (lensCode == null)
+            return;
+
+        Request request = requests.get(lensCode);
+
+        if (request == null || --request.waiting > 0)
+            return;
+
+        requests.remove(lensCode);
+        // A load that already started still finishes into the memory cache
+        request.future.cancel(false);
+        cancelled++;
     }
 
-    private static Bitmap loadBitmapFromFile(File iconFile) {
-        BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-        return BitmapFactory.decodeFile(iconFile.getPath(), options);
+    public static void clearMemoryCache() {
+        memoryCache.clearCache();
+    }
+
+    public static String getStats() {
+        int memory = memoryHits.get();
+        int disk = diskHits.get();
+        int network = networkLoads.get();
+        int total = memory + disk + network;
+
+        return String.format(Locale.ENGLISH,
+                "%s loads, %.0f%% memory hits, %.0f%% disk hits, %s from network, %s failed, %s coalesced, %s cancelled",
+                total, total == 0 ? 0 : memory * 100.0 / total, total == 0 ? 0 : disk * 100.0 / total,
+                network, failures.get(), coalesced, cancelled);
+    }
+
+    private static void deliver(final Request request, final Bitmap bmp) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (requests.get(request.lensCode) == request)
+                    requests.remove(request.lensCode);
+
+                if (bmp == null)
+                    return;
+
+                memoryCache.addBitmapToMemoryCache(request.lensCode, bmp);
+
+                for (Map.Entry<ImageView, String> binding : bindings.entrySet()) {
+                    if (request.lensCode.equals(binding.getValue()))
+                        binding.getKey().setImageBitmap(bmp);
+                }
+            }
+        });
     }
 
-    @Nullable
-    private static Bitmap getBitmapFromURL(String src, int sampleSize, Context context) {
-        if (!MainActivity.isNetworkAvailable(context))
+    private static Bitmap load(Request request) throws IOException {
+        File iconDirectory = new File(Preferences.getSavePath(), ICON_FOLDER);
+        File iconFile = new File(iconDirectory, getIconFileName(request.url));
+
+        if (iconFile.exists()) {
+            Bitmap bmp = decodeFile(iconFile, request.targetSize);
+
+            if (bmp != null) {
+                diskHits.incrementAndGet();
+                return bmp;
+            }
+        }
+
+        if (!MainActivity.isNetworkAvailable(request.context))
             return null;
 
-        URL myFileUrl;
+        byte[] data = download(request.url);
+        networkLoads.incrementAndGet();
 
+        if (iconDirectory.exists() || iconDirectory.mkdirs()) {
+            writeAtomically(iconFile, data);
+            MainActivity.writeNoMediaFile(iconDirectory.getPath());
+        }
+
+        return decodeBytes(data, request.targetSize);
+    }
+
+    /**
+     * @return A file name that is unique for the URL
+     */
+    public static String getIconFileName(String url) {
         try {
-            myFileUrl = new URL(src);
+            return CommonUtils.sha256(url) + ".png";
+        } catch (Exception e) {
+            // SHA-256 is always available, this isn't reached
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static byte[] download(String src) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(src).openConnection();
 
-            HttpURLConnection conn = (HttpURLConnection) myFileUrl.openConnection();
-            conn.setDoInput(true);
-            conn.connect();
+        try {
+            conn.setConnectTimeout(15000);
+            conn.setReadTimeout(10000);
             InputStream is = conn.getInputStream();
 
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inSampleSize = sampleSize;
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
 
-            return BitmapFactory.decodeStream(is, null, options);
-        } catch (Exception e) {
-            // TODO Auto-generated catch block
-            Log.d("Error", e.toString());
-            return null;
+                while ((read = is.read(buffer)) != -1)
+                    out.write(buffer, 0, read);
+
+                return out.toByteArray();
+            } finally {
+                is.close();
+            }
+        } finally {
+            conn.disconnect();
         }
     }
 
-    private static String hashBuilder(String inputVal) {
-        return Integer.toString(inputVal.hashCode() % 999999999);
+    static void writeAtomically(File file, byte[] data) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
     }
 
-    public static class AsyncLensIconDownloader extends AsyncTask<Object, Void, Boolean> {
-        @Override
-        protected Boolean doInBackground(Object... params) {
-            try {
-                LensesFragment.LensItemData itemData = (LensesFragment.LensItemData) params[0];
-                Activity context = (Activity) params[1];
-                final ImageView iconView = (ImageView) params[2];
-                BitmapCache bitmapCache = (BitmapCache) params[3];
+    private static Bitmap decodeFile(File file, int targetSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        prepareSampledDecode(options, targetSize);
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
 
-                final String url = itemData.url;
-                final Bitmap bmp = retrieveAppropriateBitmap(url, context);
+    static Bitmap decodeBytes(byte[] data, int targetSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        prepareSampledDecode(options, targetSize);
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
 
-                if (bmp == null) {
-                    Logger.log("Could not retrieve Lens Icon", LogType.LENS);
-                    return null;
-                }
+    /**
+     * Pick the largest power of two sample size that keeps both sides at least the target size.
+     */
+    private static void prepareSampledDecode(BitmapFactory.Options options, int targetSize) {
+        int sampleSize = 1;
+
+        while (options.outWidth / (sampleSize * 2) >= targetSize && options.outHeight / (sampleSize * 2) >= targetSize)
+            sampleSize *= 2;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+    }
 
-                bitmapCache.addBitmapToMemoryCache(itemData.lensCode, bmp);
+    private static class Request implements Runnable {
+        final Context context;
+        final String lensCode;
+        final String url;
+        final int targetSize;
+        // Views bound to this request, only touched on the main thread
+        int waiting;
+        Future<?> future;
 
-                context.runOnUiThread(new Runnable() {
-                    @Override
-                    public void run() {
-                        iconView.setImageBitmap(bmp);
-                    }
-                });
+        Request(Context context, String lensCode, String url, int targetSize) {
+            this.context = context;
+            this.lensCode = lensCode;
+            this.url = url;
+            this.targetSize = targetSize;
+        }
+
+        @Override
+        public void run() {
+            Bitmap bmp = null;
+
+            try {
+                bmp = load(this);
             } catch (Throwable e) {
-                Logger.log("Error inside async", e, LogType.LENS);
+                Logger.log("Could not retrieve Lens Icon: " + e.getMessage(), LogType.LENS);
             }
 
-            return null;
+            if (bmp == null)
+                failures.incrementAndGet();
+
+            deliver(this, bmp);
         }
     }
 }
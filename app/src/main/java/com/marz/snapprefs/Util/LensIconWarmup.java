@@ -0,0 +1,244 @@
+package com.marz.snapprefs.Util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.marz.snapprefs.Logger;
+import com.marz.snapprefs.Logger.LogType;
+import com.marz.snapprefs.Preferences;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the lens icon disk cache in the background after lenses are collected, so opening
+ * the lens selector doesn't start a burst of downloads.
+ * <p>
+ * Icon links of new lenses are queued in a journal, which makes the job resumable across
+ * restarts of Snapchat. The queue is worked through in small batches, only on an unmetered
+ * network while charging. Each icon is downscaled to the size the selector shows and
+ * stored where {@link LensIconLoader} looks for it. An icon that is already on disk is
+ * skipped, so queueing a link twice is harmless.
+ * <p>
+ * A link that fails is queued again behind the ones that haven't, with its attempts counted
+ * in the entry, so a link the server keeps refusing can't hold up the rest. It is dropped
+ * after {@link #MAX_ATTEMPTS} attempts.
+ */
+public class LensIconWarmup {
+    static final String QUEUE_FILE = "LensIconWarmup.journal";
+    private static final int BATCH_SIZE = 5;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int ICON_SIZE = 256;
+    private static final long START_DELAY_SECONDS = 10;
+    private static final long BATCH_DELAY_SECONDS = 2;
+    private static final long RETRY_DELAY_SECONDS = 900;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Snapprefs-lens-warmup");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+    private static final Runnable batch = new Runnable() {
+        @Override
+        public void run() {
+            runBatch();
+        }
+    };
+
+    private static Context context;
+    private static PersistentStringSet queue;
+    private static boolean scheduled;
+    private static int warmed;
+    private static int failed;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private LensIconWarmup() {
+    }
+
+    /**
+     * Resume the queue left by an earlier run.
+     */
+    public static synchronized void init(Context context) {
+        LensIconWarmup.context = context.getApplicationContext();
+
+        if (!getQueue().view().isEmpty())
+            schedule(START_DELAY_SECONDS);
+    }
+
+    /**
+     * Queue the icon of a newly collected lens.
+     */
+    public static synchronized void enqueue(String iconLink) {
+        if (iconLink == null || iconLink.isEmpty())
+            return;
+
+        try {
+            getQueue().add(iconLink);
+        } catch (IOException e) {
+            Logger.log("Failed to queue lens icon", e, LogType.LENS);
+            return;
+        }
+
+        schedule(START_DELAY_SECONDS);
+    }
+
+    private static void schedule(long delaySeconds) {
+        if (scheduled || context == null)
+            return;
+
+        scheduled = true;
+        scheduler.schedule(batch, delaySeconds, TimeUnit.SECONDS);
+    }
+
+    private static void runBatch() {
+        List<String> links;
+
+        synchronized (LensIconWarmup.class) {
+            scheduled = false;
+
+            if (DeviceState.isMetered(context) || !DeviceState.isCharging(context)) {
+                Logger.log("Lens icon warmup waiting for an unmetered network and a charger", LogType.LENS);
+                schedule(RETRY_DELAY_SECONDS);
+                return;
+            }
+
+            links = new ArrayList<>(getQueue().view());
+        }
+
+        // Fewest attempts first, so failing links go to the back of the queue
+        Collections.sort(links, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int byAttempts = getAttempts(a) - getAttempts(b);
+                return byAttempts != 0 ? byAttempts : a.compareTo(b);
+            }
+        });
+        List<String> done = new ArrayList<>();
+        List<String> retried = new ArrayList<>();
+        int progress = 0;
+
+        for (String entry : links.subList(0, Math.min(BATCH_SIZE, links.size()))) {
+            int attempts = getAttempts(entry);
+            String link = getLink(entry);
+
+            try {
+                warm(link);
+                warmed++;
+                progress++;
+                done.add(entry);
+            } catch (FileNotFoundException e) {
+                // The server doesn't have the icon, asking again won't change that
+                failed++;
+                progress++;
+                done.add(entry);
+            } catch (IOException e) {
+                done.add(entry);
+
+                if (attempts + 1 >= MAX_ATTEMPTS) {
+                    Logger.log("Lens icon warmup giving up on " + link + ": " + e.getMessage(), LogType.LENS);
+                    failed++;
+                } else {
+                    Logger.log("Lens icon warmup failed, retrying later: " + e.getMessage(), LogType.LENS);
+                    retried.add((attempts + 1) + "\t" + link);
+                }
+            }
+        }
+
+        synchronized (LensIconWarmup.class) {
+            try {
+                getQueue().update(retried, done);
+            } catch (IOException e) {
+                Logger.log("Failed to update the lens icon queue", e, LogType.LENS);
+            }
+
+            int remaining = getQueue().view().size();
+            Logger.log(String.format("Lens icon warmup: %s warmed, %s unavailable, %s remaining",
+                    warmed, failed, remaining), LogType.LENS);
+
+            if (remaining == 0)
+                return;
+
+            // A batch without progress means the network is failing, back off
+            schedule(progress == 0 ? RETRY_DELAY_SECONDS : BATCH_DELAY_SECONDS);
+        }
+    }
+
+    /**
+     * @return How often the link of a queue entry failed, entries without a count never did
+     */
+    private static int getAttempts(String entry) {
+        int tab = entry.indexOf('\t');
+
+        if (tab <= 0)
+            return 0;
+
+        try {
+            return Integer.parseInt(entry.substring(0, tab));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String getLink(String entry) {
+        return entry.substring(entry.indexOf('\t') + 1);
+    }
+
+    private static void warm(String link) throws IOException {
+        File iconDirectory = new File(Preferences.getSavePath(), LensIconLoader.ICON_FOLDER);
+        File iconFile = new File(iconDirectory, LensIconLoader.getIconFileName(link));
+
+        if (iconFile.exists())
+            return;
+
+        if (!iconDirectory.exists() && !iconDirectory.mkdirs())
+            throw new IOException("Failed to create " + iconDirectory);
+
+        byte[] data = LensIconLoader.download(link);
+        Bitmap icon = LensIconLoader.decodeBytes(data, ICON_SIZE);
+
+        if (icon == null) {
+            // Not an image we can shrink, keep it as downloaded
+            LensIconLoader.writeAtomically(iconFile, data);
+        } else {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            icon.compress(Bitmap.CompressFormat.PNG, 100, encoded);
+            icon.recycle();
+            LensIconLoader.writeAtomically(iconFile, encoded.toByteArray());
+        }
+
+        // Runs inside Snapchat, so MainActivity.writeNoMediaFile isn't used
+        //noinspection ResultOfMethodCallIgnored
+        new File(iconDirectory, ".nomedia").createNewFile();
+    }
+
+    private static PersistentStringSet getQueue() {
+        if (queue != null)
+            return queue;
+
+        queue = new PersistentStringSet(new File(Preferences.getContentPath(), QUEUE_FILE));
+
+        try {
+            queue.load();
+        } catch (IOException e) {
+            Logger.log("Failed to load the lens icon queue", e, LogType.LENS);
+        }
+
+        return queue;
+    }
+}
@@ -13,7 +13,6 @@ import android.widget.Toast;
 import com.marz.snapprefs.HookMethods;
 import com.marz.snapprefs.Obfuscator;
 import com.marz.snapprefs.Preferences;
-import com.marz.snapprefs.Preferences.Prefs;
 import com.marz.snapprefs.R;
 
 import java.util.Map;
@@ -73,10 +72,10 @@ public class NotificationUtils {
     }
 
     public static void showStatefulMessage(String message, ToastType type, ClassLoader cl) {
-        if (!Preferences.getBool(Prefs.TOAST_ENABLED))
+        if (!Preferences.getSnapshot().toastEnabled)
             return;
 
-        if (Preferences.getBool(Prefs.STEALTH_NOTIFICATIONS) && Preferences.getLicence() >= 2)
+        if (Preferences.getSnapshot().stealthNotifications && Preferences.getLicence() >= 2)
             showStealthToast(type);
         else {
             NotificationUtils.showMessage(
@@ -92,7 +91,7 @@ public class NotificationUtils {
             return;
 
         final int offset = 20;
-        final boolean longLength = Preferences.getInt(Prefs.TOAST_LENGTH) == Preferences.TOAST_LENGTH_LONG;
+        final boolean longLength = Preferences.getSnapshot().toastLength == Preferences.TOAST_LENGTH_LONG;
 
         if (lastToastType == null || type != lastToastType) {
             lastToastType = type;
@@ -104,7 +103,7 @@ public class NotificationUtils {
         final ImageView view = new ImageView(HookMethods.SnapContext);
         view.setImageDrawable(statusDrawable);
         view.bringToFront();
-        final int horizontalPosition = Preferences.getBool(Prefs.BUTTON_POSITION) ? Gravity.END : Gravity.START;
+        final int horizontalPosition = Preferences.getSnapshot().buttonPosition ? Gravity.END : Gravity.START;
 
         HookMethods.SnapContext.runOnUiThread(new Runnable() {
             @Override
@@ -0,0 +1,202 @@
+package com.marz.snapprefs.Util;
+
+import com.marz.snapprefs.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A set of strings kept on disk as an append-only journal.
+ * <p>
+ * Every line of the journal is an operation, "+value" adds and "-value" removes. Changes
+ * only append their operations, and once the journal holds much more than the set itself it
+ * is compacted into a fresh journal that replaces the old one with a single rename. A line
+ * cut off by a crash has no line break and is ignored on load.
+ * <p>
+ * Readers use {@link #view()}, an immutable copy that is swapped whole on every change, so
+ * membership checks are O(1) and never take a lock.
+ */
+public class PersistentStringSet {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MIN_COMPACTION_OPS = 64;
+
+    private final File file;
+    private volatile Set<String> view = Collections.emptySet();
+    private int journalOps;
+
+    public PersistentStringSet(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return An immutable view of the current values
+     */
+    public Set<String> view() {
+        return view;
+    }
+
+    public boolean contains(String value) {
+        return view.contains(value);
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Replay the journal, compacting it straight away when it has grown too long.
+     */
+    public synchronized void load() throws IOException {
+        HashSet<String> values = new HashSet<>();
+        int ops = 0;
+        BufferedReader reader;
+
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8));
+        } catch (FileNotFoundException e) {
+            view = Collections.emptySet();
+            journalOps = 0;
+            return;
+        }
+
+        try {
+            StringBuilder line = new StringBuilder();
+            int read;
+
+            // Read by hand to tell a complete line from one cut off by a crash
+            while ((read = reader.read()) != -1) {
+                if (read != '\n') {
+                    line.append((char) read);
+                    continue;
+                }
+
+                if (line.length() > 1) {
+                    String value = line.substring(1);
+
+                    if (line.charAt(0) == '+')
+                        values.add(value);
+                    else if (line.charAt(0) == '-')
+                        values.remove(value);
+
+                    ops++;
+                }
+
+                line.setLength(0);
+            }
+        } finally {
+            reader.close();
+        }
+
+        view = Collections.unmodifiableSet(values);
+        journalOps = ops;
+        compactIfNeeded();
+    }
+
+    public void add(String value) throws IOException {
+        update(Collections.singleton(value), Collections.<String>emptySet());
+    }
+
+    public void remove(String value) throws IOException {
+        update(Collections.<String>emptySet(), Collections.singleton(value));
+    }
+
+    /**
+     * Make the set hold exactly the given values, appending only what differs.
+     */
+    public synchronized void replace(Collection<String> values) throws IOException {
+        HashSet<String> removed = new HashSet<>(view);
+        removed.removeAll(values);
+        update(values, removed);
+    }
+
+    /**
+     * Add and remove values in a single journal write.
+     */
+    public synchronized void update(Collection<String> added, Collection<String> removed) throws IOException {
+        Set<String> current = view;
+        HashSet<String> values = new HashSet<>(current);
+        StringBuilder ops = new StringBuilder();
+        int count = 0;
+
+        for (String value : removed) {
+            if (values.remove(value)) {
+                ops.append('-').append(value).append('\n');
+                count++;
+            }
+        }
+
+        for (String value : added) {
+            if (values.add(value)) {
+                ops.append('+').append(value).append('\n');
+                count++;
+            }
+        }
+
+        if (count == 0)
+            return;
+
+        FileOutputStream out = new FileOutputStream(file, true);
+
+        try {
+            out.write(ops.toString().getBytes(UTF_8));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        view = Collections.unmodifiableSet(values);
+        journalOps += count;
+        compactIfNeeded();
+    }
+
+    private void compactIfNeeded() {
+        if (journalOps <= Math.max(MIN_COMPACTION_OPS, view.size() * 2))
+            return;
+
+        try {
+            compact();
+        } catch (IOException e) {
+            // The journal is still complete, compaction is retried on the next change
+            Logger.log("Failed to compact " + file, e);
+        }
+    }
+
+    /**
+     * Write the current values to a new journal and swap it in.
+     */
+    public synchronized void compact() throws IOException {
+        Set<String> values = view;
+        File temp = new File(file.getPath() + ".tmp");
+        StringBuilder ops = new StringBuilder();
+
+        for (String value : values)
+            ops.append('+').append(value).append('\n');
+
+        FileOutputStream out = new FileOutputStream(temp);
+
+        try {
+            out.write(ops.toString().getBytes(UTF_8));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+
+        journalOps = values.size();
+    }
+}
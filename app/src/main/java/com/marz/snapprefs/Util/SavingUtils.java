@@ -9,10 +9,10 @@ import android.os.Vibrator;
 import com.marz.snapprefs.Logger;
 import com.marz.snapprefs.Logger.LogType;
 import com.marz.snapprefs.Preferences;
-import com.marz.snapprefs.Preferences.Prefs;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -79,6 +79,46 @@ public abstract class SavingUtils {
         return state;
     }
 
+    /**
+     * @return The bitmap as JPEG bytes, or null when it couldn't be encoded
+     */
+    public static byte[] encodeJPG(Bitmap bmp) {
+        if (bmp == null) {
+            Logger.printMessage("encodeJPG - Passed Null Image", LogType.SAVING);
+            return null;
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        return bmp.compress(Bitmap.CompressFormat.JPEG, 100, outputStream) ? outputStream.toByteArray() : null;
+    }
+
+    public static boolean saveEncoded(File fileToSave, byte[] encoded, Context context) {
+        boolean state = false;
+        FileOutputStream outputStream = null;
+
+        try {
+            outputStream = new FileOutputStream(fileToSave);
+            outputStream.write(encoded);
+            outputStream.flush();
+
+            vibrate(context, true);
+            runMediaScanner(context, fileToSave.getAbsolutePath());
+
+            state = true;
+        } catch (Exception e) {
+            Logger.printMessage("Exception while saving an image: " + e.getMessage(), LogType.SAVING);
+            vibrate(context, false);
+        } finally {
+            try {
+                if (outputStream != null)
+                    outputStream.close();
+            } catch (Exception ignored) {
+            }
+        }
+
+        return state;
+    }
+
     public static void savePNGAsync(final File fileToSave, final Bitmap bmp, final Context context) {
         savePNGAsync(fileToSave, bmp, context, true);
     }
@@ -186,7 +226,7 @@ public abstract class SavingUtils {
     }
 
     public static void vibrate(Context context, boolean success) {
-        if (!Preferences.getBool(Prefs.VIBRATIONS_ENABLED))
+        if (!Preferences.getSnapshot().vibrationsEnabled)
             return;
 
         if (success) {
@@ -241,10 +281,10 @@ public abstract class SavingUtils {
     }
 
     public static String generateFilePath(String catagoryFolderName, String username) {
-        return Preferences.getSavePath() + "/" + (Preferences.getBool(Prefs.SORT_BY_CATEGORY) ? (catagoryFolderName + "/") : ("")) + (Preferences.getBool(Prefs.SORT_BY_USERNAME) ? (username + "/") : (""));
+        return Preferences.getSavePath() + "/" + (Preferences.getSnapshot().sortByCategory ? (catagoryFolderName + "/") : ("")) + (Preferences.getSnapshot().sortByUsername ? (username + "/") : (""));
     }
     public static int getToastLength() {
-        if (Preferences.getInt(Prefs.TOAST_LENGTH) == Preferences.TOAST_LENGTH_SHORT) {
+        if (Preferences.getSnapshot().toastLength == Preferences.TOAST_LENGTH_SHORT) {
             return NotificationUtils.LENGTH_SHORT;
         } else {
             return NotificationUtils.LENGTH_LONG;
@@ -0,0 +1,160 @@
+package com.marz.snapprefs.Util;
+
+import android.os.Process;
+
+import com.google.gson.Gson;
+import com.marz.snapprefs.Logger;
+import com.marz.snapprefs.Logger.LogType;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records how long the module spends in each startup step and writes it as a Chrome trace
+ * (chrome://tracing, Perfetto or speedscope can open it), so cold starts can be compared
+ * between releases.
+ * <p>
+ * Spans are recorded until {@link #finish(File, Map)} is called, after which {@link #begin}
+ * hands out a no-op span and the module runs without any tracing overhead.
+ * Spans recorded in the zygote keep the zygote pid, so they show up as their own process.
+ */
+public class StartupTracer {
+    public static final String TRACE_FOLDER = "Traces";
+    private static final int MAX_EVENTS = 4096;
+    private static final Span NO_OP = new Span(null, null) {
+        @Override
+        public void end() {
+        }
+    };
+    private static final List<Map<String, Object>> events = new ArrayList<>();
+    private static volatile boolean finished;
+
+    /**
+     * Restrict instantiation of this class, it only contains static methods.
+     */
+    private StartupTracer() {
+    }
+
+    /**
+     * Start timing a step, the returned span must be {@link Span#end() ended} on the same thread.
+     *
+     * @param name     What is being timed
+     * @param category The startup phase it belongs to
+     */
+    public static Span begin(String name, String category) {
+        if (finished)
+            return NO_OP;
+
+        return new Span(name, category);
+    }
+
+    /**
+     * Stop recording and write every recorded span to a new trace file.
+     *
+     * @param folder   The folder the trace is written to
+     * @param metadata Extra key/values stored alongside the events, e.g. versions
+     * @return The written file, or null when nothing was written
+     */
+    public static File finish(File folder, Map<String, Object> metadata) {
+        if (finished)
+            return null;
+
+        finished = true;
+        List<Map<String, Object>> recorded;
+
+        synchronized (events) {
+            recorded = new ArrayList<>(events);
+            events.clear();
+        }
+
+        if (recorded.isEmpty())
+            return null;
+
+        if (!folder.exists() && !folder.mkdirs()) {
+            Logger.log("Failed to create trace folder " + folder, LogType.STARTUP);
+            return null;
+        }
+
+        String timestamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.ENGLISH).format(new Date());
+        File traceFile = new File(folder, "startup_" + timestamp + ".json");
+
+        Map<String, Object> trace = new LinkedHashMap<>();
+        trace.put("traceEvents", recorded);
+        trace.put("displayTimeUnit", "ms");
+        trace.put("otherData", metadata);
+
+        FileWriter writer = null;
+        try {
+            writer = new FileWriter(traceFile);
+            new Gson().toJson(trace, writer);
+            Logger.log(String.format("Wrote %s startup trace events to %s", recorded.size(), traceFile), LogType.STARTUP);
+            return traceFile;
+        } catch (IOException e) {
+            Logger.log("Failed to write startup trace", e, LogType.STARTUP);
+            return null;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Discard the recorded spans and stop recording, for when no trace is wanted.
+     */
+    public static void discard() {
+        finished = true;
+
+        synchronized (events) {
+            events.clear();
+        }
+    }
+
+    private static void record(Span span, long endNanos) {
+        // Complete event, timestamps in microseconds
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("name", span.name);
+        event.put("cat", span.category);
+        event.put("ph", "X");
+        event.put("ts", span.startNanos / 1000);
+        event.put("dur", (endNanos - span.startNanos) / 1000);
+        event.put("pid", span.pid);
+        event.put("tid", span.tid);
+
+        synchronized (events) {
+            if (!finished && events.size() < MAX_EVENTS)
+                events.add(event);
+        }
+    }
+
+    public static class Span {
+        private final String name;
+        private final String category;
+        private final int pid;
+        private final int tid;
+        private final long startNanos;
+
+        private Span(String name, String category) {
+            this.name = name;
+            this.category = category;
+            this.pid = name != null ? Process.myPid() : 0;
+            this.tid = name != null ? Process.myTid() : 0;
+            this.startNanos = System.nanoTime();
+        }
+
+        public void end() {
+            record(this, System.nanoTime());
+        }
+    }
+}
@@ -6,7 +6,6 @@ import android.view.View;
 import com.marz.snapprefs.HookedLayouts;
 import com.marz.snapprefs.Logger;
 import com.marz.snapprefs.Preferences;
-import com.marz.snapprefs.Preferences.Prefs;
 import com.marz.snapprefs.Saving;
 
 import static com.marz.snapprefs.Util.GestureEvent.ReturnType.COMPLETED;
@@ -37,9 +36,9 @@ public class SweepSaveGesture implements GestureEvent {
         Logger.log("Touch: " + event.getAction());
 
         if (type == Saving.SnapType.STORY &&
-                Preferences.getInt(Prefs.SAVEMODE_STORY) != Preferences.SAVE_S2S)
+                Preferences.getSnapshot().savemodeStory != Preferences.SAVE_S2S)
             return FAILED;
-        else if (type == Saving.SnapType.SNAP && Preferences.getInt(Prefs.SAVEMODE_SNAP) != Preferences.SAVE_S2S)
+        else if (type == Saving.SnapType.SNAP && Preferences.getSnapshot().savemodeSnap != Preferences.SAVE_S2S)
             return FAILED;
 
         Logger.log("Position: " + event.getRawX() + " " + event.getRawY());
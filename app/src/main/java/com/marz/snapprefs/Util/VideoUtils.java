@@ -78,7 +78,7 @@ public class VideoUtils {
                 // Determine the way to rotate
                 if (((rotation % 180 == 90) && (width < height)) || ((rotation % 180 == 0) && (width > height))) {
                     // Add rotation according to the settings
-                    rotation += Preferences.getInt(Preferences.Prefs.ROTATION_MODE);
+                    rotation += Preferences.getSnapshot().rotationMode;
                     Matrix matrix = getMatrixFromDegrees(rotation);
                     XposedUtils.log("Rotation changed from " + getStringFromMatrix(currentMatrix) + " to " + getStringFromMatrix(matrix));
 